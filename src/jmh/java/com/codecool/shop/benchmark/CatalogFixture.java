@@ -0,0 +1,36 @@
+package com.codecool.shop.benchmark;
+
+import com.codecool.shop.model.Product;
+import com.codecool.shop.model.ProductCategory;
+import com.codecool.shop.model.Supplier;
+
+/* Generated catalog data shared by the benchmarks.
+ */
+class CatalogFixture {
+
+    private CatalogFixture() {
+    }
+
+    static Supplier[] suppliers(int count) {
+        Supplier[] suppliers = new Supplier[count];
+        for (int i = 0; i < count; i++) {
+            suppliers[i] = new Supplier("Supplier " + i, "Generated supplier");
+            suppliers[i].setId(i + 1);
+        }
+        return suppliers;
+    }
+
+    static ProductCategory[] productCategories(int count) {
+        ProductCategory[] productCategories = new ProductCategory[count];
+        for (int i = 0; i < count; i++) {
+            productCategories[i] = new ProductCategory("Category " + i, "Hardware", "Generated category");
+            productCategories[i].setId(i + 1);
+        }
+        return productCategories;
+    }
+
+    static Product product(int i, ProductCategory[] productCategories, Supplier[] suppliers) {
+        return new Product("Product " + i, 1 + i % 500, "USD", "Generated product",
+                productCategories[i % productCategories.length], suppliers[i % suppliers.length]);
+    }
+}
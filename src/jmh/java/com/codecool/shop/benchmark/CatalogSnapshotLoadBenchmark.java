@@ -0,0 +1,86 @@
+package com.codecool.shop.benchmark;
+
+import com.codecool.shop.catalog.CatalogSnapshot;
+import com.codecool.shop.catalog.CatalogSnapshotFile;
+import com.codecool.shop.dao.jdbcImplementation.ConnectionPool;
+import com.codecool.shop.dao.jdbcImplementation.ProductCategoryDaoJDBC;
+import com.codecool.shop.dao.jdbcImplementation.ProductDaoJDBC;
+import com.codecool.shop.dao.jdbcImplementation.SupplierDaoJDBC;
+import com.codecool.shop.model.ProductCategory;
+import com.codecool.shop.model.Supplier;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+/* Cold start: the catalog loaded from the database against the same catalog read from its
+ * snapshot file. Uses the database from the properties file and truncates its catalog tables.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class CatalogSnapshotLoadBenchmark {
+
+    @Param({"100000", "1000000"})
+    public int products;
+
+    private Path file;
+
+    @Setup
+    public void populate() throws SQLException, IOException {
+        ProductDaoJDBC.getInstance().removeAll();
+        SupplierDaoJDBC.getInstance().removeAll();
+        ProductCategoryDaoJDBC.getInstance().removeAll();
+        Supplier supplier = new Supplier("Amazon", "Digital content and services");
+        SupplierDaoJDBC.getInstance().add(supplier);
+        ProductCategory productCategory = new ProductCategory("Tablet", "Hardware", "Generated category");
+        ProductCategoryDaoJDBC.getInstance().add(productCategory);
+
+        String generateProducts = "INSERT INTO Product (name, description, currency, default_price, supplier_id, product_category_id) " +
+                "SELECT 'Product ' || n, 'Generated product', 'USD', n % 500 + 1, ?, ? FROM generate_series(1, ?) AS n;";
+        try (Connection connection = ConnectionPool.getInstance().getConnection();
+             PreparedStatement statement = connection.prepareStatement(generateProducts)) {
+            statement.setInt(1, supplier.getId());
+            statement.setInt(2, productCategory.getId());
+            statement.setInt(3, products);
+            statement.executeUpdate();
+        }
+        file = Files.createTempFile("catalog", ".snapshot");
+        CatalogSnapshotFile.write(buildFromDatabase(), file);
+    }
+
+    @TearDown
+    public void deleteFile() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public CatalogSnapshot buildFromDatabase() {
+        return CatalogSnapshot.build(0, ProductDaoJDBC.getInstance(), SupplierDaoJDBC.getInstance(),
+                ProductCategoryDaoJDBC.getInstance());
+    }
+
+    @Benchmark
+    public CatalogSnapshot readFromFile() throws IOException {
+        return CatalogSnapshotFile.read(file, 0);
+    }
+}
@@ -0,0 +1,291 @@
+package com.codecool.shop.benchmark;
+
+import com.codecool.shop.dao.jdbcImplementation.ProductCategoryDaoJDBC;
+import com.codecool.shop.dao.jdbcImplementation.ProductDaoJDBC;
+import com.codecool.shop.dao.jdbcImplementation.SupplierDaoJDBC;
+import com.codecool.shop.model.BaseModel;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/* Fixed-rate HTTP load generator for the shop routes.
+ *
+ * Boots Main in-process (unless load.baseUrl points to a running server) against the database from
+ * the properties file, then drives a weighted mix of GET /, /category/:id, /supplier/:id and
+ * POST /add_to_cart from load.threads workers spread over load.sessions distinct cookie sessions.
+ * Prints throughput, latency percentiles and error rate per route.
+ *
+ * Requests are scheduled at load.rate per second in total, each worker on its own fixed schedule,
+ * and latency is measured from the time a request was due rather than from when it was sent. A
+ * worker held up by a slow response sends the requests it fell behind on at once, and their
+ * latencies include the wait, so a stall shows up in the tail percentiles instead of lowering the
+ * request rate (coordinated omission).
+ *
+ *   java -cp target/benchmarks.jar -Dload.duration=60 com.codecool.shop.benchmark.HttpLoadTest
+ *
+ * Settings (system properties): load.baseUrl, load.duration (seconds, default 30), load.warmup
+ * (seconds, default 5), load.rate (requests per second, default 2000), load.threads (default 64),
+ * load.sessions (default 2000) and load.mix (default "index:40,category:25,supplier:25,add_to_cart:10").
+ */
+public class HttpLoadTest {
+
+    private static final String[] ROUTES = {"index", "category", "supplier", "add_to_cart"};
+    private static final int READ_BUFFER_SIZE = 8192;
+
+    private final String baseUrl;
+    private final int threads;
+    private final int rate;
+    // written by whichever worker receives the session's cookie
+    private final AtomicReferenceArray<String> sessionCookies;
+    private final int[] mixWeights;
+    private final int[] categoryIds;
+    private final int[] supplierIds;
+    private final int[] productIds;
+
+    private HttpLoadTest(String baseUrl, int rate, int threads, int sessions, int[] mixWeights) {
+        this.baseUrl = baseUrl;
+        this.rate = rate;
+        this.threads = threads;
+        this.sessionCookies = new AtomicReferenceArray<>(sessions);
+        this.mixWeights = mixWeights;
+        this.categoryIds = ids(ProductCategoryDaoJDBC.getInstance().getAll());
+        this.supplierIds = ids(SupplierDaoJDBC.getInstance().getAll());
+        this.productIds = ids(ProductDaoJDBC.getInstance().getAll(0, 1000));
+    }
+
+    public static void main(String[] args) throws Exception {
+        String baseUrl = System.getProperty("load.baseUrl");
+        if (baseUrl == null) {
+            // Main lives in the default package, so it can only be reached reflectively
+            Class.forName("Main").getMethod("main", String[].class).invoke(null, (Object) new String[0]);
+            spark.Spark.awaitInitialization();
+            baseUrl = "http://localhost:8888";
+        }
+
+        HttpLoadTest loadTest = new HttpLoadTest(baseUrl,
+                Integer.getInteger("load.rate", 2000),
+                Integer.getInteger("load.threads", 64),
+                Integer.getInteger("load.sessions", 2000),
+                parseMix(System.getProperty("load.mix", "index:40,category:25,supplier:25,add_to_cart:10")));
+
+        long warmupSeconds = Long.getLong("load.warmup", 5);
+        long durationSeconds = Long.getLong("load.duration", 30);
+        System.out.println("Warming up for " + warmupSeconds + " s");
+        loadTest.run(TimeUnit.SECONDS.toNanos(warmupSeconds));
+        System.out.println("Measuring for " + durationSeconds + " s at " + loadTest.rate + " requests/s with "
+                + loadTest.threads + " threads and " + loadTest.sessionCookies.length() + " sessions");
+        RouteStats[] stats = loadTest.run(TimeUnit.SECONDS.toNanos(durationSeconds));
+        print(stats, durationSeconds);
+
+        if (System.getProperty("load.baseUrl") == null) {
+            spark.Spark.stop();
+        }
+    }
+
+    private RouteStats[] run(long durationNanos) throws InterruptedException {
+        RouteStats[][] perThread = new RouteStats[threads][];
+        CountDownLatch done = new CountDownLatch(threads);
+        long start = System.nanoTime();
+        long deadline = start + durationNanos;
+        // every worker sends rate / threads requests per second, the workers staggered evenly
+        long intervalNanos = TimeUnit.SECONDS.toNanos(threads) / rate;
+        for (int t = 0; t < threads; t++) {
+            RouteStats[] stats = newStats();
+            perThread[t] = stats;
+            long firstDue = start + intervalNanos * t / threads;
+            Thread worker = new Thread(() -> {
+                try {
+                    byte[] buffer = new byte[READ_BUFFER_SIZE];
+                    for (long due = firstDue; due < deadline; due += intervalNanos) {
+                        long wait = due - System.nanoTime();
+                        if (wait > 0) {
+                            LockSupport.parkNanos(wait);
+                        }
+                        int route = pickRoute();
+                        boolean ok = request(route, ThreadLocalRandom.current().nextInt(sessionCookies.length()), buffer);
+                        stats[route].record(System.nanoTime() - due, ok);
+                    }
+                } finally {
+                    done.countDown();
+                }
+            }, "load-" + t);
+            worker.setDaemon(true);
+            worker.start();
+        }
+        done.await();
+
+        RouteStats[] merged = newStats();
+        for (RouteStats[] stats : perThread) {
+            for (int route = 0; route < ROUTES.length; route++) {
+                merged[route].merge(stats[route]);
+            }
+        }
+        return merged;
+    }
+
+    private int pickRoute() {
+        int total = Arrays.stream(mixWeights).sum();
+        int pick = ThreadLocalRandom.current().nextInt(total);
+        for (int route = 0; route < mixWeights.length; route++) {
+            pick -= mixWeights[route];
+            if (pick < 0) {
+                return route;
+            }
+        }
+        return 0;
+    }
+
+    private boolean request(int route, int session, byte[] buffer) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        HttpURLConnection connection = null;
+        try {
+            String path;
+            switch (ROUTES[route]) {
+                case "category":
+                    path = "/category/" + categoryIds[random.nextInt(categoryIds.length)];
+                    break;
+                case "supplier":
+                    path = "/supplier/" + supplierIds[random.nextInt(supplierIds.length)];
+                    break;
+                case "add_to_cart":
+                    path = "/add_to_cart";
+                    break;
+                default:
+                    path = "/";
+            }
+            connection = (HttpURLConnection) new URL(baseUrl + path).openConnection();
+            String cookie = sessionCookies.get(session);
+            if (cookie != null) {
+                connection.setRequestProperty("Cookie", cookie);
+            }
+            if ("add_to_cart".equals(ROUTES[route])) {
+                byte[] body = ("prodId=" + productIds[random.nextInt(productIds.length)] + "&quantity=1")
+                        .getBytes(StandardCharsets.UTF_8);
+                connection.setRequestMethod("POST");
+                connection.setDoOutput(true);
+                connection.setRequestProperty("Content-Type", "application/x-www-form-urlencoded");
+                try (OutputStream out = connection.getOutputStream()) {
+                    out.write(body);
+                }
+            }
+
+            int status = connection.getResponseCode();
+            String setCookie = connection.getHeaderField("Set-Cookie");
+            if (setCookie != null) {
+                sessionCookies.set(session, setCookie.split(";", 2)[0]);
+            }
+            InputStream in = status < 400 ? connection.getInputStream() : connection.getErrorStream();
+            if (in != null) {
+                try (InputStream body = in) {
+                    while (body.read(buffer) != -1) {
+                        // drain so the keep-alive connection can be reused
+                    }
+                }
+            }
+            return status < 400;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private static RouteStats[] newStats() {
+        RouteStats[] stats = new RouteStats[ROUTES.length];
+        for (int route = 0; route < ROUTES.length; route++) {
+            stats[route] = new RouteStats();
+        }
+        return stats;
+    }
+
+    private static int[] parseMix(String mix) {
+        Map<String, Integer> weights = new LinkedHashMap<>();
+        for (String entry : mix.split(",")) {
+            String[] parts = entry.trim().split(":");
+            weights.put(parts[0], Integer.parseInt(parts[1]));
+        }
+        int[] mixWeights = new int[ROUTES.length];
+        for (int route = 0; route < ROUTES.length; route++) {
+            mixWeights[route] = weights.getOrDefault(ROUTES[route], 0);
+        }
+        return mixWeights;
+    }
+
+    private static int[] ids(List<? extends BaseModel> models) {
+        if (models.isEmpty()) {
+            throw new IllegalStateException("The catalog is empty, load init_db.sql first");
+        }
+        return models.stream().mapToInt(BaseModel::getId).toArray();
+    }
+
+    private static void print(RouteStats[] stats, long durationSeconds) {
+        System.out.println(String.format("%-12s %10s %10s %8s %10s %10s %10s %10s",
+                "route", "requests", "req/s", "errors", "p50 ms", "p99 ms", "p999 ms", "max ms"));
+        for (int route = 0; route < ROUTES.length; route++) {
+            RouteStats routeStats = stats[route];
+            long[] latencies = routeStats.sortedLatencies();
+            System.out.println(String.format("%-12s %10d %10.1f %7.2f%% %10.2f %10.2f %10.2f %10.2f",
+                    ROUTES[route],
+                    latencies.length,
+                    (double) latencies.length / durationSeconds,
+                    latencies.length == 0 ? 0.0 : 100.0 * routeStats.errors / latencies.length,
+                    millis(percentile(latencies, 0.50)),
+                    millis(percentile(latencies, 0.99)),
+                    millis(percentile(latencies, 0.999)),
+                    millis(latencies.length == 0 ? 0 : latencies[latencies.length - 1])));
+        }
+    }
+
+    private static long percentile(long[] sorted, double quantile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        return sorted[(int) Math.min(sorted.length - 1, Math.ceil(quantile * sorted.length) - 1)];
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+
+    /* Latencies of one route as recorded by one worker thread; merged after the run.
+     */
+    private static class RouteStats {
+        private long[] latencies = new long[1024];
+        private int count;
+        private long errors;
+
+        void record(long latencyNanos, boolean ok) {
+            if (count == latencies.length) {
+                latencies = Arrays.copyOf(latencies, count * 2);
+            }
+            latencies[count++] = latencyNanos;
+            if (!ok) {
+                errors++;
+            }
+        }
+
+        void merge(RouteStats other) {
+            for (int i = 0; i < other.count; i++) {
+                record(other.latencies[i], true);
+            }
+            errors += other.errors;
+        }
+
+        long[] sortedLatencies() {
+            long[] sorted = Arrays.copyOf(latencies, count);
+            Arrays.sort(sorted);
+            return sorted;
+        }
+    }
+}
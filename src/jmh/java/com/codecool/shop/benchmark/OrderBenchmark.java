@@ -0,0 +1,68 @@
+package com.codecool.shop.benchmark;
+
+import com.codecool.shop.model.LineItem;
+import com.codecool.shop.model.Order;
+import com.codecool.shop.model.Product;
+import com.codecool.shop.model.ProductCategory;
+import com.codecool.shop.model.Supplier;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class OrderBenchmark {
+
+    // distinct products already in the cart
+    @Param({"10", "1000", "10000"})
+    public int lineItems;
+
+    private Product[] products;
+    private Order order;
+
+    @Setup(Level.Trial)
+    public void createProducts() {
+        Supplier[] suppliers = CatalogFixture.suppliers(10);
+        ProductCategory[] productCategories = CatalogFixture.productCategories(10);
+        products = new Product[lineItems];
+        for (int i = 0; i < lineItems; i++) {
+            products[i] = CatalogFixture.product(i, productCategories, suppliers);
+            products[i].setId(i + 1);
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void fillCart() {
+        order = new Order();
+        for (Product product : products) {
+            order.addLineItem(new LineItem(product));
+        }
+    }
+
+    @Benchmark
+    public Order addLineItem() {
+        order.addLineItem(new LineItem(products[ThreadLocalRandom.current().nextInt(products.length)], 1));
+        return order;
+    }
+
+    @Benchmark
+    public float orderTotals() {
+        return order.getOrderPrice() + order.getOrderQuantity();
+    }
+}
@@ -0,0 +1,110 @@
+package com.codecool.shop.benchmark;
+
+import com.codecool.shop.catalog.CatalogSnapshot;
+import com.codecool.shop.catalog.CatalogStore;
+import com.codecool.shop.controller.ProductController;
+import com.codecool.shop.dao.jdbcImplementation.ConnectionPool;
+import com.codecool.shop.dao.jdbcImplementation.ProductCategoryDaoJDBC;
+import com.codecool.shop.dao.jdbcImplementation.ProductDaoJDBC;
+import com.codecool.shop.dao.jdbcImplementation.SupplierDaoJDBC;
+import com.codecool.shop.model.Product;
+import com.codecool.shop.model.ProductCategory;
+import com.codecool.shop.model.Supplier;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/* Runs against the database configured in the properties file (the test database by default).
+ * The setup truncates the catalog tables and generates the products with one INSERT ... SELECT.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ProductDaoJdbcBenchmark {
+
+    @Param({"1000", "100000"})
+    public int products;
+
+    private ProductDaoJDBC productDataStore = ProductDaoJDBC.getInstance();
+    private Supplier supplier;
+    private ProductCategory productCategory;
+    private int firstId;
+    private CatalogSnapshot catalog;
+
+    @Setup
+    public void populate() throws SQLException {
+        productDataStore.removeAll();
+        SupplierDaoJDBC.getInstance().removeAll();
+        ProductCategoryDaoJDBC.getInstance().removeAll();
+        supplier = new Supplier("Amazon", "Digital content and services");
+        SupplierDaoJDBC.getInstance().add(supplier);
+        productCategory = new ProductCategory("Tablet", "Hardware", "Generated category");
+        ProductCategoryDaoJDBC.getInstance().add(productCategory);
+
+        String generateProducts = "INSERT INTO Product (name, description, currency, default_price, supplier_id, product_category_id) " +
+                "SELECT 'Product ' || n, 'Generated product', 'USD', n % 500 + 1, ?, ? FROM generate_series(1, ?) AS n;";
+        try (Connection connection = ConnectionPool.getInstance().getConnection();
+             PreparedStatement statement = connection.prepareStatement(generateProducts)) {
+            statement.setInt(1, supplier.getId());
+            statement.setInt(2, productCategory.getId());
+            statement.setInt(3, products);
+            statement.executeUpdate();
+        }
+        firstId = productDataStore.getAll(0, 1).get(0).getId();
+        catalog = CatalogStore.getInstance().refresh();
+    }
+
+    @Benchmark
+    public Product find() {
+        return productDataStore.find(firstId + ThreadLocalRandom.current().nextInt(products));
+    }
+
+    @Benchmark
+    public List<Product> getAll() {
+        return productDataStore.getAll();
+    }
+
+    @Benchmark
+    public List<Product> getBySupplier() {
+        return productDataStore.getBy(supplier);
+    }
+
+    @Benchmark
+    public List<Product> getByProductCategory() {
+        return productDataStore.getBy(productCategory);
+    }
+
+    @Benchmark
+    public List<Product> getAllPage() {
+        return productDataStore.getAll(firstId + ThreadLocalRandom.current().nextInt(products), 12);
+    }
+
+    @Benchmark
+    public List<Product> getAllPageFromSnapshot() {
+        return catalog.getAll(firstId + ThreadLocalRandom.current().nextInt(products), 12);
+    }
+
+    @Benchmark
+    public Map paramFiller() {
+        return ProductController.paramFiller(catalog);
+    }
+}
@@ -0,0 +1,72 @@
+package com.codecool.shop.benchmark;
+
+import com.codecool.shop.dao.memImplementation.ProductDaoMem;
+import com.codecool.shop.model.Product;
+import com.codecool.shop.model.ProductCategory;
+import com.codecool.shop.model.Supplier;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ProductDaoMemBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    public int products;
+
+    private ProductDaoMem productDataStore = ProductDaoMem.getInstance();
+    private Supplier[] suppliers;
+    private ProductCategory[] productCategories;
+
+    @Setup
+    public void populate() {
+        productDataStore.removeAll();
+        suppliers = CatalogFixture.suppliers(50);
+        productCategories = CatalogFixture.productCategories(20);
+        for (int i = 0; i < products; i++) {
+            productDataStore.add(CatalogFixture.product(i, productCategories, suppliers));
+        }
+    }
+
+    @Benchmark
+    public Product find() {
+        return productDataStore.find(1 + ThreadLocalRandom.current().nextInt(products));
+    }
+
+    @Benchmark
+    public List<Product> getAll() {
+        return productDataStore.getAll();
+    }
+
+    @Benchmark
+    public List<Product> getBySupplier() {
+        return productDataStore.getBy(suppliers[ThreadLocalRandom.current().nextInt(suppliers.length)]);
+    }
+
+    @Benchmark
+    public List<Product> getByProductCategory() {
+        return productDataStore.getBy(productCategories[ThreadLocalRandom.current().nextInt(productCategories.length)]);
+    }
+
+    @Benchmark
+    public List<Product> getAllPage() {
+        return productDataStore.getAll(ThreadLocalRandom.current().nextInt(products), 12);
+    }
+}
@@ -0,0 +1,97 @@
+package com.codecool.shop.benchmark;
+
+import com.codecool.shop.dao.jdbcImplementation.ConnectionPool;
+import com.codecool.shop.dao.jdbcImplementation.ProductCategoryDaoJDBC;
+import com.codecool.shop.dao.jdbcImplementation.ProductDaoJDBC;
+import com.codecool.shop.dao.jdbcImplementation.SupplierDaoJDBC;
+import com.codecool.shop.model.ProductCategory;
+import com.codecool.shop.model.Supplier;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+/* The export path: the whole catalog streamed through ProductDaoJDBC.visitAll. Besides the time,
+ * heapGrowthBytes reports how much more heap is in use after a full GC at the end of the stream
+ * than at a quarter of it; it stays near zero as long as visited products are not retained.
+ * Uses the database from the properties file and truncates its catalog tables.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ProductExportBenchmark {
+
+    @Param({"200000"})
+    public int products;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Heap {
+        public long heapGrowthBytes;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            heapGrowthBytes = 0;
+        }
+    }
+
+    @Setup
+    public void populate() throws SQLException {
+        ProductDaoJDBC.getInstance().removeAll();
+        SupplierDaoJDBC.getInstance().removeAll();
+        ProductCategoryDaoJDBC.getInstance().removeAll();
+        Supplier supplier = new Supplier("Amazon", "Digital content and services");
+        SupplierDaoJDBC.getInstance().add(supplier);
+        ProductCategory productCategory = new ProductCategory("Tablet", "Hardware", "Generated category");
+        ProductCategoryDaoJDBC.getInstance().add(productCategory);
+
+        String generateProducts = "INSERT INTO Product (name, description, currency, default_price, supplier_id, product_category_id) " +
+                "SELECT 'Product ' || n, 'Generated product', 'USD', n % 500 + 1, ?, ? FROM generate_series(1, ?) AS n;";
+        try (Connection connection = ConnectionPool.getInstance().getConnection();
+             PreparedStatement statement = connection.prepareStatement(generateProducts)) {
+            statement.setInt(1, supplier.getId());
+            statement.setInt(2, productCategory.getId());
+            statement.setInt(3, products);
+            statement.executeUpdate();
+        }
+    }
+
+    @Benchmark
+    public int visitAll(Heap heap) {
+        long[] usedHeap = new long[2];
+        int[] visited = {0};
+        ProductDaoJDBC.getInstance().visitAll(product -> {
+            visited[0]++;
+            if (visited[0] == products / 4) {
+                usedHeap[0] = usedHeapAfterGc();
+            } else if (visited[0] == products) {
+                usedHeap[1] = usedHeapAfterGc();
+            }
+        });
+        heap.heapGrowthBytes += usedHeap[1] - usedHeap[0];
+        return visited[0];
+    }
+
+    private static long usedHeapAfterGc() {
+        System.gc();
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
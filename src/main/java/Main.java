@@ -1,43 +1,90 @@
+import com.codecool.shop.controller.BlockingRouteLimiter;
+import com.codecool.shop.controller.ExportController;
+import com.codecool.shop.controller.MetricsController;
 import com.codecool.shop.controller.OrderController;
 import com.codecool.shop.controller.ProductController;
+import com.codecool.shop.controller.ServerSettings;
+import com.codecool.shop.controller.Startup;
+import com.codecool.shop.controller.StaticAssets;
+import com.codecool.shop.dao.jdbcImplementation.OrderDaoWriteBehind;
 import spark.Request;
 import spark.Response;
-import spark.template.thymeleaf.ThymeleafTemplateEngine;
+import spark.debug.DebugScreen;
 
 import static spark.Spark.*;
-import static spark.debug.DebugScreen.enableDebugScreen;
 
 public class Main {
 
     public static void main(String[] args) {
-        // default server settings
-        exception(Exception.class, (e, req, res) -> e.printStackTrace());
+        // default server settings; the fingerprinted copies are mapped below
         staticFileLocation("/public");
-        port(8888);
+        // -Dport=<n> runs a second instance next to the first one
+        int port = Integer.getInteger("port", 8888);
+        port(port);
+        // worker pool sized from the server.* properties
+        ServerSettings settings = ServerSettings.load();
+        threadPool(settings.getMaxThreads(), settings.getMinThreads(), settings.getIdleTimeoutMillis());
+        // routes that wait on the database share a bounded number of workers
+        BlockingRouteLimiter blocking = new BlockingRouteLimiter(settings.getMaxBlockingRequests(),
+                settings.getBlockingWaitMillis());
+
+        // count the failure against its route, then show the debug screen as before
+        DebugScreen debugScreen = new DebugScreen();
+        exception(Exception.class, (e, req, res) -> {
+            MetricsController.recordException(e, req, res);
+            debugScreen.handle(e, req, res);
+        });
 
         // populate some data for the memory storage
 //        populateData();
 
-        post("/add_to_cart", OrderController::addToCart);
+        // per-route latency and error metrics, scraped from /metrics
+        before(MetricsController::startTimer);
+        after(MetricsController::stopTimer);
+        get("/metrics", MetricsController::renderMetrics);
+
+        // 503 until the startup phases below are done
+        Startup startup = new Startup(settings, port);
+        get("/ready", startup::renderReadiness);
+        startup.initDataSources();
+
+        // write the carts still queued in memory before the JVM exits
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> OrderDaoWriteBehind.getInstance().shutdown(), "order-writer-drain"));
+
+        // build the catalog snapshot (with its search and facet indexes), in the background if startup.preloadCatalog is off
+        startup.loadCatalog();
+        // carts the previous run journaled, before add_to_cart can create new ones
+        startup.recoverOrders();
+
+        post("/add_to_cart", blocking.limit(OrderController::addToCart));
 
-        get("/", ProductController::renderProducts, new ThymeleafTemplateEngine());
+        // chunked catalog export, format is "ndjson" or "csv"
+        get("/export/products/:format", blocking.limit(ExportController::exportProducts));
+
+        // /public files under content-hashed names, cached by browsers for a year
+        StaticAssets assets = StaticAssets.getInstance();
+        for (String path : assets.paths()) {
+            get(path, assets::serve);
+        }
+
+        // full-text product search, ?q=<words>
+        get("/search", ProductController::renderSearch);
+
+        get("/", ProductController::renderProducts);
         // Equivalent with above
-        get("/index", (Request req, Response res) -> {
-            return new ThymeleafTemplateEngine().render(ProductController.renderProducts(req, res));
-        });
+        get("/index", ProductController::renderProducts);
 
         get("/category/:id", (Request req, Response res) -> {
             int categoryID = Integer.parseInt(req.params(":id"));
-            return new ThymeleafTemplateEngine().render(ProductController.renderProductsbyCategory(req, res, categoryID));
+            return ProductController.renderProductsbyCategory(req, res, categoryID);
         });
         get("/supplier/:id", (Request req, Response res) -> {
             int supplierID = Integer.parseInt(req.params(":id"));
-            return new ThymeleafTemplateEngine().render(ProductController.renderProductsbySupplier(req, res, supplierID));
+            return ProductController.renderProductsbySupplier(req, res, supplierID);
         });
 
-
-        // Add this line to your project to enable the debug screen
-        enableDebugScreen();
+        startup.warmUp();
+        startup.markReady();
     }
 
 /*    public static void populateData(){
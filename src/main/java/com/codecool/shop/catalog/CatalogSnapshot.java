@@ -0,0 +1,243 @@
+package com.codecool.shop.catalog;
+
+import com.codecool.shop.dao.ProductCategoryDao;
+import com.codecool.shop.dao.ProductDao;
+import com.codecool.shop.dao.SupplierDao;
+import com.codecool.shop.model.Product;
+import com.codecool.shop.model.ProductCategory;
+import com.codecool.shop.model.Supplier;
+import com.codecool.shop.search.ProductFacetIndex;
+import com.codecool.shop.search.ProductSearchIndex;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+
+/* The whole catalog at one version: products ordered by id, suppliers, categories and the search
+ * and facet indexes over them. A snapshot is filled once, by build() or from a CatalogSnapshotFile,
+ * and never changes afterwards, so any number of threads can read it while the next one is being built.
+ */
+public final class CatalogSnapshot {
+
+    private static final AtomicLong generations = new AtomicLong();
+
+    static final CatalogSnapshot EMPTY = new CatalogSnapshot(-1, 0, new ArrayList<>(),
+            new ArrayList<>(), new ArrayList<>());
+
+    // unique per snapshot, also for snapshots derived from another one by withProducts
+    private final long generation = generations.getAndIncrement();
+    private final long version;
+    // when the catalog was loaded from the database; derived snapshots keep it
+    private final long builtAt;
+    // ids[i] is the id of products[i], ascending
+    private final int[] ids;
+    private final Product[] products;
+    private final List<Supplier> suppliers;
+    private final List<ProductCategory> productCategories;
+    private final Map<Integer, Supplier> suppliersById;
+    private final Map<Integer, ProductCategory> productCategoriesById;
+    // completes on a background thread for a snapshot read from a file, see CatalogSnapshotFile
+    private final CompletableFuture<ProductSearchIndex> searchIndex;
+    private final ProductFacetIndex facetIndex;
+
+    CatalogSnapshot(long version, long builtAt, List<Product> products, List<Supplier> suppliers,
+                    List<ProductCategory> productCategories) {
+        this(version, builtAt, products, suppliers, productCategories, false);
+    }
+
+    /* deferSearchIndex returns before the search index is built; until it is, search() waits for it.
+     */
+    CatalogSnapshot(long version, long builtAt, List<Product> products, List<Supplier> suppliers,
+                    List<ProductCategory> productCategories, boolean deferSearchIndex) {
+        this.version = version;
+        this.builtAt = builtAt;
+        products.sort(Comparator.comparingInt(Product::getId));
+        this.products = products.toArray(new Product[0]);
+        this.ids = new int[this.products.length];
+        facetIndex = new ProductFacetIndex();
+        for (int i = 0; i < this.products.length; i++) {
+            ids[i] = this.products[i].getId();
+            facetIndex.add(this.products[i]);
+        }
+        searchIndex = deferSearchIndex
+                ? CompletableFuture.supplyAsync(this::indexForSearch)
+                : CompletableFuture.completedFuture(indexForSearch());
+        suppliers.sort(Comparator.comparingInt(Supplier::getId));
+        productCategories.sort(Comparator.comparingInt(ProductCategory::getId));
+        this.suppliers = Collections.unmodifiableList(suppliers);
+        this.productCategories = Collections.unmodifiableList(productCategories);
+        suppliersById = new HashMap<>();
+        productCategoriesById = new HashMap<>();
+        for (Supplier supplier : suppliers) {
+            suppliersById.put(supplier.getId(), supplier);
+        }
+        for (ProductCategory productCategory : productCategories) {
+            productCategoriesById.put(productCategory.getId(), productCategory);
+        }
+    }
+
+    /* base with the changed products merged into its arrays and indexes; see withProducts.
+     */
+    private CatalogSnapshot(CatalogSnapshot base, Map<Integer, Product> changed) {
+        version = base.version;
+        builtAt = base.builtAt;
+        int[] changedIds = changed.keySet().stream().mapToInt(Integer::intValue).sorted().toArray();
+        Product[] merged = new Product[base.products.length + changedIds.length];
+        int[] mergedIds = new int[merged.length];
+        int size = 0;
+        int next = 0;
+        for (int id : changedIds) {
+            // the unchanged products before id are copied as they are
+            int end = base.insertionPoint(id);
+            System.arraycopy(base.products, next, merged, size, end - next);
+            System.arraycopy(base.ids, next, mergedIds, size, end - next);
+            size += end - next;
+            next = end < base.ids.length && base.ids[end] == id ? end + 1 : end;
+            Product product = changed.get(id);
+            if (product != null) {
+                merged[size] = product;
+                mergedIds[size] = id;
+                size++;
+            }
+        }
+        System.arraycopy(base.products, next, merged, size, base.products.length - next);
+        System.arraycopy(base.ids, next, mergedIds, size, base.products.length - next);
+        size += base.products.length - next;
+        products = Arrays.copyOf(merged, size);
+        ids = Arrays.copyOf(mergedIds, size);
+
+        suppliers = base.suppliers;
+        productCategories = base.productCategories;
+        suppliersById = base.suppliersById;
+        productCategoriesById = base.productCategoriesById;
+
+        facetIndex = base.facetIndex.copy();
+        changed.forEach((id, product) -> {
+            if (product == null) {
+                facetIndex.remove(id);
+            } else {
+                facetIndex.add(product);
+            }
+        });
+        // a search index still being built is derived once it is done
+        searchIndex = base.searchIndex.thenApply(index -> {
+            ProductSearchIndex derived = index.copy();
+            changed.forEach((id, product) -> {
+                if (product == null) {
+                    derived.remove(id);
+                } else {
+                    derived.add(product);
+                }
+            });
+            return derived;
+        });
+    }
+
+    /* Loads the catalog from the DAOs. version is the CatalogVersion read before loading, so a
+     * change made while loading is picked up by the next build.
+     */
+    public static CatalogSnapshot build(long version, ProductDao productDao, SupplierDao supplierDao,
+                                        ProductCategoryDao productCategoryDao) {
+        List<ProductCategory> productCategories = new ArrayList<>(productCategoryDao.getAll());
+        List<Supplier> suppliers = new ArrayList<>(supplierDao.getAll());
+        List<Product> products = new ArrayList<>();
+        productDao.visitAll(products::add);
+        return new CatalogSnapshot(version, System.currentTimeMillis(), products, suppliers, productCategories);
+    }
+
+    /* A copy with the given products replaced, added or, where the value is null, removed.
+     * Suppliers and categories are shared with this snapshot. The indexes are copies of this
+     * snapshot's that share everything the changed products are not in, so the cost grows with
+     * the changes rather than with the catalog; only the product arrays are copied whole.
+     */
+    public CatalogSnapshot withProducts(Map<Integer, Product> changed) {
+        return new CatalogSnapshot(this, new HashMap<>(changed));
+    }
+
+    public long getGeneration() {
+        return generation;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public long getBuiltAt() {
+        return builtAt;
+    }
+
+    public int size() {
+        return products.length;
+    }
+
+    // every product, ordered by id
+    List<Product> products() {
+        return Collections.unmodifiableList(Arrays.asList(products));
+    }
+
+    public Product find(int id) {
+        int index = Arrays.binarySearch(ids, id);
+        return index < 0 ? null : products[index];
+    }
+
+    // at most limit products with id greater than afterId, ordered by id
+    public List<Product> getAll(int afterId, int limit) {
+        // afterId + 1 would wrap around to the first page
+        int from = afterId == Integer.MAX_VALUE ? products.length : insertionPoint(afterId + 1);
+        int to = Math.min(products.length, from + limit);
+        return Collections.unmodifiableList(Arrays.asList(products).subList(from, to));
+    }
+
+    // the last limit products with id less than beforeId, still ordered by id
+    public List<Product> getAllBefore(int beforeId, int limit) {
+        int to = insertionPoint(beforeId);
+        int from = Math.max(0, to - limit);
+        return Collections.unmodifiableList(Arrays.asList(products).subList(from, to));
+    }
+
+    public List<Supplier> getSuppliers() {
+        return suppliers;
+    }
+
+    public Supplier findSupplier(int id) {
+        return suppliersById.get(id);
+    }
+
+    public List<ProductCategory> getProductCategories() {
+        return productCategories;
+    }
+
+    public ProductCategory findProductCategory(int id) {
+        return productCategoriesById.get(id);
+    }
+
+    public List<Product> search(String query, int limit) {
+        return searchIndex.join().search(query, limit);
+    }
+
+    public ProductFacetIndex.Selection select(Collection<Integer> categoryIds, Collection<Integer> supplierIds,
+                                              Collection<Integer> priceBands) {
+        return facetIndex.select(categoryIds, supplierIds, priceBands);
+    }
+
+    private ProductSearchIndex indexForSearch() {
+        ProductSearchIndex index = new ProductSearchIndex();
+        for (Product product : products) {
+            index.add(product);
+        }
+        return index;
+    }
+
+    // index of the first product with an id of at least id
+    private int insertionPoint(int id) {
+        int index = Arrays.binarySearch(ids, id);
+        return index < 0 ? -index - 1 : index;
+    }
+}
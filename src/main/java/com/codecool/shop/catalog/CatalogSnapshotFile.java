@@ -0,0 +1,219 @@
+package com.codecool.shop.catalog;
+
+import com.codecool.shop.model.Product;
+import com.codecool.shop.model.ProductCategory;
+import com.codecool.shop.model.Supplier;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/* A CatalogSnapshot on local disk, so a restarting node can serve its catalog before the database
+ * has answered. All numbers are big-endian:
+ *
+ *   int magic, int format version, long builtAt
+ *   int string count, int category count, int supplier count, int product count
+ *   strings     int byte length, UTF-8 bytes
+ *   categories  int id, int name, int department, int description
+ *   suppliers   int id, int name, int description
+ *   products    int id, int name, int description, float price, int currency,
+ *               int category id, int supplier id
+ *   long CRC32 of everything before it
+ *
+ * Text columns are indexes into the string table (-1 for null), so a description shared by many
+ * products is stored and decoded once. The file is written next to the target and moved over it,
+ * and read through a read-only mapping; a file of another format version, a torn write or a
+ * checksum mismatch is rejected with an IOException.
+ */
+public class CatalogSnapshotFile {
+
+    static final int MAGIC = 0x43534E50;
+    static final int FORMAT_VERSION = 1;
+    private static final int HEADER_BYTES = 4 + 4 + 8 + 4 * 4;
+    private static final int CHECKSUM_BYTES = 8;
+
+    private CatalogSnapshotFile() {
+    }
+
+    public static void write(CatalogSnapshot catalog, Path path) throws IOException {
+        Map<String, Integer> stringIndex = new HashMap<>();
+        List<String> strings = new ArrayList<>();
+        List<Product> products = catalog.products();
+        for (ProductCategory category : catalog.getProductCategories()) {
+            index(category.getName(), stringIndex, strings);
+            index(category.getDepartment(), stringIndex, strings);
+            index(category.getDescription(), stringIndex, strings);
+        }
+        for (Supplier supplier : catalog.getSuppliers()) {
+            index(supplier.getName(), stringIndex, strings);
+            index(supplier.getDescription(), stringIndex, strings);
+        }
+        for (Product product : products) {
+            index(product.getName(), stringIndex, strings);
+            index(product.getDescription(), stringIndex, strings);
+            index(product.getDefaultCurrency().getCurrencyCode(), stringIndex, strings);
+        }
+
+        Path parent = path.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+        Path temp = Files.createTempFile(parent, path.getFileName().toString(), ".tmp");
+        try {
+            CRC32 checksum = new CRC32();
+            try (OutputStream file = Files.newOutputStream(temp)) {
+                DataOutputStream out = new DataOutputStream(new CheckedOutputStream(new BufferedOutputStream(file, 1 << 16), checksum));
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT_VERSION);
+                out.writeLong(catalog.getBuiltAt());
+                out.writeInt(strings.size());
+                out.writeInt(catalog.getProductCategories().size());
+                out.writeInt(catalog.getSuppliers().size());
+                out.writeInt(products.size());
+                for (String string : strings) {
+                    byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+                    out.writeInt(bytes.length);
+                    out.write(bytes);
+                }
+                for (ProductCategory category : catalog.getProductCategories()) {
+                    out.writeInt(category.getId());
+                    out.writeInt(indexOf(category.getName(), stringIndex));
+                    out.writeInt(indexOf(category.getDepartment(), stringIndex));
+                    out.writeInt(indexOf(category.getDescription(), stringIndex));
+                }
+                for (Supplier supplier : catalog.getSuppliers()) {
+                    out.writeInt(supplier.getId());
+                    out.writeInt(indexOf(supplier.getName(), stringIndex));
+                    out.writeInt(indexOf(supplier.getDescription(), stringIndex));
+                }
+                for (Product product : products) {
+                    out.writeInt(product.getId());
+                    out.writeInt(indexOf(product.getName(), stringIndex));
+                    out.writeInt(indexOf(product.getDescription(), stringIndex));
+                    out.writeFloat(product.getDefaultPrice());
+                    out.writeInt(indexOf(product.getDefaultCurrency().getCurrencyCode(), stringIndex));
+                    out.writeInt(product.getProductCategory().getId());
+                    out.writeInt(product.getSupplier().getId());
+                }
+                out.flush();
+                // the checksum itself is not part of what it covers
+                new DataOutputStream(file).writeLong(checksum.getValue());
+            }
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /* Maps the file and decodes it into a snapshot. version is recorded as the snapshot's
+     * CatalogVersion, as for a built one.
+     */
+    public static CatalogSnapshot read(Path path, long version) throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_BYTES + CHECKSUM_BYTES || channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Not a catalog snapshot: " + path + " has " + channel.size() + " bytes");
+            }
+            // the mapping stays valid after the channel is closed
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        int checksummed = buffer.capacity() - CHECKSUM_BYTES;
+        if (buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not a catalog snapshot: " + path);
+        }
+        if (buffer.getInt(4) != FORMAT_VERSION) {
+            throw new IOException("Catalog snapshot " + path + " has format version " + buffer.getInt(4)
+                    + ", expected " + FORMAT_VERSION);
+        }
+        CRC32 checksum = new CRC32();
+        ByteBuffer content = buffer.duplicate();
+        content.limit(checksummed);
+        checksum.update(content);
+        if (checksum.getValue() != buffer.getLong(checksummed)) {
+            throw new IOException("Catalog snapshot " + path + " is damaged: checksum mismatch");
+        }
+
+        try {
+            buffer.position(8);
+            long builtAt = buffer.getLong();
+            String[] strings = new String[buffer.getInt()];
+            int categoryCount = buffer.getInt();
+            int supplierCount = buffer.getInt();
+            int productCount = buffer.getInt();
+            for (int i = 0; i < strings.length; i++) {
+                byte[] bytes = new byte[buffer.getInt()];
+                buffer.get(bytes);
+                strings[i] = new String(bytes, StandardCharsets.UTF_8);
+            }
+
+            List<ProductCategory> categories = new ArrayList<>(categoryCount);
+            Map<Integer, ProductCategory> categoriesById = new HashMap<>();
+            for (int i = 0; i < categoryCount; i++) {
+                int id = buffer.getInt();
+                ProductCategory category = new ProductCategory(string(strings, buffer.getInt()),
+                        string(strings, buffer.getInt()), string(strings, buffer.getInt()));
+                category.setId(id);
+                categories.add(category);
+                categoriesById.put(id, category);
+            }
+            List<Supplier> suppliers = new ArrayList<>(supplierCount);
+            Map<Integer, Supplier> suppliersById = new HashMap<>();
+            for (int i = 0; i < supplierCount; i++) {
+                int id = buffer.getInt();
+                Supplier supplier = new Supplier(string(strings, buffer.getInt()), string(strings, buffer.getInt()));
+                supplier.setId(id);
+                suppliers.add(supplier);
+                suppliersById.put(id, supplier);
+            }
+            List<Product> products = new ArrayList<>(productCount);
+            for (int i = 0; i < productCount; i++) {
+                int id = buffer.getInt();
+                String name = string(strings, buffer.getInt());
+                String description = string(strings, buffer.getInt());
+                float price = buffer.getFloat();
+                String currency = string(strings, buffer.getInt());
+                Product product = new Product(name, price, currency, description,
+                        categoriesById.get(buffer.getInt()), suppliersById.get(buffer.getInt()));
+                product.setId(id);
+                products.add(product);
+            }
+            if (buffer.position() != checksummed) {
+                throw new IOException("Catalog snapshot " + path + " has " + (checksummed - buffer.position())
+                        + " unexpected bytes after the products");
+            }
+            // the search index takes longer than everything else here; pages can be served without it
+            return new CatalogSnapshot(version, builtAt, products, suppliers, categories, true);
+        } catch (RuntimeException e) {
+            // counts or indexes pointing outside the file
+            throw new IOException("Catalog snapshot " + path + " is damaged", e);
+        }
+    }
+
+    private static void index(String string, Map<String, Integer> stringIndex, List<String> strings) {
+        if (string != null && !stringIndex.containsKey(string)) {
+            stringIndex.put(string, strings.size());
+            strings.add(string);
+        }
+    }
+
+    private static int indexOf(String string, Map<String, Integer> stringIndex) {
+        return string == null ? -1 : stringIndex.get(string);
+    }
+
+    private static String string(String[] strings, int index) {
+        return index < 0 ? null : strings[index];
+    }
+}
@@ -0,0 +1,320 @@
+package com.codecool.shop.catalog;
+
+import com.codecool.shop.dao.CatalogChange;
+import com.codecool.shop.dao.CatalogChangeListener;
+import com.codecool.shop.dao.CatalogVersion;
+import com.codecool.shop.dao.ProductCategoryDao;
+import com.codecool.shop.dao.ProductDao;
+import com.codecool.shop.dao.SupplierDao;
+import com.codecool.shop.dao.jdbcImplementation.CatalogChangeFeed;
+import com.codecool.shop.dao.jdbcImplementation.JDBCConnectPropParser;
+import com.codecool.shop.dao.jdbcImplementation.ProductCategoryDaoJDBC;
+import com.codecool.shop.dao.jdbcImplementation.ProductDaoJDBC;
+import com.codecool.shop.dao.jdbcImplementation.SupplierDaoJDBC;
+import com.codecool.shop.dao.timedImplementation.ProductCategoryDaoTimed;
+import com.codecool.shop.dao.timedImplementation.ProductDaoTimed;
+import com.codecool.shop.dao.timedImplementation.SupplierDaoTimed;
+import com.codecool.shop.metrics.Histogram;
+import com.codecool.shop.metrics.MetricsRegistry;
+import com.codecool.shop.model.Product;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/* Holds the current CatalogSnapshot and replaces it with a freshly built one in the background.
+ *
+ * Every catalog.checkIntervalMillis the store compares the snapshot with CatalogVersion and
+ * rebuilds it when a DAO write happened since. Writes made by other processes do not bump the
+ * local version; once the store follows a CatalogChangeFeed it is told about writes from every
+ * node instead and reloads only the changed products. A snapshot loaded longer than
+ * catalog.maxAgeSeconds ago is rebuilt regardless. The new snapshot is published with one
+ * volatile write: readers see either the old or the new catalog.
+ *
+ * With catalog.snapshotFile set, every full build is also written to that file, and start() serves
+ * the catalog from it at once while the first build from the database runs in the background. A
+ * build that fails is neither published nor written; an empty one removes the file.
+ */
+public class CatalogStore implements CatalogChangeListener {
+
+    private static final Logger logger = LoggerFactory.getLogger(CatalogStore.class);
+    // more changed products than this in one batch are cheaper to load with the whole catalog
+    private static final int MAX_INCREMENTAL_PRODUCTS = 1000;
+
+    private static CatalogStore instance = null;
+
+    private final ProductDao productDao;
+    private final SupplierDao supplierDao;
+    private final ProductCategoryDao productCategoryDao;
+    private final long checkIntervalMillis;
+    private final long maxAgeMillis;
+    private final Histogram rebuildTime;
+    private volatile CatalogSnapshot snapshot = CatalogSnapshot.EMPTY;
+    private volatile boolean followingFeed;
+    private final Path snapshotFile;
+    // false while the catalog loaded from snapshotFile has not been checked against the database
+    private volatile boolean reconciled = true;
+    // set when changes from the feed could not be loaded or were missed; the next check rebuilds the whole snapshot
+    private volatile boolean rebuildPending;
+    private ScheduledExecutorService refresher;
+
+    CatalogStore(ProductDao productDao, SupplierDao supplierDao, ProductCategoryDao productCategoryDao,
+                 Properties props) {
+        this.productDao = productDao;
+        this.supplierDao = supplierDao;
+        this.productCategoryDao = productCategoryDao;
+        checkIntervalMillis = longProperty(props, "catalog.checkIntervalMillis", 500);
+        maxAgeMillis = longProperty(props, "catalog.maxAgeSeconds", 300) * 1000;
+        String file = props.getProperty("catalog.snapshotFile", "").trim();
+        snapshotFile = file.isEmpty() ? null : Paths.get(file);
+
+        MetricsRegistry metrics = MetricsRegistry.getInstance();
+        rebuildTime = metrics.timer("catalog_snapshot_build_seconds", "Duration of catalog snapshot rebuilds", "");
+        metrics.gauge("catalog_snapshot_products", "Products in the current catalog snapshot", () -> snapshot.size());
+        metrics.gauge("catalog_snapshot_age_seconds", "Age of the current catalog snapshot",
+                () -> (System.currentTimeMillis() - snapshot.getBuiltAt()) / 1000);
+    }
+
+    public static synchronized CatalogStore getInstance() {
+        if (instance == null) {
+            Properties props = JDBCConnectPropParser.loadProperties();
+            instance = new CatalogStore(
+                    new ProductDaoTimed(ProductDaoJDBC.getInstance()),
+                    new SupplierDaoTimed(SupplierDaoJDBC.getInstance()),
+                    new ProductCategoryDaoTimed(ProductCategoryDaoJDBC.getInstance()),
+                    props != null ? props : new Properties());
+        }
+        return instance;
+    }
+
+    /* The current snapshot; never null, empty until the first refresh.
+     */
+    public CatalogSnapshot current() {
+        return snapshot;
+    }
+
+    /* Builds a snapshot of the catalog as it is now and publishes it. A read that fails throws
+     * (DataAccessException from the JDBC DAOs) before anything is published, so an unreachable
+     * database never replaces the catalog with an empty one.
+     */
+    public synchronized CatalogSnapshot refresh() {
+        CatalogSnapshot built = build();
+        publish(built);
+        return built;
+    }
+
+    /* Starts the background refresh. The first snapshot is read from the snapshot file when there
+     * is one, otherwise it is built on the calling thread.
+     */
+    public synchronized void start() {
+        if (refresher != null) {
+            return;
+        }
+        refresher = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "catalog-refresh");
+            thread.setDaemon(true);
+            return thread;
+        });
+        CatalogSnapshot loaded = load();
+        if (loaded != null) {
+            snapshot = loaded;
+            reconciled = false;
+            refresher.execute(this::refreshIfStale);
+        } else {
+            try {
+                refresh();
+            } catch (RuntimeException e) {
+                // the empty snapshot counts as expired, so the next check builds it again
+                logger.error("Building the catalog snapshot failed, retrying in the background", e);
+            }
+        }
+        refresher.scheduleWithFixedDelay(this::refreshIfStale, checkIntervalMillis, checkIntervalMillis,
+                TimeUnit.MILLISECONDS);
+    }
+
+    /* Takes catalog changes from the feed instead of watching the local CatalogVersion, which the
+     * feed covers as well.
+     */
+    public void followChanges(CatalogChangeFeed feed) {
+        followingFeed = true;
+        feed.subscribe(this);
+    }
+
+    /* Reloads the changed products into a copy of the current snapshot; a changed supplier or
+     * category, a truncated table or a bulk change rebuilds the whole snapshot.
+     *
+     * The feed delivers every change once. If the database cannot be read, none of the changes
+     * are applied and the snapshot is rebuilt on a later check instead, once reads succeed again.
+     */
+    @Override
+    public synchronized void catalogChanged(List<CatalogChange> changes) {
+        if (snapshot == CatalogSnapshot.EMPTY) {
+            // not built yet: the first build reads these changes from the database anyway
+            return;
+        }
+        try {
+            applyChanges(changes);
+        } catch (RuntimeException e) {
+            rebuildPending = true;
+            logger.warn("Loading {} catalog changes failed, rebuilding the catalog snapshot on the next check",
+                    changes.size(), e);
+        }
+    }
+
+    /* The skipped changes may have been committed after all, so the next check rebuilds the
+     * whole snapshot.
+     */
+    @Override
+    public void changesMissed() {
+        rebuildPending = true;
+    }
+
+    private void applyChanges(List<CatalogChange> changes) {
+        Set<Integer> productIds = new HashSet<>();
+        for (CatalogChange change : changes) {
+            if (change.getTable() != CatalogChange.Table.PRODUCT || change.isWholeTable()) {
+                refresh();
+                return;
+            }
+            productIds.add(change.getRowId());
+        }
+        if (productIds.size() > MAX_INCREMENTAL_PRODUCTS) {
+            refresh();
+            return;
+        }
+        long start = System.nanoTime();
+        Map<Integer, Product> changed = new HashMap<>();
+        for (Integer id : productIds) {
+            // null for a deleted product; a failed read throws instead
+            changed.put(id, productDao.find(id));
+        }
+        snapshot = snapshot.withProducts(changed);
+        rebuildTime.record(System.nanoTime() - start);
+        logger.debug("Catalog snapshot updated with {} changed products", changed.size());
+    }
+
+    public synchronized void stop() {
+        if (refresher != null) {
+            refresher.shutdownNow();
+            refresher = null;
+        }
+    }
+
+    /* Replaces the catalog loaded from the file with one built from the database. An empty build
+     * while the file had products is not trusted over the file; it is tried again on the next check.
+     */
+    synchronized void reconcile() {
+        if (reconciled) {
+            return;
+        }
+        CatalogSnapshot built = build();
+        if (built.size() == 0 && snapshot.size() > 0) {
+            logger.warn("The database returned an empty catalog, serving the one from {} until the next check", snapshotFile);
+            return;
+        }
+        publish(built);
+    }
+
+    private CatalogSnapshot build() {
+        long version = CatalogVersion.current();
+        long start = System.nanoTime();
+        CatalogSnapshot built = CatalogSnapshot.build(version, productDao, supplierDao, productCategoryDao);
+        rebuildTime.record(System.nanoTime() - start);
+        logger.info("Catalog snapshot of version {} with {} products built in {} ms", version, built.size(),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        return built;
+    }
+
+    private void publish(CatalogSnapshot built) {
+        snapshot = built;
+        reconciled = true;
+        rebuildPending = false;
+        if (snapshotFile == null) {
+            return;
+        }
+        if (built.size() == 0) {
+            // reconcile() would keep serving a stale file over the empty catalog, so there is no file at all
+            deleteSnapshotFile();
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            CatalogSnapshotFile.write(built, snapshotFile);
+            logger.debug("Catalog snapshot written to {} in {} ms", snapshotFile,
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        } catch (IOException e) {
+            logger.warn("Writing the catalog snapshot to {} failed", snapshotFile, e);
+        }
+    }
+
+    private void deleteSnapshotFile() {
+        try {
+            if (Files.deleteIfExists(snapshotFile)) {
+                logger.info("The catalog is empty, deleted the catalog snapshot in {}", snapshotFile);
+            }
+        } catch (IOException e) {
+            logger.warn("Deleting the catalog snapshot in {} failed", snapshotFile, e);
+        }
+    }
+
+    // null when there is no usable snapshot file
+    private CatalogSnapshot load() {
+        if (snapshotFile == null || !Files.exists(snapshotFile)) {
+            return null;
+        }
+        long start = System.nanoTime();
+        try {
+            CatalogSnapshot loaded = CatalogSnapshotFile.read(snapshotFile, CatalogVersion.current());
+            logger.info("Catalog snapshot with {} products loaded from {} in {} ms", loaded.size(), snapshotFile,
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            return loaded;
+        } catch (IOException e) {
+            logger.warn("Ignoring the catalog snapshot in {}, building it from the database", snapshotFile, e);
+            return null;
+        }
+    }
+
+    void refreshIfStale() {
+        CatalogSnapshot current = snapshot;
+        boolean changed = !followingFeed && current.getVersion() != CatalogVersion.current();
+        boolean expired = System.currentTimeMillis() - current.getBuiltAt() > maxAgeMillis;
+        if (reconciled && !changed && !expired && !rebuildPending) {
+            return;
+        }
+        try {
+            if (reconciled) {
+                refresh();
+            } else {
+                reconcile();
+            }
+        } catch (RuntimeException e) {
+            // keep serving the previous snapshot and try again on the next check
+            logger.error("Rebuilding the catalog snapshot failed", e);
+        }
+    }
+
+    private static long longProperty(Properties props, String key, long defaultValue) {
+        String value = props.getProperty(key);
+        if (value == null || value.trim().isEmpty()) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            e.printStackTrace();
+            return defaultValue;
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.codecool.shop.controller;
+
+import com.codecool.shop.metrics.Histogram;
+import com.codecool.shop.metrics.MetricsRegistry;
+import spark.Route;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import static spark.Spark.halt;
+
+/* Bounds the number of Jetty workers that can wait on the database at once. Routes wrapped by
+ * limit() take a permit for their whole run; a request that gets none within the wait time is
+ * answered with 503 and Retry-After instead of holding a worker that other routes could use.
+ */
+public class BlockingRouteLimiter {
+
+    private final Semaphore permits;
+    private final int maxConcurrent;
+    private final long waitMillis;
+    private final Histogram waitTime;
+    private final LongAdder rejected;
+
+    public BlockingRouteLimiter(int maxConcurrent, long waitMillis) {
+        this.maxConcurrent = maxConcurrent;
+        this.waitMillis = waitMillis;
+        this.permits = new Semaphore(Math.max(1, maxConcurrent), true);
+
+        MetricsRegistry metrics = MetricsRegistry.getInstance();
+        waitTime = metrics.timer("http_blocking_wait_seconds", "Time requests queued for a blocking route slot", "");
+        rejected = metrics.counter("http_blocking_rejected_total", "Requests turned away because every blocking route slot was busy", "");
+        metrics.gauge("http_blocking_in_flight", "Requests running in a blocking route",
+                () -> maxConcurrent > 0 ? maxConcurrent - permits.availablePermits() : 0);
+    }
+
+    public Route limit(Route route) {
+        if (maxConcurrent <= 0) {
+            return route;
+        }
+        return (req, res) -> {
+            long waitStart = System.nanoTime();
+            boolean acquired;
+            try {
+                acquired = permits.tryAcquire(waitMillis, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                acquired = false;
+            }
+            waitTime.record(System.nanoTime() - waitStart);
+            if (!acquired) {
+                rejected.increment();
+                MetricsController.recordRejected(req);
+                res.header("Retry-After", "1");
+                halt(503, "The shop is busy, please try again in a moment.");
+                return null;
+            }
+            try {
+                return route.handle(req, res);
+            } finally {
+                permits.release();
+            }
+        };
+    }
+}
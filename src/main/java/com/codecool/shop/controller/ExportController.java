@@ -0,0 +1,126 @@
+package com.codecool.shop.controller;
+
+import com.codecool.shop.dao.DataAccessException;
+import com.codecool.shop.dao.ProductDao;
+import com.codecool.shop.dao.jdbcImplementation.ProductDaoJDBC;
+import com.codecool.shop.dao.timedImplementation.ProductDaoTimed;
+import com.codecool.shop.model.Product;
+import org.json.simple.JSONObject;
+import spark.Request;
+import spark.Response;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static spark.Spark.halt;
+
+/* Streams the whole catalog as NDJSON or CSV. Rows are written as they are read from the database
+ * and the response is sent chunked, so neither side holds the full catalog in memory. Both formats
+ * carry the supplier and category descriptions, so CatalogImporter can load an export as it is.
+ *
+ * If the database fails after the first rows have been sent, the status can no longer change, so
+ * the connection is aborted instead of ending the chunked body normally: the client sees a broken
+ * transfer rather than a well-formed but incomplete export.
+ */
+public class ExportController {
+
+    private static ProductDao productDataStore = new ProductDaoTimed(ProductDaoJDBC.getInstance());
+
+    private static final String CSV_HEADER = "id,name,description,price,currency,category_id,category,"
+            + "category_description,category_department,supplier_id,supplier,supplier_description\n";
+
+    public static Object exportProducts(Request req, Response res) throws IOException {
+        String format = req.params(":format");
+        if (!"csv".equals(format) && !"ndjson".equals(format)) {
+            halt(404, "Unknown export format: " + format);
+            return null;
+        }
+        boolean csv = "csv".equals(format);
+        res.type(csv ? "text/csv; charset=utf-8" : "application/x-ndjson; charset=utf-8");
+
+        try {
+            write(productDataStore, res.raw().getOutputStream(), csv);
+        } catch (DataAccessException e) {
+            if (res.raw().isCommitted()) {
+                abort(req, e);
+            }
+            throw e;
+        }
+        return "";
+    }
+
+    /* Writes every product of the DAO as CSV with a header row, or as NDJSON.
+     */
+    public static void write(ProductDao products, OutputStream out, boolean csv) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        if (csv) {
+            writer.write(CSV_HEADER);
+        }
+        try {
+            products.visitAll(product -> {
+                try {
+                    writer.write(csv ? toCsv(product) : toJson(product));
+                    writer.write('\n');
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        writer.flush();
+    }
+
+    private static void abort(Request req, Throwable failure) {
+        org.eclipse.jetty.server.Request jettyRequest = org.eclipse.jetty.server.Request.getBaseRequest(req.raw());
+        if (jettyRequest != null) {
+            jettyRequest.getHttpChannel().abort(failure);
+        }
+    }
+
+    private static String toJson(Product product) {
+        Map<String, Object> json = new LinkedHashMap<>();
+        json.put("id", product.getId());
+        json.put("name", product.getName());
+        json.put("description", product.getDescription());
+        json.put("price", product.getDefaultPrice());
+        json.put("currency", product.getDefaultCurrency().getCurrencyCode());
+        json.put("categoryId", product.getProductCategory().getId());
+        json.put("category", product.getProductCategory().getName());
+        json.put("categoryDescription", product.getProductCategory().getDescription());
+        json.put("categoryDepartment", product.getProductCategory().getDepartment());
+        json.put("supplierId", product.getSupplier().getId());
+        json.put("supplier", product.getSupplier().getName());
+        json.put("supplierDescription", product.getSupplier().getDescription());
+        return JSONObject.toJSONString(json);
+    }
+
+    private static String toCsv(Product product) {
+        return product.getId() + "," +
+                csvField(product.getName()) + "," +
+                csvField(product.getDescription()) + "," +
+                product.getDefaultPrice() + "," +
+                product.getDefaultCurrency().getCurrencyCode() + "," +
+                product.getProductCategory().getId() + "," +
+                csvField(product.getProductCategory().getName()) + "," +
+                csvField(product.getProductCategory().getDescription()) + "," +
+                csvField(product.getProductCategory().getDepartment()) + "," +
+                product.getSupplier().getId() + "," +
+                csvField(product.getSupplier().getName()) + "," +
+                csvField(product.getSupplier().getDescription());
+    }
+
+    private static String csvField(String value) {
+        if (value == null) {
+            return "";
+        }
+        return "\"" + value.replace("\"", "\"\"") + "\"";
+    }
+}
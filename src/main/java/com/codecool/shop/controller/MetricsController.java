@@ -0,0 +1,123 @@
+package com.codecool.shop.controller;
+
+import com.codecool.shop.dao.memImplementation.OrderDaoMem;
+import com.codecool.shop.metrics.Histogram;
+import com.codecool.shop.metrics.MetricsRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import spark.Request;
+import spark.Response;
+import spark.Session;
+
+import javax.servlet.http.HttpSessionBindingEvent;
+import javax.servlet.http.HttpSessionBindingListener;
+import java.util.concurrent.atomic.LongAdder;
+
+/* Request metrics collected by the before/after filters and exposed in the Prometheus text format on /metrics.
+ * Routes are mapped to a fixed set of labels, so per-request recording only reads preallocated metrics.
+ */
+public class MetricsController {
+
+    private static final Logger logger = LoggerFactory.getLogger(MetricsController.class);
+
+    private static final String[] ROUTES = {
+            "/", "/index", "/category/:id", "/supplier/:id", "/add_to_cart", "/export/products/:format", "/metrics",
+            "/search", "/ready", "static", "other"
+    };
+    private static final int OTHER = ROUTES.length - 1;
+
+    private static final MetricsRegistry metrics = MetricsRegistry.getInstance();
+    private static final Histogram[] latency = new Histogram[ROUTES.length];
+    private static final LongAdder[] errors = new LongAdder[ROUTES.length];
+    private static final LongAdder sessionsCreated = metrics.counter("http_sessions_created_total",
+            "HTTP sessions created by the shop routes", "");
+    private static final LongAdder activeSessions = new LongAdder();
+    private static final SessionTracker sessionTracker = new SessionTracker();
+
+    // Spark runs the before filter, the route and the after filter on the same thread
+    private static final ThreadLocal<long[]> requestStart = ThreadLocal.withInitial(() -> new long[1]);
+
+    static {
+        for (int route = 0; route < ROUTES.length; route++) {
+            String labels = "route=\"" + ROUTES[route] + "\"";
+            latency[route] = metrics.timer("http_request_duration_seconds", "Latency of HTTP requests by route", labels);
+            errors[route] = metrics.counter("http_request_errors_total", "Requests that ended in an exception by route", labels);
+        }
+        metrics.gauge("http_sessions_active", "HTTP sessions that have not expired yet", activeSessions::sum);
+        metrics.gauge("shop_active_orders", "Orders currently held in memory",
+                () -> OrderDaoMem.getInstance().size());
+    }
+
+    public static void startTimer(Request req, Response res) {
+        requestStart.get()[0] = System.nanoTime();
+    }
+
+    public static void stopTimer(Request req, Response res) {
+        latency[routeOf(req.uri())].record(System.nanoTime() - requestStart.get()[0]);
+        Session session = req.session(false);
+        if (session != null && session.isNew()) {
+            sessionsCreated.increment();
+            session.attribute(SessionTracker.ATTRIBUTE, sessionTracker);
+        }
+    }
+
+    /* For requests turned away with halt(), which skips the after filter.
+     */
+    static void recordRejected(Request req) {
+        latency[routeOf(req.uri())].record(System.nanoTime() - requestStart.get()[0]);
+    }
+
+    public static void recordException(Exception e, Request req, Response res) {
+        int route = routeOf(req.uri());
+        errors[route].increment();
+        latency[route].record(System.nanoTime() - requestStart.get()[0]);
+        logger.error("Request to {} failed", req.uri(), e);
+    }
+
+    public static String renderMetrics(Request req, Response res) {
+        res.type("text/plain; version=0.0.4; charset=utf-8");
+        return metrics.scrape();
+    }
+
+    private static int routeOf(String uri) {
+        if (uri.equals("/")) {
+            return 0;
+        } else if (uri.equals("/index")) {
+            return 1;
+        } else if (uri.startsWith("/category/")) {
+            return 2;
+        } else if (uri.startsWith("/supplier/")) {
+            return 3;
+        } else if (uri.equals("/add_to_cart")) {
+            return 4;
+        } else if (uri.startsWith("/export/products/")) {
+            return 5;
+        } else if (uri.equals("/metrics")) {
+            return 6;
+        } else if (uri.equals("/search")) {
+            return 7;
+        } else if (uri.equals("/ready")) {
+            return 8;
+        } else if (StaticAssets.getInstance().isAsset(uri)) {
+            return 9;
+        }
+        return OTHER;
+    }
+
+    /* Bound to every new session; the container unbinds it when the session expires or is invalidated.
+     */
+    private static class SessionTracker implements HttpSessionBindingListener {
+
+        static final String ATTRIBUTE = "metrics.sessionTracker";
+
+        @Override
+        public void valueBound(HttpSessionBindingEvent event) {
+            activeSessions.increment();
+        }
+
+        @Override
+        public void valueUnbound(HttpSessionBindingEvent event) {
+            activeSessions.decrement();
+        }
+    }
+}
@@ -1,16 +1,23 @@
 package com.codecool.shop.controller;
 
+import com.codecool.shop.catalog.CatalogStore;
+import com.codecool.shop.dao.OrderDao;
+import com.codecool.shop.dao.ProductDao;
+import com.codecool.shop.dao.jdbcImplementation.OrderDaoWriteBehind;
 import com.codecool.shop.dao.jdbcImplementation.ProductDaoJDBC;
-import com.codecool.shop.dao.memImplementation.OrderDaoMem;
+import com.codecool.shop.dao.timedImplementation.OrderDaoTimed;
+import com.codecool.shop.dao.timedImplementation.ProductDaoTimed;
 import com.codecool.shop.model.LineItem;
 import com.codecool.shop.model.Order;
+import com.codecool.shop.model.Product;
 import org.json.simple.JSONObject;
 import spark.Request;
 import spark.Response;
 
 public class OrderController {
 
-    private static OrderDaoMem orderList = OrderDaoMem.getInstance();
+    private static OrderDao orderList = new OrderDaoTimed(OrderDaoWriteBehind.getInstance());
+    private static ProductDao productDataStore = new ProductDaoTimed(ProductDaoJDBC.getInstance());
 
     private static void updateSession(Request req, Order currentOrder) {
         req.session().attribute("orderQuantity", currentOrder.getOrderQuantity());
@@ -22,28 +29,44 @@ public class OrderController {
         String productQuantityStr = req.queryParams("quantity");
         int productQuantityInt = Integer.parseInt(productQuantityStr);
         int productIdInt = Integer.parseInt(productIdStr);
-        return new LineItem(ProductDaoJDBC.getInstance().find(productIdInt), productQuantityInt);
+        Product product = CatalogStore.getInstance().current().find(productIdInt);
+        if (product == null) {
+            // added after the current catalog snapshot was built
+            product = productDataStore.find(productIdInt);
+        }
+        return new LineItem(product, productQuantityInt);
     }
 
     private static Order findCurrentOrder(Request req) {
-        Order currentOrder = new Order();
-        if (!req.session().attributes().contains("orderId")) {
-            orderList.add(currentOrder);
-            req.session().attribute("orderId", currentOrder.getId());
-        } else {
-            int orderId = req.session().attribute("orderId");
-            currentOrder = orderList.find(orderId);
+        // parallel requests of one session must not create two orders for it
+        synchronized (req.session().raw()) {
+            Order currentOrder = null;
+            if (req.session().attributes().contains("orderId")) {
+                int orderId = req.session().attribute("orderId");
+                currentOrder = orderList.find(orderId);
+            }
+            // a new session, or its abandoned cart has been evicted
+            if (currentOrder == null) {
+                currentOrder = new Order();
+                orderList.add(currentOrder);
+                req.session().attribute("orderId", currentOrder.getId());
+            }
+            return currentOrder;
         }
-        return currentOrder;
     }
 
     public static JSONObject addToCart(Request req, Response res) {
         LineItem selectedItem = returnLineItemFromReq(req);
         Order currentOrder = findCurrentOrder(req);
-        currentOrder.addLineItem(selectedItem);
-        updateSession(req, currentOrder);
+        int orderQuantity;
+        // acknowledged from memory, the database write happens in the background
+        orderList.addLineItem(currentOrder, selectedItem);
+        synchronized (currentOrder) {
+            updateSession(req, currentOrder);
+            orderQuantity = currentOrder.getOrderQuantity();
+        }
         JSONObject jsonObj = new JSONObject();
-        jsonObj.put("numOfLineItems", currentOrder.getOrderQuantity());
+        jsonObj.put("numOfLineItems", orderQuantity);
         res.type("application/json");
         return jsonObj;
     }
@@ -0,0 +1,111 @@
+package com.codecool.shop.controller;
+
+import org.thymeleaf.templateresolver.ClassLoaderTemplateResolver;
+import spark.ModelAndView;
+import spark.TemplateEngine;
+import spark.template.thymeleaf.ThymeleafTemplateEngine;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/* Holds the one template engine of the application and caches rendered catalog pages.
+ * A page is rendered with a placeholder instead of the session's cart count and is reused until
+ * the catalog snapshot it was rendered from is replaced; the cart count is spliced in for every request.
+ * At most MAX_PAGES pages are kept, the least recently used one is dropped first.
+ */
+public class PageCache {
+
+    static final String ORDER_QUANTITY_PLACEHOLDER = "__ORDER_QUANTITY__";
+    private static final int MAX_PAGES = 1000;
+
+    private static PageCache instance = null;
+
+    private final TemplateEngine templateEngine;
+    // in access order; guarded by itself
+    private final Map<String, Page> pages = new LinkedHashMap<String, Page>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Page> eldest) {
+            return size() > MAX_PAGES;
+        }
+    };
+
+    private PageCache() {
+        ClassLoaderTemplateResolver templateResolver = new ClassLoaderTemplateResolver();
+        templateResolver.setTemplateMode("HTML5");
+        templateResolver.setPrefix("templates/");
+        templateResolver.setSuffix(".html");
+        templateResolver.setCharacterEncoding("UTF-8");
+        templateResolver.setCacheable(true);
+        templateEngine = new ThymeleafTemplateEngine(templateResolver);
+    }
+
+    public static synchronized PageCache getInstance() {
+        if (instance == null) {
+            instance = new PageCache();
+        }
+        return instance;
+    }
+
+    public TemplateEngine getTemplateEngine() {
+        return templateEngine;
+    }
+
+    // asset references point at the fingerprinted files
+    public String render(ModelAndView modelAndView) {
+        return StaticAssets.getInstance().rewrite(templateEngine.render(modelAndView));
+    }
+
+    // version identifies the catalog snapshot the renderer reads
+    public String render(String key, long version, Object orderQuantity, Supplier<ModelAndView> renderer) {
+        Page page;
+        synchronized (pages) {
+            page = pages.get(key);
+        }
+        if (page == null || page.version != version) {
+            // rendered outside the lock; two requests may render the same page, the last one is kept
+            page = new Page(version, render(renderer.get()));
+            synchronized (pages) {
+                pages.put(key, page);
+            }
+        }
+        return page.withOrderQuantity(orderQuantity);
+    }
+
+    /* For pages that are not worth caching, e.g. deep cursor pages: renders with the cart count
+     * filled in, like render(key, ...), and keeps nothing.
+     */
+    public String renderUncached(Object orderQuantity, Supplier<ModelAndView> renderer) {
+        return new Page(0, render(renderer.get())).withOrderQuantity(orderQuantity);
+    }
+
+    public void clear() {
+        synchronized (pages) {
+            pages.clear();
+        }
+    }
+
+    private static class Page {
+        private final long version;
+        private final String head;
+        private final String tail;
+
+        Page(long version, String html) {
+            this.version = version;
+            int placeholder = html.indexOf(ORDER_QUANTITY_PLACEHOLDER);
+            if (placeholder < 0) {
+                this.head = html;
+                this.tail = "";
+            } else {
+                this.head = html.substring(0, placeholder);
+                this.tail = html.substring(placeholder + ORDER_QUANTITY_PLACEHOLDER.length());
+            }
+        }
+
+        String withOrderQuantity(Object orderQuantity) {
+            String quantity = orderQuantity == null ? "" : orderQuantity.toString();
+            return new StringBuilder(head.length() + quantity.length() + tail.length())
+                    .append(head).append(quantity).append(tail).toString();
+        }
+    }
+}
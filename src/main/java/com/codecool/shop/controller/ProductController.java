@@ -1,48 +1,249 @@
 package com.codecool.shop.controller;
 
-import com.codecool.shop.dao.ProductCategoryDao;
-import com.codecool.shop.dao.ProductDao;
-import com.codecool.shop.dao.SupplierDao;
-import com.codecool.shop.dao.jdbcImplementation.ProductCategoryDaoJDBC;
-import com.codecool.shop.dao.jdbcImplementation.ProductDaoJDBC;
-import com.codecool.shop.dao.jdbcImplementation.SupplierDaoJDBC;
+import com.codecool.shop.catalog.CatalogSnapshot;
+import com.codecool.shop.catalog.CatalogStore;
+import com.codecool.shop.dao.jdbcImplementation.CatalogChangeFeed;
+import com.codecool.shop.model.Product;
+import com.codecool.shop.model.ProductCategory;
+import com.codecool.shop.model.Supplier;
+import com.codecool.shop.search.FacetValue;
+import com.codecool.shop.search.ProductFacetIndex;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import spark.ModelAndView;
 import spark.Request;
 import spark.Response;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.BiFunction;
 
+/* Every read is served from the current CatalogSnapshot. A request takes the snapshot once and
+ * renders the whole page from it, so a refresh in the middle of a request cannot mix two versions.
+ */
 public class ProductController {
-    private static SupplierDao productSupplierDataStore = SupplierDaoJDBC.getInstance();
-    private static ProductDao productDataStore = ProductDaoJDBC.getInstance();
-    private static ProductCategoryDao productCategoryDataStore = ProductCategoryDaoJDBC.getInstance();
+    private static CatalogStore catalogStore = CatalogStore.getInstance();
+    private static PageCache pageCache = PageCache.getInstance();
 
-    public static ModelAndView renderProducts(Request req, Response res) {
+    // catalog pages come in these sizes only, so limit cannot multiply the cached pages
+    private static final int[] PAGE_SIZES = {12, 24, 48, 96};
+    private static final int MAX_PAGE_SIZE = 100;
+    private static final int SEARCH_RESULTS = 24;
+
+    private static final Logger logger = LoggerFactory.getLogger(ProductController.class);
+
+    /* Builds the first catalog snapshot, so no request sees an empty catalog, and keeps it current
+     * with the changes every node makes. The feed starts first, so nothing committed while the
+     * snapshot is loading is missed.
+     */
+    public static void init() {
+        CatalogChangeFeed changeFeed = CatalogChangeFeed.getInstance();
+        changeFeed.start();
+        catalogStore.followChanges(changeFeed);
+        catalogStore.start();
+    }
+
+    /* Without filters the catalog is paged in id order; with category, supplier or price query
+     * parameters (each may repeat) the pages come from the facet index.
+     */
+    public static String renderProducts(Request req, Response res) {
         req.session(true);
 
-        Map indexRenderParams = paramFiller(req);
-        indexRenderParams.put("products", productDataStore.getAll());
-        return new ModelAndView(indexRenderParams, "product/index");
+        CatalogSnapshot catalog = catalogStore.current();
+        Set<Integer> categoryIds = intParams(req, "category");
+        Set<Integer> supplierIds = intParams(req, "supplier");
+        Set<Integer> priceBands = intParams(req, "price");
+        ProductFacetIndex.Selection selection = catalog.select(categoryIds, supplierIds, priceBands);
+        if (categoryIds.isEmpty() && supplierIds.isEmpty() && priceBands.isEmpty()) {
+            return renderCatalogPage(req, catalog, "/", true, selection,
+                    catalog::getAll,
+                    catalog::getAllBefore);
+        }
+        boolean knownFilters = categoryIds.stream().allMatch(id -> catalog.findProductCategory(id) != null)
+                && supplierIds.stream().allMatch(id -> catalog.findSupplier(id) != null)
+                && priceBands.stream().allMatch(band -> band >= 0 && band < ProductFacetIndex.PRICE_BANDS.length);
+        return renderCatalogPage(req, catalog, "/?" + filterQuery(categoryIds, supplierIds, priceBands), knownFilters,
+                selection,
+                selection::after,
+                selection::before);
+    }
+
+    public static String renderProductsbyCategory(Request req, Response res, int categoryID) {
+        CatalogSnapshot catalog = catalogStore.current();
+        ProductFacetIndex.Selection selection = catalog.select(
+                Collections.singleton(categoryID), Collections.emptySet(), Collections.emptySet());
+        return renderCatalogPage(req, catalog, "/category/" + categoryID,
+                catalog.findProductCategory(categoryID) != null, selection,
+                selection::after,
+                selection::before);
+    }
+
+    public static String renderProductsbySupplier(Request req, Response res, int supplierID) {
+        CatalogSnapshot catalog = catalogStore.current();
+        ProductFacetIndex.Selection selection = catalog.select(
+                Collections.emptySet(), Collections.singleton(supplierID), Collections.emptySet());
+        return renderCatalogPage(req, catalog, "/supplier/" + supplierID,
+                catalog.findSupplier(supplierID) != null, selection,
+                selection::after,
+                selection::before);
+    }
+
+    /* Search results are not cached: queries are free text and answered from the in-memory index.
+     */
+    public static String renderSearch(Request req, Response res) {
+        String query = req.queryParams("q");
+        String limitParam = req.queryParams("limit");
+        int limit = limitParam == null ? SEARCH_RESULTS
+                : Math.max(1, Math.min(MAX_PAGE_SIZE, Integer.parseInt(limitParam)));
+
+        CatalogSnapshot catalog = catalogStore.current();
+        Map renderParams = paramFiller(catalog);
+        renderParams.put("orderQuantity", req.session().attribute("orderQuantity"));
+        renderParams.put("query", query);
+        renderParams.put("products", catalog.search(query, limit));
+        return pageCache.render(new ModelAndView(renderParams, "product/index"));
+    }
+
+    /* Renders one keyset page of a catalog route. The page is selected by the "after" or "before"
+     * product id cursor and the "limit" query parameters; one extra product is fetched to tell
+     * whether a next (or previous) page exists.
+     *
+     * Only the first page of a route is cached, and only when its filters name existing
+     * categories, suppliers and price bands: cursors and filters come from the query string, and a
+     * crawler walking them would otherwise push the popular pages out of the cache.
+     */
+    private static String renderCatalogPage(Request req, CatalogSnapshot catalog, String route, boolean cacheable,
+                                            ProductFacetIndex.Selection facets,
+                                            BiFunction<Integer, Integer, List<Product>> pageAfter,
+                                            BiFunction<Integer, Integer, List<Product>> pageBefore) {
+        String afterParam = req.queryParams("after");
+        String beforeParam = req.queryParams("before");
+        String limitParam = req.queryParams("limit");
+        int limit = pageSize(limitParam);
+        Integer beforeId = beforeParam == null ? null : Integer.parseInt(beforeParam);
+        int afterId = afterParam == null ? 0 : Integer.parseInt(afterParam);
+
+        String separator = route.contains("?") ? "&" : "?";
+        Object orderQuantity = req.session().attribute("orderQuantity");
+        java.util.function.Supplier<ModelAndView> renderer = () -> {
+            List<Product> products;
+            boolean hasPrevious;
+            boolean hasNext;
+            if (beforeId != null) {
+                products = pageBefore.apply(beforeId, limit + 1);
+                hasPrevious = products.size() > limit;
+                if (hasPrevious) {
+                    products = products.subList(1, products.size());
+                }
+                hasNext = true;
+            } else {
+                products = pageAfter.apply(afterId, limit + 1);
+                hasNext = products.size() > limit;
+                if (hasNext) {
+                    products = products.subList(0, limit);
+                }
+                hasPrevious = afterId > 0;
+            }
+
+            Map renderParams = paramFiller(catalog);
+            renderParams.put("products", products);
+            putFacets(renderParams, catalog, facets);
+            if (!products.isEmpty()) {
+                if (hasPrevious) {
+                    renderParams.put("previousPage", route + separator + "before=" + products.get(0).getId() + "&limit=" + limit);
+                }
+                if (hasNext) {
+                    renderParams.put("nextPage", route + separator + "after=" + products.get(products.size() - 1).getId() + "&limit=" + limit);
+                }
+            }
+            return new ModelAndView(renderParams, "product/index");
+        };
+        if (cacheable && beforeId == null && afterId == 0) {
+            return pageCache.render(route + separator + "limit=" + limit, catalog.getGeneration(), orderQuantity, renderer);
+        }
+        return pageCache.renderUncached(orderQuantity, renderer);
+    }
+
+    // the smallest page size that holds the requested number of products, or the largest one
+    private static int pageSize(String limitParam) {
+        if (limitParam == null) {
+            return PAGE_SIZES[0];
+        }
+        int requested = Integer.parseInt(limitParam);
+        for (int size : PAGE_SIZES) {
+            if (requested <= size) {
+                return size;
+            }
+        }
+        return PAGE_SIZES[PAGE_SIZES.length - 1];
+    }
+
+    private static void putFacets(Map renderParams, CatalogSnapshot catalog, ProductFacetIndex.Selection facets) {
+        List<FacetValue> categoryFacets = new ArrayList<>();
+        for (ProductCategory category : catalog.getProductCategories()) {
+            categoryFacets.add(new FacetValue(category.getId(), category.getName(),
+                    facets.getCategoryCounts().getOrDefault(category.getId(), 0),
+                    facets.getCategoryIds().contains(category.getId())));
+        }
+        List<FacetValue> supplierFacets = new ArrayList<>();
+        for (Supplier supplier : catalog.getSuppliers()) {
+            supplierFacets.add(new FacetValue(supplier.getId(), supplier.getName(),
+                    facets.getSupplierCounts().getOrDefault(supplier.getId(), 0),
+                    facets.getSupplierIds().contains(supplier.getId())));
+        }
+        List<FacetValue> priceFacets = new ArrayList<>();
+        float[] bands = ProductFacetIndex.PRICE_BANDS;
+        for (int band = 0; band < bands.length; band++) {
+            String name = band == 0 ? "Under " + (int) bands[1]
+                    : band == bands.length - 1 ? (int) bands[band] + " and up"
+                    : (int) bands[band] + " - " + (int) bands[band + 1];
+            priceFacets.add(new FacetValue(band, name, facets.getPriceBandCounts()[band],
+                    facets.getPriceBands().contains(band)));
+        }
+        renderParams.put("categoryFacets", categoryFacets);
+        renderParams.put("supplierFacets", supplierFacets);
+        renderParams.put("priceFacets", priceFacets);
     }
 
-    public static ModelAndView renderProductsbyCategory(Request req, Response res, int categoryID) {
-        Map categoryRenderParams = paramFiller(req);
-        categoryRenderParams.put("products", productDataStore.getBy(productCategoryDataStore.find(categoryID)));
-        return new ModelAndView(categoryRenderParams, "product/index");
+    // sorted, so equal filters share one cached page
+    private static Set<Integer> intParams(Request req, String name) {
+        Set<Integer> values = new TreeSet<>();
+        String[] params = req.queryParamsValues(name);
+        if (params != null) {
+            for (String param : params) {
+                values.add(Integer.parseInt(param));
+            }
+        }
+        return values;
     }
 
-    public static ModelAndView renderProductsbySupplier(Request req, Response res, int supplierID) {
-        Map supRenderParams = paramFiller(req);
-        supRenderParams.put("products", productDataStore.getBy(productSupplierDataStore.find(supplierID)));
-        return new ModelAndView(supRenderParams, "product/index");
+    private static String filterQuery(Set<Integer> categoryIds, Set<Integer> supplierIds, Set<Integer> priceBands) {
+        StringBuilder query = new StringBuilder();
+        for (Integer id : categoryIds) {
+            query.append("category=").append(id).append('&');
+        }
+        for (Integer id : supplierIds) {
+            query.append("supplier=").append(id).append('&');
+        }
+        for (Integer band : priceBands) {
+            query.append("price=").append(band).append('&');
+        }
+        return query.substring(0, query.length() - 1);
     }
 
-    public static Map paramFiller(Request req) {
+    /* Pages are shared between sessions, so the cart count is rendered as a placeholder
+     * and filled in by PageCache for every request.
+     */
+    public static Map paramFiller(CatalogSnapshot catalog) {
         Map params = new HashMap<>();
-        params.put("orderQuantity", req.session().attribute("orderQuantity"));
-        params.put("categories", productCategoryDataStore.getAll());
-        params.put("suppliers", productSupplierDataStore.getAll());
+        params.put("orderQuantity", PageCache.ORDER_QUANTITY_PLACEHOLDER);
+        params.put("categories", catalog.getProductCategories());
+        params.put("suppliers", catalog.getSuppliers());
         return params;
     }
 }
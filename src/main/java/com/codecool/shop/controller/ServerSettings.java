@@ -0,0 +1,92 @@
+package com.codecool.shop.controller;
+
+import com.codecool.shop.dao.jdbcImplementation.ConnectionPool;
+import com.codecool.shop.dao.jdbcImplementation.JDBCConnectPropParser;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Properties;
+
+/* Threading of the embedded Jetty server, read from the server.* properties at startup.
+ *
+ * server.maxThreads, server.minThreads and server.idleTimeoutMillis size Jetty's worker pool.
+ * server.maxBlockingRequests caps how many of those workers may be inside a route that waits on
+ * the database at the same time, so the in-memory catalog routes keep answering while the
+ * database is slow; server.blockingWaitMillis is how long a request queues for one of those
+ * slots before it is turned away with 503.
+ *
+ * startup.preloadCatalog builds the catalog snapshot before the server reports ready, otherwise
+ * it is loaded in the background; startup.warmUpRounds is how many times every catalog route is
+ * requested before that (0 turns the warm-up off).
+ */
+public class ServerSettings {
+
+    private static final Logger logger = LoggerFactory.getLogger(ServerSettings.class);
+    // Jetty takes acceptor and selector threads from the same pool before any request runs
+    private static final int MIN_POOL_SIZE = 8;
+
+    private final int maxThreads;
+    private final int minThreads;
+    private final int idleTimeoutMillis;
+    private final int maxBlockingRequests;
+    private final int blockingWaitMillis;
+    private final boolean preloadCatalog;
+    private final int warmUpRounds;
+
+    ServerSettings(Properties props) {
+        int configuredMax = ConnectionPool.intProperty(props, "server.maxThreads", 200);
+        if (configuredMax < MIN_POOL_SIZE) {
+            logger.warn("server.maxThreads={} leaves no threads for requests, using {}", configuredMax, MIN_POOL_SIZE);
+        }
+        maxThreads = Math.max(MIN_POOL_SIZE, configuredMax);
+        minThreads = Math.max(1, Math.min(maxThreads, ConnectionPool.intProperty(props, "server.minThreads", 8)));
+        idleTimeoutMillis = ConnectionPool.intProperty(props, "server.idleTimeoutMillis", 60000);
+        // by default half of the workers stay free for requests that do not touch the database
+        maxBlockingRequests = ConnectionPool.intProperty(props, "server.maxBlockingRequests", maxThreads / 2);
+        blockingWaitMillis = ConnectionPool.intProperty(props, "server.blockingWaitMillis", 1000);
+        preloadCatalog = !"false".equalsIgnoreCase(props.getProperty("startup.preloadCatalog", "true").trim());
+        warmUpRounds = Math.max(0, ConnectionPool.intProperty(props, "startup.warmUpRounds", 3));
+    }
+
+    public static ServerSettings load() {
+        Properties props = JDBCConnectPropParser.loadProperties();
+        ServerSettings settings = new ServerSettings(props != null ? props : new Properties());
+        logger.info("Server {}", settings);
+        return settings;
+    }
+
+    public int getMaxThreads() {
+        return maxThreads;
+    }
+
+    public int getMinThreads() {
+        return minThreads;
+    }
+
+    public int getIdleTimeoutMillis() {
+        return idleTimeoutMillis;
+    }
+
+    // 0 or less: routes that block are not limited
+    public int getMaxBlockingRequests() {
+        return maxBlockingRequests;
+    }
+
+    public int getBlockingWaitMillis() {
+        return blockingWaitMillis;
+    }
+
+    public boolean isPreloadCatalog() {
+        return preloadCatalog;
+    }
+
+    public int getWarmUpRounds() {
+        return warmUpRounds;
+    }
+
+    @Override
+    public String toString() {
+        return "threads " + minThreads + ".." + maxThreads + ", idle timeout " + idleTimeoutMillis +
+                " ms, at most " + maxBlockingRequests + " blocking requests";
+    }
+}
@@ -0,0 +1,202 @@
+package com.codecool.shop.controller;
+
+import com.codecool.shop.catalog.CatalogSnapshot;
+import com.codecool.shop.catalog.CatalogStore;
+import com.codecool.shop.dao.jdbcImplementation.CatalogChangeFeed;
+import com.codecool.shop.dao.jdbcImplementation.ConnectionPool;
+import com.codecool.shop.dao.jdbcImplementation.OrderDaoWriteBehind;
+import com.codecool.shop.dao.jdbcImplementation.ProductCategoryDaoJDBC;
+import com.codecool.shop.dao.jdbcImplementation.ProductDaoJDBC;
+import com.codecool.shop.dao.jdbcImplementation.SupplierDaoJDBC;
+import com.codecool.shop.metrics.MetricsRegistry;
+import com.codecool.shop.model.Order;
+import com.codecool.shop.model.Product;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import spark.Request;
+import spark.Response;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static spark.Spark.awaitInitialization;
+
+/* Runs the startup phases in a fixed order and times each of them:
+ *
+ *   data sources  the connection pool, the JDBC DAOs, the order store, the template engine and
+ *                 the compressed static assets, created side by side instead of on the first
+ *                 request that needs them
+ *   catalog       the first catalog snapshot and the change feed that keeps it current
+ *   orders        the carts kept in the order journal by the previous run, if it has one
+ *   warm-up       a few rounds of requests to the catalog routes over HTTP, so the JIT, the
+ *                 template cache and the page cache are warm before real traffic arrives
+ *
+ * /ready answers 503 until markReady() is called after the last phase, so a load balancer only
+ * sends traffic to a warmed-up node.
+ */
+public class Startup {
+
+    private static final Logger logger = LoggerFactory.getLogger(Startup.class);
+    private static final int WARM_UP_TIMEOUT_MILLIS = 10000;
+
+    private final ServerSettings settings;
+    private final int port;
+    private final long startedAt = System.nanoTime();
+    private final Map<String, Long> phaseMillis = new LinkedHashMap<>();
+    private volatile boolean ready;
+
+    public Startup(ServerSettings settings, int port) {
+        this.settings = settings;
+        this.port = port;
+        MetricsRegistry.getInstance().gauge("shop_ready", "1 once startup and warm-up have finished",
+                () -> ready ? 1 : 0);
+    }
+
+    public void initDataSources() {
+        phase("data sources", () -> {
+            ExecutorService starters = Executors.newFixedThreadPool(3, runnable -> {
+                Thread thread = new Thread(runnable, "startup");
+                thread.setDaemon(true);
+                return thread;
+            });
+            try {
+                // the DAOs borrow from the pool, so they start once it is open
+                CompletableFuture<Void> daos = CompletableFuture
+                        .runAsync(ConnectionPool::getInstance, starters)
+                        .thenRun(() -> {
+                            ProductDaoJDBC.getInstance();
+                            SupplierDaoJDBC.getInstance();
+                            ProductCategoryDaoJDBC.getInstance();
+                            OrderDaoWriteBehind.getInstance();
+                            CatalogChangeFeed.getInstance();
+                        });
+                CompletableFuture<Void> templates = CompletableFuture.runAsync(PageCache::getInstance, starters);
+                CompletableFuture<Void> assets = CompletableFuture.runAsync(StaticAssets::getInstance, starters);
+                CompletableFuture.allOf(daos, templates, assets).join();
+            } finally {
+                starters.shutdown();
+            }
+        });
+    }
+
+    public void loadCatalog() {
+        if (settings.isPreloadCatalog()) {
+            phase("catalog", ProductController::init);
+            return;
+        }
+        // serve at once; catalog pages are empty until the first snapshot is published
+        Thread loader = new Thread(() -> phase("catalog", ProductController::init), "catalog-preload");
+        loader.setDaemon(true);
+        loader.start();
+    }
+
+    /* Products of journaled line items are looked up in the catalog, or in the database while it
+     * is still loading.
+     */
+    public void recoverOrders() {
+        phase("orders", () -> {
+            try {
+                List<Order> recovered = OrderDaoWriteBehind.getInstance().recover(id -> {
+                    Product product = CatalogStore.getInstance().current().find(id);
+                    return product != null ? product : ProductDaoJDBC.getInstance().find(id);
+                });
+                logger.info("Recovered {} orders from the order journal", recovered.size());
+            } catch (IOException e) {
+                logger.error("Could not recover the orders from the order journal", e);
+            }
+        });
+    }
+
+    /* Requests every catalog route settings.getWarmUpRounds() times. Call it once the routes are
+     * mapped; failures are logged and do not stop the startup.
+     */
+    public void warmUp() {
+        if (settings.getWarmUpRounds() == 0) {
+            return;
+        }
+        phase("warm-up", () -> {
+            awaitInitialization();
+            List<String> paths = warmUpPaths(CatalogStore.getInstance().current());
+            for (int round = 0; round < settings.getWarmUpRounds(); round++) {
+                for (String path : paths) {
+                    try {
+                        get(path);
+                    } catch (IOException e) {
+                        logger.warn("Warm-up request to {} failed", path, e);
+                    }
+                }
+            }
+        });
+    }
+
+    public void markReady() {
+        ready = true;
+        synchronized (phaseMillis) {
+            logger.info("Started in {} ms {}", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt), phaseMillis);
+        }
+    }
+
+    public Object renderReadiness(Request req, Response res) {
+        res.type("text/plain");
+        if (!ready) {
+            res.status(503);
+            return "starting";
+        }
+        return "ready";
+    }
+
+    private void phase(String name, Runnable phase) {
+        long start = System.nanoTime();
+        phase.run();
+        long elapsed = System.nanoTime() - start;
+        MetricsRegistry.getInstance()
+                .timer("startup_phase_seconds", "Duration of the startup phases", "phase=\"" + name + "\"")
+                .record(elapsed);
+        synchronized (phaseMillis) {
+            phaseMillis.put(name, TimeUnit.NANOSECONDS.toMillis(elapsed));
+        }
+        logger.info("Startup phase {} took {} ms", name, TimeUnit.NANOSECONDS.toMillis(elapsed));
+    }
+
+    // the first page of each catalog route, plus a search for a word that has hits
+    private static List<String> warmUpPaths(CatalogSnapshot catalog) {
+        List<String> paths = new ArrayList<>();
+        paths.add("/");
+        if (!catalog.getProductCategories().isEmpty()) {
+            paths.add("/category/" + catalog.getProductCategories().get(0).getId());
+        }
+        if (!catalog.getSuppliers().isEmpty()) {
+            paths.add("/supplier/" + catalog.getSuppliers().get(0).getId());
+        }
+        List<Product> first = catalog.getAll(0, 1);
+        if (!first.isEmpty()) {
+            String word = first.get(0).getName().split("\\s+")[0].replaceAll("[^\\p{Alnum}]", "");
+            paths.add("/search?q=" + word);
+        }
+        return paths;
+    }
+
+    private void get(String path) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL("http://localhost:" + port + path).openConnection();
+        connection.setConnectTimeout(WARM_UP_TIMEOUT_MILLIS);
+        connection.setReadTimeout(WARM_UP_TIMEOUT_MILLIS);
+        try (InputStream body = connection.getInputStream()) {
+            byte[] buffer = new byte[8192];
+            while (body.read(buffer) >= 0) {
+                // read to the end, so the whole page is rendered and sent
+            }
+        } finally {
+            connection.disconnect();
+        }
+    }
+}
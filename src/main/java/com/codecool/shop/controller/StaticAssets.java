@@ -0,0 +1,297 @@
+package com.codecool.shop.controller;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import spark.Request;
+import spark.Response;
+
+import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+import static spark.Spark.halt;
+
+/* The files under /public on the classpath, read once at startup and served under fingerprinted
+ * names: custom.css becomes custom.<hash>.css, where the hash is taken from the file's content.
+ * A changed file gets a new name, so responses are cached by browsers for a year without
+ * revalidation. Rendered pages are passed through rewrite(), which swaps src and href attributes
+ * pointing at a known file for its fingerprinted name.
+ *
+ * Text files are gzipped at load time, and a brotli variant is served when a .br file of it is
+ * shipped next to it in /public (the JDK has no brotli encoder). The variant is picked from
+ * Accept-Encoding; the plain files stay available under their own names through staticFileLocation.
+ */
+public class StaticAssets {
+
+    private static final Logger logger = LoggerFactory.getLogger(StaticAssets.class);
+
+    private static final String ROOT = "/public";
+    private static final String CACHE_CONTROL = "public, max-age=31536000, immutable";
+    private static final int FINGERPRINT_HEX_DIGITS = 10;
+    private static final Pattern ASSET_REFERENCE = Pattern.compile("(\\s(?:src|href)=\")(/[^\"?#]+)\"");
+
+    private static final Map<String, String> CONTENT_TYPES = new HashMap<>();
+
+    static {
+        CONTENT_TYPES.put("css", "text/css; charset=utf-8");
+        CONTENT_TYPES.put("js", "application/javascript; charset=utf-8");
+        CONTENT_TYPES.put("json", "application/json; charset=utf-8");
+        CONTENT_TYPES.put("html", "text/html; charset=utf-8");
+        CONTENT_TYPES.put("txt", "text/plain; charset=utf-8");
+        CONTENT_TYPES.put("svg", "image/svg+xml");
+        CONTENT_TYPES.put("ico", "image/x-icon");
+        CONTENT_TYPES.put("jpg", "image/jpeg");
+        CONTENT_TYPES.put("jpeg", "image/jpeg");
+        CONTENT_TYPES.put("png", "image/png");
+        CONTENT_TYPES.put("gif", "image/gif");
+        CONTENT_TYPES.put("woff2", "font/woff2");
+    }
+
+    private static StaticAssets instance = null;
+
+    // plain path, e.g. /css/custom.css, to fingerprinted path, and fingerprinted path to asset
+    private final Map<String, String> fingerprinted = new HashMap<>();
+    private final Map<String, Asset> assets = new HashMap<>();
+
+    private StaticAssets() {
+        long start = System.nanoTime();
+        try {
+            URL root = StaticAssets.class.getResource(ROOT);
+            if (root == null) {
+                logger.warn("No {} directory on the classpath, no static assets to serve", ROOT);
+                return;
+            }
+            URI uri = root.toURI();
+            if ("jar".equals(uri.getScheme())) {
+                try (FileSystem jar = FileSystems.newFileSystem(uri, Collections.emptyMap())) {
+                    load(jar.getPath(ROOT));
+                }
+            } else {
+                load(Paths.get(uri));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read the static assets in " + ROOT, e);
+        } catch (URISyntaxException e) {
+            throw new IllegalStateException("Could not read the static assets in " + ROOT, e);
+        }
+        logger.info("Loaded {} static assets in {} ms", assets.size(), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    public static synchronized StaticAssets getInstance() {
+        if (instance == null) {
+            instance = new StaticAssets();
+        }
+        return instance;
+    }
+
+    /* The fingerprinted paths, each to be mapped to serve().
+     */
+    public List<String> paths() {
+        return new ArrayList<>(assets.keySet());
+    }
+
+    public boolean isAsset(String path) {
+        return assets.containsKey(path);
+    }
+
+    public String rewrite(String html) {
+        Matcher matcher = ASSET_REFERENCE.matcher(html);
+        StringBuffer rewritten = null;
+        while (matcher.find()) {
+            String path = fingerprinted.get(matcher.group(2));
+            if (path != null) {
+                if (rewritten == null) {
+                    rewritten = new StringBuffer(html.length() + 256);
+                }
+                matcher.appendReplacement(rewritten, Matcher.quoteReplacement(matcher.group(1) + path + "\""));
+            }
+        }
+        if (rewritten == null) {
+            return html;
+        }
+        matcher.appendTail(rewritten);
+        return rewritten.toString();
+    }
+
+    /* Writes the response itself, so Spark does not gzip an already compressed body again.
+     */
+    public Object serve(Request req, Response res) throws IOException {
+        Asset asset = assets.get(req.uri());
+        if (asset == null) {
+            halt(404);
+            return null;
+        }
+        String acceptEncoding = req.headers("Accept-Encoding");
+        byte[] body = asset.identity;
+        String encoding = null;
+        if (asset.brotli != null && accepts(acceptEncoding, "br")) {
+            body = asset.brotli;
+            encoding = "br";
+        } else if (asset.gzip != null && accepts(acceptEncoding, "gzip")) {
+            body = asset.gzip;
+            encoding = "gzip";
+        }
+        HttpServletResponse raw = res.raw();
+        raw.setContentType(asset.contentType);
+        raw.setHeader("Cache-Control", CACHE_CONTROL);
+        if (asset.gzip != null || asset.brotli != null) {
+            raw.setHeader("Vary", "Accept-Encoding");
+        }
+        if (encoding != null) {
+            raw.setHeader("Content-Encoding", encoding);
+        }
+        raw.setContentLength(body.length);
+        if (!"HEAD".equals(req.requestMethod())) {
+            raw.getOutputStream().write(body);
+        }
+        raw.flushBuffer();
+        return "";
+    }
+
+    private void load(Path root) throws IOException {
+        List<Path> files;
+        try (Stream<Path> walk = Files.walk(root)) {
+            files = walk.filter(Files::isRegularFile).collect(Collectors.toList());
+        }
+        for (Path file : files) {
+            String name = file.getFileName().toString();
+            if (name.endsWith(".br") || name.endsWith(".gz")) {
+                continue;
+            }
+            String path = "/" + root.relativize(file).toString().replace(file.getFileSystem().getSeparator(), "/");
+            byte[] content = Files.readAllBytes(file);
+            String extension = extension(name);
+            String contentType = CONTENT_TYPES.getOrDefault(extension, "application/octet-stream");
+            byte[] gzip = null;
+            byte[] brotli = null;
+            if (compressible(contentType)) {
+                gzip = smallerOrNull(gzip(content), content);
+                Path brotliFile = file.resolveSibling(name + ".br");
+                if (Files.isRegularFile(brotliFile)) {
+                    brotli = smallerOrNull(Files.readAllBytes(brotliFile), content);
+                }
+            }
+            String fingerprintedPath = withFingerprint(path, extension, fingerprint(content));
+            fingerprinted.put(path, fingerprintedPath);
+            assets.put(fingerprintedPath, new Asset(contentType, content, gzip, brotli));
+        }
+    }
+
+    private static String extension(String name) {
+        int dot = name.lastIndexOf('.');
+        return dot < 0 ? "" : name.substring(dot + 1).toLowerCase();
+    }
+
+    private static boolean compressible(String contentType) {
+        return contentType.startsWith("text/") || contentType.startsWith("application/javascript")
+                || contentType.startsWith("application/json") || contentType.startsWith("image/svg+xml");
+    }
+
+    private static String withFingerprint(String path, String extension, String fingerprint) {
+        if (extension.isEmpty()) {
+            return path + "." + fingerprint;
+        }
+        String base = path.substring(0, path.length() - extension.length() - 1);
+        return base + "." + fingerprint + "." + extension;
+    }
+
+    private static String fingerprint(byte[] content) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(content);
+            StringBuilder hex = new StringBuilder();
+            for (int i = 0; hex.length() < FINGERPRINT_HEX_DIGITS; i++) {
+                hex.append(String.format("%02x", digest[i]));
+            }
+            return hex.substring(0, FINGERPRINT_HEX_DIGITS);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static byte[] gzip(byte[] content) throws IOException {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(content.length / 2 + 64);
+        try (GZIPOutputStream out = new GZIPOutputStream(compressed) {
+            {
+                // compressed once, served many times
+                def.setLevel(Deflater.BEST_COMPRESSION);
+            }
+        }) {
+            out.write(content);
+        }
+        return compressed.toByteArray();
+    }
+
+    // a variant that saves nothing is not worth the Content-Encoding
+    private static byte[] smallerOrNull(byte[] variant, byte[] content) {
+        return variant.length < content.length ? variant : null;
+    }
+
+    // true if the coding, or failing that "*", is listed without q=0
+    static boolean accepts(String acceptEncoding, String coding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        Boolean wildcard = null;
+        for (String entry : acceptEncoding.split(",")) {
+            String[] parts = entry.split(";");
+            String name = parts[0].trim();
+            if (name.equalsIgnoreCase(coding)) {
+                return quality(parts) > 0;
+            }
+            if (name.equals("*")) {
+                wildcard = quality(parts) > 0;
+            }
+        }
+        return wildcard != null && wildcard;
+    }
+
+    private static double quality(String[] parts) {
+        for (int i = 1; i < parts.length; i++) {
+            String parameter = parts[i].trim();
+            if (parameter.startsWith("q=")) {
+                try {
+                    return Double.parseDouble(parameter.substring(2));
+                } catch (NumberFormatException e) {
+                    return 0;
+                }
+            }
+        }
+        return 1;
+    }
+
+    private static class Asset {
+        private final String contentType;
+        private final byte[] identity;
+        private final byte[] gzip;
+        private final byte[] brotli;
+
+        Asset(String contentType, byte[] identity, byte[] gzip, byte[] brotli) {
+            this.contentType = contentType;
+            this.identity = identity;
+            this.gzip = gzip;
+            this.brotli = brotli;
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.codecool.shop.dao;
+
+/* One row of the catalog_change table: a catalog record that was inserted, updated or deleted by
+ * any process, or a whole table when rowId is null (TRUNCATE).
+ */
+public class CatalogChange {
+
+    public enum Table {
+        PRODUCT, SUPPLIER, PRODUCT_CATEGORY;
+
+        // the table names the trigger records, as PostgreSQL folds them
+        public static Table of(String tableName) {
+            switch (tableName) {
+                case "product":
+                    return PRODUCT;
+                case "supplier":
+                    return SUPPLIER;
+                case "productcategory":
+                    return PRODUCT_CATEGORY;
+                default:
+                    throw new IllegalArgumentException("Not a catalog table: " + tableName);
+            }
+        }
+    }
+
+    private final long seq;
+    private final Table table;
+    private final Integer rowId;
+
+    public CatalogChange(long seq, Table table, Integer rowId) {
+        this.seq = seq;
+        this.table = table;
+        this.rowId = rowId;
+    }
+
+    public long getSeq() {
+        return seq;
+    }
+
+    public Table getTable() {
+        return table;
+    }
+
+    public Integer getRowId() {
+        return rowId;
+    }
+
+    public boolean isWholeTable() {
+        return rowId == null;
+    }
+
+    @Override
+    public String toString() {
+        return seq + ":" + table + (rowId == null ? "" : "/" + rowId);
+    }
+}
@@ -0,0 +1,17 @@
+package com.codecool.shop.dao;
+
+import java.util.List;
+
+/* Receives the catalog changes made by any process, in commit order as far as the feed can tell,
+ * a batch per poll. Called on the feed's thread.
+ */
+public interface CatalogChangeListener {
+
+    void catalogChanged(List<CatalogChange> changes);
+
+    /* The feed stopped waiting for changes it could not read yet. They may still be committed
+     * later and would then never be delivered, so whatever was derived from the catalog has to be
+     * loaded again.
+     */
+    void changesMissed();
+}
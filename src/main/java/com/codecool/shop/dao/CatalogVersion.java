@@ -0,0 +1,22 @@
+package com.codecool.shop.dao;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/* Monotonic counter of catalog changes. Every DAO write to products, suppliers or categories bumps it,
+ * so anything derived from the catalog (e.g. rendered pages) can tell whether it is still current.
+ */
+public class CatalogVersion {
+
+    private static final AtomicLong version = new AtomicLong();
+
+    private CatalogVersion() {
+    }
+
+    public static long current() {
+        return version.get();
+    }
+
+    public static long bump() {
+        return version.incrementAndGet();
+    }
+}
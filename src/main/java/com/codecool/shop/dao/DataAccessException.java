@@ -0,0 +1,20 @@
+package com.codecool.shop.dao;
+
+import java.sql.SQLException;
+
+/* A failed database call on a path where an empty or partial result would be taken for the real
+ * one, e.g. an export or a catalog snapshot. Unchecked, so the DAO interfaces stay as they are.
+ */
+public class DataAccessException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public DataAccessException(String message, SQLException cause) {
+        super(message, cause);
+    }
+
+    @Override
+    public synchronized SQLException getCause() {
+        return (SQLException) super.getCause();
+    }
+}
@@ -1,5 +1,6 @@
 package com.codecool.shop.dao;
 
+import com.codecool.shop.model.LineItem;
 import com.codecool.shop.model.Order;
 
 import java.util.List;
@@ -9,7 +10,15 @@ public interface OrderDao {
 
     Order find(int id);
 
+    // adds the item to the order; implementations that keep a log of changes record it
+    void addLineItem(Order order, LineItem item);
+
+    // called after the order's line items changed, so implementations that persist orders can store it
+    void update(Order order);
+
     void remove(int id);
 
+    void removeAll();
+
     List<Order> getAll();
 }
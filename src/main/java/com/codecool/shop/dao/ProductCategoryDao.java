@@ -14,6 +14,7 @@ public interface ProductCategoryDao {
 
     void removeAll();
 
+    // throws DataAccessException if they cannot be read
     List<ProductCategory> getAll();
 
 }
@@ -5,11 +5,13 @@ import com.codecool.shop.model.ProductCategory;
 import com.codecool.shop.model.Supplier;
 
 import java.util.List;
+import java.util.function.Consumer;
 
 public interface ProductDao {
 
     void add(Product product);
 
+    // null if there is no such product; throws DataAccessException if it cannot be read
     Product find(int id);
 
     void remove(int id);
@@ -22,4 +24,22 @@ public interface ProductDao {
 
     List<Product> getBy(ProductCategory productCategory);
 
+    // keyset pagination: at most limit products with id greater than afterId, ordered by id
+    List<Product> getAll(int afterId, int limit);
+
+    List<Product> getBy(Supplier supplier, int afterId, int limit);
+
+    List<Product> getBy(ProductCategory productCategory, int afterId, int limit);
+
+    // the last limit products with id less than beforeId, still ordered by id
+    List<Product> getAllBefore(int beforeId, int limit);
+
+    List<Product> getByBefore(Supplier supplier, int beforeId, int limit);
+
+    List<Product> getByBefore(ProductCategory productCategory, int beforeId, int limit);
+
+    // streams every product in id order to the visitor without holding the whole catalog in memory;
+    // throws DataAccessException if the products cannot all be read
+    void visitAll(Consumer<Product> visitor);
+
 }
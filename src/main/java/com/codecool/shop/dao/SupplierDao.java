@@ -14,6 +14,7 @@ public interface SupplierDao {
 
     void removeAll();
 
+    // throws DataAccessException if they cannot be read
     List<Supplier> getAll();
 
 }
@@ -0,0 +1,211 @@
+package com.codecool.shop.dao.jdbcImplementation;
+
+import com.codecool.shop.dao.CatalogChange;
+import com.codecool.shop.dao.CatalogChangeListener;
+import com.codecool.shop.metrics.Histogram;
+import com.codecool.shop.metrics.MetricsRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.TreeSet;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+
+/* Polls the catalog_change table, filled by triggers on Product, Supplier and ProductCategory, and
+ * hands new rows to the subscribed listeners. Every node runs its own feed, so a write on any node
+ * reaches the catalog snapshots of all of them within catalog.pollIntervalMillis.
+ *
+ * Sequence values are taken when a row is inserted but become visible at commit, so a smaller seq
+ * can show up after a bigger one. The feed remembers the seqs it delivered above the last gap-free
+ * one and reads from there. A gap still open after catalog.gapTimeoutMillis is most likely a rolled
+ * back transaction and is skipped; as a slow commit could still fill it, the listeners are told
+ * that changes may have been missed.
+ */
+public class CatalogChangeFeed extends JDBCAbstract {
+
+    private static final Logger logger = LoggerFactory.getLogger(CatalogChangeFeed.class);
+    private static final int MAX_ROWS_PER_POLL = 10000;
+    private static final long PRUNE_INTERVAL_MILLIS = 60 * 1000;
+
+    private static CatalogChangeFeed instance = null;
+
+    private final long pollIntervalMillis;
+    private final int retentionMinutes;
+    private final long gapTimeoutMillis;
+    private final List<CatalogChangeListener> listeners = new CopyOnWriteArrayList<>();
+    private final LongAdder changesRead;
+    private final Histogram delay;
+
+    // guarded by this: every change up to lastSeq has been delivered, and so have the ones in delivered
+    private long lastSeq = -1;
+    private final TreeSet<Long> delivered = new TreeSet<>();
+    private long gapSince;
+    private long lastPrune;
+    private Thread thread;
+
+    CatalogChangeFeed(Properties props) {
+        pollIntervalMillis = ConnectionPool.intProperty(props, "catalog.pollIntervalMillis", 1000);
+        retentionMinutes = ConnectionPool.intProperty(props, "catalog.changeRetentionMinutes", 60);
+        gapTimeoutMillis = ConnectionPool.intProperty(props, "catalog.gapTimeoutMillis", 10000);
+
+        MetricsRegistry metrics = MetricsRegistry.getInstance();
+        changesRead = metrics.counter("catalog_changes_total", "Catalog changes read from catalog_change", "");
+        delay = metrics.timer("catalog_change_delay_seconds", "Time from a catalog change to its delivery on this node", "");
+    }
+
+    public static synchronized CatalogChangeFeed getInstance() {
+        if (instance == null) {
+            Properties props = JDBCConnectPropParser.loadProperties();
+            instance = new CatalogChangeFeed(props != null ? props : new Properties());
+        }
+        return instance;
+    }
+
+    public void subscribe(CatalogChangeListener listener) {
+        listeners.add(listener);
+    }
+
+    /* Starts following the changes made from now on, polling on a daemon thread.
+     */
+    public synchronized void start() {
+        if (thread != null) {
+            return;
+        }
+        skipToLatest();
+        thread = new Thread(this::pollLoop, "catalog-change-feed");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public synchronized void stop() {
+        if (thread != null) {
+            thread.interrupt();
+            thread = null;
+        }
+    }
+
+    /* Forgets everything before the newest change in the table.
+     */
+    synchronized void skipToLatest() {
+        try (Connection connection = getConnection();
+             PreparedStatement preparedStatement = connection.prepareStatement("SELECT COALESCE(MAX(seq), 0) FROM catalog_change;");
+             ResultSet result = preparedStatement.executeQuery()) {
+            result.next();
+            lastSeq = result.getLong(1);
+            delivered.clear();
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /* Reads and delivers the changes committed since the last poll; returns how many there were.
+     */
+    public synchronized int poll() throws SQLException {
+        if (lastSeq < 0) {
+            skipToLatest();
+            return 0;
+        }
+        String query = "SELECT seq, table_name, row_id, " +
+                "EXTRACT(EPOCH FROM clock_timestamp() - changed_at) AS age_seconds " +
+                "FROM catalog_change WHERE seq > ? ORDER BY seq LIMIT ?;";
+        List<CatalogChange> changes = new ArrayList<>();
+        double maxAgeSeconds = 0;
+        try (Connection connection = getConnection();
+             PreparedStatement preparedStatement = connection.prepareStatement(query)) {
+            preparedStatement.setLong(1, lastSeq);
+            preparedStatement.setInt(2, MAX_ROWS_PER_POLL);
+            try (ResultSet result = preparedStatement.executeQuery()) {
+                while (result.next()) {
+                    long seq = result.getLong("seq");
+                    if (!delivered.add(seq)) {
+                        continue;
+                    }
+                    int rowId = result.getInt("row_id");
+                    Integer id = result.wasNull() ? null : rowId;
+                    changes.add(new CatalogChange(seq, CatalogChange.Table.of(result.getString("table_name")), id));
+                    maxAgeSeconds = Math.max(maxAgeSeconds, result.getDouble("age_seconds"));
+                }
+            }
+            pruneOldChanges(connection);
+        }
+        boolean missed = advance();
+
+        if (!changes.isEmpty()) {
+            changesRead.add(changes.size());
+            delay.record((long) (maxAgeSeconds * 1e9));
+            for (CatalogChangeListener listener : listeners) {
+                try {
+                    listener.catalogChanged(changes);
+                } catch (RuntimeException e) {
+                    logger.error("Catalog change listener {} failed", listener, e);
+                }
+            }
+        }
+        if (missed) {
+            for (CatalogChangeListener listener : listeners) {
+                try {
+                    listener.changesMissed();
+                } catch (RuntimeException e) {
+                    logger.error("Catalog change listener {} failed", listener, e);
+                }
+            }
+        }
+        return changes.size();
+    }
+
+    // returns whether a gap was skipped
+    private boolean advance() {
+        while (!delivered.isEmpty() && delivered.first() == lastSeq + 1) {
+            lastSeq = delivered.pollFirst();
+        }
+        if (delivered.isEmpty()) {
+            gapSince = 0;
+            return false;
+        }
+        long now = System.currentTimeMillis();
+        if (gapSince == 0) {
+            gapSince = now;
+        } else if (now - gapSince > gapTimeoutMillis) {
+            logger.warn("Catalog change seqs {} to {} still missing after {} ms, skipping them",
+                    lastSeq + 1, delivered.first() - 1, gapTimeoutMillis);
+            lastSeq = delivered.first() - 1;
+            gapSince = 0;
+            advance();
+            return true;
+        }
+        return false;
+    }
+
+    private void pruneOldChanges(Connection connection) throws SQLException {
+        long now = System.currentTimeMillis();
+        if (now - lastPrune < PRUNE_INTERVAL_MILLIS) {
+            return;
+        }
+        lastPrune = now;
+        try (PreparedStatement preparedStatement = connection.prepareStatement(
+                "DELETE FROM catalog_change WHERE changed_at < now() - ? * INTERVAL '1 minute';")) {
+            preparedStatement.setInt(1, retentionMinutes);
+            preparedStatement.executeUpdate();
+        }
+    }
+
+    private void pollLoop() {
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                Thread.sleep(pollIntervalMillis);
+                poll();
+            } catch (InterruptedException e) {
+                return;
+            } catch (SQLException | RuntimeException e) {
+                logger.warn("Polling catalog changes failed, retrying in {} ms", pollIntervalMillis, e);
+            }
+        }
+    }
+}
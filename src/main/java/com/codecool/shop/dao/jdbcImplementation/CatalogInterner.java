@@ -0,0 +1,98 @@
+package com.codecool.shop.dao.jdbcImplementation;
+
+import com.codecool.shop.model.ProductCategory;
+import com.codecool.shop.model.Supplier;
+
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/* Canonical suppliers and categories and deduplicated strings for the rows the JDBC DAOs read.
+ *
+ * A supplier or category row maps to the instance built for the same id earlier, as long as its
+ * columns are unchanged, so every product of a supplier shares one Supplier however many queries
+ * loaded them. A changed row gets a new instance; products loaded before keep the old one.
+ * The canonical instances are shared: callers must not modify them.
+ *
+ * Strings go through a small lossy pool: equal strings read close to each other (repeated
+ * descriptions of a generated or imported catalog) become one instance, while the pool itself
+ * never grows and a miss just replaces the slot.
+ */
+public class CatalogInterner {
+
+    private static final int STRING_POOL_SIZE = 1 << 14;
+
+    private static CatalogInterner instance = null;
+
+    private final ConcurrentMap<Integer, Supplier> suppliers = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Integer, ProductCategory> productCategories = new ConcurrentHashMap<>();
+    // racy but safe: Strings are immutable, a lost update only costs a duplicate
+    private final String[] strings = new String[STRING_POOL_SIZE];
+
+    CatalogInterner() {
+    }
+
+    public static synchronized CatalogInterner getInstance() {
+        if (instance == null) {
+            instance = new CatalogInterner();
+        }
+        return instance;
+    }
+
+    public Supplier supplier(int id, String name, String description) {
+        Supplier supplier = suppliers.get(id);
+        if (supplier != null
+                && Objects.equals(supplier.getName(), name)
+                && Objects.equals(supplier.getDescription(), description)) {
+            return supplier;
+        }
+        supplier = new Supplier(string(name), string(description));
+        supplier.setId(id);
+        suppliers.put(id, supplier);
+        return supplier;
+    }
+
+    public ProductCategory productCategory(int id, String name, String department, String description) {
+        ProductCategory productCategory = productCategories.get(id);
+        if (productCategory != null
+                && Objects.equals(productCategory.getName(), name)
+                && Objects.equals(productCategory.getDepartment(), department)
+                && Objects.equals(productCategory.getDescription(), description)) {
+            return productCategory;
+        }
+        productCategory = new ProductCategory(string(name), string(department), string(description));
+        productCategory.setId(id);
+        productCategories.put(id, productCategory);
+        return productCategory;
+    }
+
+    public String string(String value) {
+        if (value == null) {
+            return null;
+        }
+        int hash = value.hashCode();
+        int slot = (hash ^ (hash >>> 16)) & (STRING_POOL_SIZE - 1);
+        String pooled = strings[slot];
+        if (value.equals(pooled)) {
+            return pooled;
+        }
+        strings[slot] = value;
+        return value;
+    }
+
+    public void removeSupplier(int id) {
+        suppliers.remove(id);
+    }
+
+    public void removeProductCategory(int id) {
+        productCategories.remove(id);
+    }
+
+    public void removeAllSuppliers() {
+        suppliers.clear();
+    }
+
+    public void removeAllProductCategories() {
+        productCategories.clear();
+    }
+}
@@ -0,0 +1,299 @@
+package com.codecool.shop.dao.jdbcImplementation;
+
+import com.codecool.shop.metrics.Histogram;
+import com.codecool.shop.metrics.MetricsRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/* Bounded pool of JDBC connections shared by every JDBC DAO.
+ * Connections handed out are proxies: closing them returns the physical connection to the pool,
+ * so DAO methods borrow one per call with try-with-resources.
+ */
+public class ConnectionPool {
+
+    private static final Logger logger = LoggerFactory.getLogger(ConnectionPool.class);
+    private static ConnectionPool instance = null;
+    private static final Histogram waitTime = MetricsRegistry.getInstance()
+            .timer("db_connection_wait_seconds", "Time spent waiting to borrow a pooled connection", "");
+
+    private final String database;
+    private final String dbUser;
+    private final String dbPassword;
+    private final int minSize;
+    private final int maxSize;
+    private final long acquireTimeoutMillis;
+    private final int validationTimeoutSeconds;
+    private final long leakDetectionThresholdMillis;
+
+    private final BlockingDeque<Connection> idleConnections = new LinkedBlockingDeque<>();
+    private final Set<PooledConnection> leasedConnections = ConcurrentHashMap.newKeySet();
+    private final Semaphore permits;
+    private final AtomicLong statementCount = new AtomicLong();
+    private final ScheduledExecutorService leakDetector;
+
+    private ConnectionPool(Properties props) {
+        int cores = Runtime.getRuntime().availableProcessors();
+        database = props.getProperty("database");
+        dbUser = props.getProperty("username");
+        dbPassword = props.getProperty("password");
+        maxSize = Math.max(1, intProperty(props, "pool.maxSize", cores * 2));
+        minSize = Math.min(maxSize, intProperty(props, "pool.minSize", 1));
+        acquireTimeoutMillis = intProperty(props, "pool.acquireTimeoutMillis", 5000);
+        validationTimeoutSeconds = intProperty(props, "pool.validationTimeoutSeconds", 2);
+        leakDetectionThresholdMillis = intProperty(props, "pool.leakDetectionThresholdMillis", 30000);
+        permits = new Semaphore(maxSize, true);
+
+        openInitialConnections();
+
+        leakDetector = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "connection-pool-leak-detector");
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (leakDetectionThresholdMillis > 0) {
+            long period = Math.max(1000, leakDetectionThresholdMillis / 2);
+            leakDetector.scheduleAtFixedRate(this::detectLeaks, period, period, TimeUnit.MILLISECONDS);
+        }
+
+        MetricsRegistry metrics = MetricsRegistry.getInstance();
+        metrics.gauge("db_connections_active", "Pooled connections currently borrowed", this::getActiveCount);
+        metrics.gauge("db_connections_idle", "Pooled connections currently idle", this::getIdleCount);
+        metrics.gauge("db_connections_max", "Upper bound of the connection pool", this::getMaxSize);
+    }
+
+    public static synchronized ConnectionPool getInstance() {
+        if (instance == null) {
+            Properties props = JDBCConnectPropParser.loadProperties();
+            instance = new ConnectionPool(props != null ? props : new Properties());
+        }
+        return instance;
+    }
+
+    public Connection getConnection() throws SQLException {
+        long waitStart = System.nanoTime();
+        try {
+            if (!permits.tryAcquire(acquireTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                throw new SQLException("Timed out after " + acquireTimeoutMillis + " ms waiting for a database connection");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a database connection", e);
+        } finally {
+            waitTime.record(System.nanoTime() - waitStart);
+        }
+
+        try {
+            Connection physical;
+            while ((physical = idleConnections.pollFirst()) != null) {
+                if (isValid(physical)) {
+                    return lease(physical);
+                }
+                closeQuietly(physical);
+            }
+            return lease(openConnection());
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    public int getActiveCount() {
+        return leasedConnections.size();
+    }
+
+    public int getIdleCount() {
+        return idleConnections.size();
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /* Number of statements prepared or created on pooled connections since startup.
+     */
+    public long getStatementCount() {
+        return statementCount.get();
+    }
+
+    public void shutdown() {
+        leakDetector.shutdownNow();
+        Connection physical;
+        while ((physical = idleConnections.pollFirst()) != null) {
+            closeQuietly(physical);
+        }
+    }
+
+    /* Opens the minSize connections side by side: each one costs a network round trip and an
+     * authentication, which would otherwise add up before the first DAO can run.
+     */
+    private void openInitialConnections() {
+        if (minSize <= 0) {
+            return;
+        }
+        ExecutorService openers = Executors.newFixedThreadPool(Math.min(minSize, 8), runnable -> {
+            Thread thread = new Thread(runnable, "connection-pool-opener");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            List<Future<Connection>> opened = new ArrayList<>();
+            for (int i = 0; i < minSize; i++) {
+                opened.add(openers.submit(this::openConnection));
+            }
+            for (Future<Connection> connection : opened) {
+                try {
+                    idleConnections.offer(connection.get());
+                } catch (ExecutionException e) {
+                    logger.warn("Opening a pooled connection failed", e.getCause());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+        } finally {
+            openers.shutdown();
+        }
+    }
+
+    private Connection openConnection() throws SQLException {
+        return DriverManager.getConnection(database, dbUser, dbPassword);
+    }
+
+    private boolean isValid(Connection physical) {
+        try {
+            return !physical.isClosed() && physical.isValid(validationTimeoutSeconds);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private Connection lease(Connection physical) {
+        PooledConnection pooled = new PooledConnection(physical);
+        leasedConnections.add(pooled);
+        return (Connection) Proxy.newProxyInstance(
+                ConnectionPool.class.getClassLoader(),
+                new Class<?>[]{Connection.class},
+                pooled);
+    }
+
+    private void release(PooledConnection pooled) {
+        if (!leasedConnections.remove(pooled)) {
+            return;
+        }
+        Connection physical = pooled.physical;
+        try {
+            if (physical.isClosed()) {
+                return;
+            }
+            if (!physical.getAutoCommit()) {
+                physical.rollback();
+                physical.setAutoCommit(true);
+            }
+            idleConnections.offerFirst(physical);
+        } catch (SQLException e) {
+            closeQuietly(physical);
+        } finally {
+            permits.release();
+        }
+    }
+
+    private void detectLeaks() {
+        long now = System.currentTimeMillis();
+        for (PooledConnection pooled : leasedConnections) {
+            if (!pooled.leakReported && now - pooled.borrowedAt > leakDetectionThresholdMillis) {
+                pooled.leakReported = true;
+                logger.warn("Connection held for more than {} ms, possible leak", leakDetectionThresholdMillis);
+                logger.warn("Connection was borrowed here", pooled.borrowedBy);
+            }
+        }
+    }
+
+    private static void closeQuietly(Connection physical) {
+        try {
+            physical.close();
+        } catch (SQLException e) {
+            logger.debug("Closing a pooled connection failed", e);
+        }
+    }
+
+    public static int intProperty(Properties props, String key, int defaultValue) {
+        String value = props.getProperty(key);
+        if (value == null || value.trim().isEmpty()) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            logger.warn("{} is not a number: {}, using {}", key, value, defaultValue);
+            return defaultValue;
+        }
+    }
+
+    private class PooledConnection implements InvocationHandler {
+
+        private final Connection physical;
+        private final long borrowedAt = System.currentTimeMillis();
+        private final Throwable borrowedBy;
+        private volatile boolean closed;
+        private volatile boolean leakReported;
+
+        PooledConnection(Connection physical) {
+            this.physical = physical;
+            this.borrowedBy = leakDetectionThresholdMillis > 0 ? new Throwable("Connection borrowed") : null;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!closed) {
+                        closed = true;
+                        release(this);
+                    }
+                    return null;
+                case "isClosed":
+                    return closed || physical.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Pooled" + physical.toString();
+            }
+            if (closed) {
+                throw new SQLException("Connection has already been returned to the pool");
+            }
+            if (method.getName().startsWith("prepare") || method.getName().equals("createStatement")) {
+                statementCount.incrementAndGet();
+            }
+            try {
+                return method.invoke(physical, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+}
@@ -1,37 +1,18 @@
 package com.codecool.shop.dao.jdbcImplementation;
 
 
+import com.codecool.shop.dao.CatalogVersion;
+
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
-import java.util.ArrayList;
 
 abstract class JDBCAbstract {
 
-    private static ArrayList<String> dbProps = JDBCConnectPropParser.connectProps();
-    String DATABASE;
-    String DB_USER;
-    String DB_PASSWORD;
-    PreparedStatement preparedStatement;
-    Connection dbConnection;
-
-    public JDBCAbstract() {
-        try {
-            DATABASE = dbProps.get(0);
-            DB_USER = dbProps.get(1);
-            DB_PASSWORD = dbProps.get(2);
-            dbConnection = getConnection();
-        } catch (SQLException e) {
-            e.getStackTrace();
-        }
-    }
+    private static ConnectionPool connectionPool = ConnectionPool.getInstance();
 
     public Connection getConnection() throws SQLException {
-        return DriverManager.getConnection(
-                DATABASE,
-                DB_USER,
-                DB_PASSWORD);
+        return connectionPool.getConnection();
     }
 
     public void remove(int id, String table) {
@@ -49,12 +30,13 @@ abstract class JDBCAbstract {
                 removeFromTable = "DELETE FROM supplier WHERE id = ?;";
                 break;
         }
-        try {
-            preparedStatement = dbConnection.prepareStatement(removeFromTable);
+        try (Connection connection = getConnection();
+             PreparedStatement preparedStatement = connection.prepareStatement(removeFromTable)) {
             preparedStatement.setInt(1, id);
-            preparedStatement.executeQuery();
-        } catch (Exception e) {
-            e.getStackTrace();
+            preparedStatement.executeUpdate();
+            CatalogVersion.bump();
+        } catch (SQLException e) {
+            e.printStackTrace();
         }
     }
 }
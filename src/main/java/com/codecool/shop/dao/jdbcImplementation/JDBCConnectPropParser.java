@@ -9,9 +9,23 @@ import java.util.Properties;
 public class JDBCConnectPropParser {
 
     public static ArrayList<String> connectProps() {
+        Properties prop = loadProperties();
+        if (prop == null) {
+            return null;
+        }
+        ArrayList<String> proplist = new ArrayList<>();
+
+        // get the property value and print it out
+        proplist.add(prop.getProperty("database"));
+        proplist.add(prop.getProperty("username"));
+        proplist.add(prop.getProperty("password"));
+
+        return proplist;
+    }
+
+    public static Properties loadProperties() {
         Properties prop = new Properties();
         InputStream input = null;
-        ArrayList<String> proplist = new ArrayList<>();
         //if you want to connect to live DB use this line 20th: input = new FileInputStream(pathToLiveDB);
         String pathToLiveDB = "src/main/sql/properties.txt";
         //if you want to connect to live DB use this line 20th: input = new FileInputStream(pathToTestDB);
@@ -22,12 +36,7 @@ public class JDBCConnectPropParser {
             // load a properties file
             prop.load(input);
 
-            // get the property value and print it out
-            proplist.add(prop.getProperty("database"));
-            proplist.add(prop.getProperty("username"));
-            proplist.add(prop.getProperty("password"));
-
-            return proplist;
+            return prop;
 
         } catch (IOException ex) {
             ex.printStackTrace();
@@ -42,4 +51,4 @@ public class JDBCConnectPropParser {
         }
         return null;
     }
-}
\ No newline at end of file
+}
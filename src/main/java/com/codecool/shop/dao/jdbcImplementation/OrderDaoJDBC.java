@@ -0,0 +1,206 @@
+package com.codecool.shop.dao.jdbcImplementation;
+
+import com.codecool.shop.dao.DataAccessException;
+import com.codecool.shop.dao.OrderDao;
+import com.codecool.shop.model.LineItem;
+import com.codecool.shop.model.Order;
+import com.codecool.shop.model.Product;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/* Orders and their line items in the Orders and LineItem tables. Every call goes to the database;
+ * OrderDaoWriteBehind keeps the live carts in memory and writes them through updateAll.
+ */
+public class OrderDaoJDBC extends JDBCAbstract implements OrderDao {
+
+    private static final String SELECT_ORDERS = "SELECT o.id, li.product_id, li.quantity " +
+            "FROM Orders o LEFT JOIN LineItem li ON li.order_id = o.id";
+
+    private static OrderDaoJDBC instance = null;
+
+    private OrderDaoJDBC() {
+    }
+
+    public static synchronized OrderDaoJDBC getInstance() {
+        if (instance == null) {
+            instance = new OrderDaoJDBC();
+        }
+        return instance;
+    }
+
+    /* Throws DataAccessException when the order could not be stored: it would have no id, and a
+     * cart registered under id 0 would be shared by every session that hit the same failure.
+     */
+    @Override
+    public void add(Order order) {
+        String insertIntoTable = "INSERT INTO Orders (quantity, total_price) VALUES (?,?) RETURNING id;";
+
+        try (Connection connection = getConnection();
+             PreparedStatement preparedStatement = connection.prepareStatement(insertIntoTable)) {
+            preparedStatement.setInt(1, order.getOrderQuantity());
+            preparedStatement.setFloat(2, order.getOrderPrice());
+            try (ResultSet result = preparedStatement.executeQuery()) {
+                result.next();
+                order.setId(result.getInt("id"));
+            }
+        } catch (SQLException e) {
+            throw new DataAccessException("Creating the order failed", e);
+        }
+        if (!order.getItems().isEmpty()) {
+            update(order);
+        }
+    }
+
+    @Override
+    public Order find(int id) {
+        List<Order> orders = queryOrders(SELECT_ORDERS + " WHERE o.id = ?;", id);
+        return orders.isEmpty() ? null : orders.get(0);
+    }
+
+    @Override
+    public void addLineItem(Order order, LineItem item) {
+        order.addLineItem(item);
+        update(order);
+    }
+
+    @Override
+    public void update(Order order) {
+        try {
+            updateAll(Collections.singletonList(order));
+        } catch (SQLException e) {
+            throw new DataAccessException("Writing order " + order.getId() + " failed", e);
+        }
+    }
+
+    /* Writes the current totals and line items of the orders in one transaction, with one JDBC
+     * batch per statement. Orders or products deleted in the meantime are skipped.
+     */
+    public void updateAll(Collection<Order> orders) throws SQLException {
+        String updateOrder = "UPDATE Orders SET quantity = ?, total_price = ?, updated_at = now() WHERE id = ?;";
+        String deleteLineItems = "DELETE FROM LineItem WHERE order_id = ?;";
+        String insertLineItem = "INSERT INTO LineItem (order_id, product_id, quantity, total_price) " +
+                "SELECT o.id, p.id, ?, ? FROM Orders o, Product p WHERE o.id = ? AND p.id = ?;";
+
+        try (Connection connection = getConnection()) {
+            connection.setAutoCommit(false);
+            try (PreparedStatement updateStatement = connection.prepareStatement(updateOrder);
+                 PreparedStatement deleteStatement = connection.prepareStatement(deleteLineItems);
+                 PreparedStatement insertStatement = connection.prepareStatement(insertLineItem)) {
+                for (Order order : orders) {
+                    List<LineItem> items;
+                    int[] quantities;
+                    float[] totalPrices;
+                    // one consistent view of the cart while add_to_cart may still be changing it;
+                    // line items are updated in place, so their values are copied here as well
+                    synchronized (order) {
+                        items = order.getItems();
+                        quantities = new int[items.size()];
+                        totalPrices = new float[items.size()];
+                        for (int i = 0; i < items.size(); i++) {
+                            quantities[i] = items.get(i).getQuantity();
+                            totalPrices[i] = items.get(i).getTotalPrice();
+                        }
+                        updateStatement.setInt(1, order.getOrderQuantity());
+                        updateStatement.setFloat(2, order.getOrderPrice());
+                    }
+                    updateStatement.setInt(3, order.getId());
+                    updateStatement.addBatch();
+                    deleteStatement.setInt(1, order.getId());
+                    deleteStatement.addBatch();
+                    for (int i = 0; i < items.size(); i++) {
+                        insertStatement.setInt(1, quantities[i]);
+                        insertStatement.setFloat(2, totalPrices[i]);
+                        insertStatement.setInt(3, order.getId());
+                        insertStatement.setInt(4, items.get(i).getProduct().getId());
+                        insertStatement.addBatch();
+                    }
+                }
+                updateStatement.executeBatch();
+                deleteStatement.executeBatch();
+                insertStatement.executeBatch();
+                connection.commit();
+            }
+        }
+    }
+
+    @Override
+    public void remove(int id) {
+        // not JDBCAbstract.remove: orders are not part of the catalog and must not bump its version
+        String removeFromTable = "DELETE FROM Orders WHERE id = ?;";
+        try (Connection connection = getConnection();
+             PreparedStatement preparedStatement = connection.prepareStatement(removeFromTable)) {
+            preparedStatement.setInt(1, id);
+            preparedStatement.executeUpdate();
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+    }
+
+    @Override
+    public void removeAll() {
+        String removeRecords = "TRUNCATE Orders CASCADE;";
+        try (Connection connection = getConnection();
+             PreparedStatement preparedStatement = connection.prepareStatement(removeRecords)) {
+            preparedStatement.executeUpdate();
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+    }
+
+    @Override
+    public List<Order> getAll() {
+        return queryOrders(SELECT_ORDERS + " ORDER BY o.id;");
+    }
+
+    /* Line items are rebuilt from the stored quantities at the products' current prices. A failed
+     * query throws: an empty result would make find hand the customer a new, empty cart.
+     */
+    private List<Order> queryOrders(String query, int... parameters) {
+        Map<Integer, Map<Integer, Integer>> quantities = new LinkedHashMap<>();
+        Set<Integer> productIds = new HashSet<>();
+        try (Connection connection = getConnection();
+             PreparedStatement preparedStatement = connection.prepareStatement(query)) {
+            for (int i = 0; i < parameters.length; i++) {
+                preparedStatement.setInt(i + 1, parameters[i]);
+            }
+            try (ResultSet result = preparedStatement.executeQuery()) {
+                while (result.next()) {
+                    Map<Integer, Integer> items = quantities.computeIfAbsent(result.getInt("id"), key -> new LinkedHashMap<>());
+                    int productId = result.getInt("product_id");
+                    if (!result.wasNull()) {
+                        items.put(productId, result.getInt("quantity"));
+                        productIds.add(productId);
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            throw new DataAccessException("Reading orders failed", e);
+        }
+
+        Map<Integer, Product> products = ProductDaoJDBC.getInstance().findAll(productIds);
+        List<Order> orders = new ArrayList<>();
+        for (Map.Entry<Integer, Map<Integer, Integer>> stored : quantities.entrySet()) {
+            Order order = new Order();
+            order.setId(stored.getKey());
+            for (Map.Entry<Integer, Integer> item : stored.getValue().entrySet()) {
+                Product product = products.get(item.getKey());
+                if (product != null) {
+                    order.addLineItem(new LineItem(product, item.getValue()));
+                }
+            }
+            orders.add(order);
+        }
+        return orders;
+    }
+}
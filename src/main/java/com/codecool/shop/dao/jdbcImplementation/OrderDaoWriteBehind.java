@@ -0,0 +1,160 @@
+package com.codecool.shop.dao.jdbcImplementation;
+
+import com.codecool.shop.dao.OrderDao;
+import com.codecool.shop.dao.memImplementation.OrderDaoMem;
+import com.codecool.shop.dao.memImplementation.OrderJournal;
+import com.codecool.shop.model.LineItem;
+import com.codecool.shop.model.Order;
+import com.codecool.shop.model.Product;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.function.IntFunction;
+
+/* Durable carts served from memory. New orders get their id from the database, so ids are unique
+ * across restarts and nodes; later changes are acknowledged from memory and written by an
+ * OrderWriter. An order missing from memory (evicted, after a restart, or created on another node)
+ * is loaded from the database on first access.
+ *
+ * With orders.journalDir set, the orders held in memory are also journaled to local disk (see
+ * OrderJournal), and recover() brings back the changes a crash kept from reaching the database.
+ */
+public class OrderDaoWriteBehind implements OrderDao {
+
+    private static final long DEFAULT_DRAIN_TIMEOUT_MILLIS = 10000;
+
+    private static OrderDaoWriteBehind instance = null;
+
+    private final OrderDaoMem memory;
+    private final OrderDaoJDBC durable;
+    private final OrderWriter writer;
+    private final OrderJournal journal;
+
+    private OrderDaoWriteBehind(OrderDaoMem memory, OrderDaoJDBC durable, Properties props) {
+        this.memory = memory;
+        this.durable = durable;
+        this.writer = new OrderWriter(durable, props);
+        this.journal = openJournal(props);
+        memory.configureEviction(ConnectionPool.intProperty(props, "orders.ttlSeconds", 1800) * 1000L,
+                ConnectionPool.intProperty(props, "orders.maxInMemory", 100000));
+        // evicted carts are written once more, so the database has their final state
+        memory.setEvictionListener(writer::enqueue);
+    }
+
+    public static synchronized OrderDaoWriteBehind getInstance() {
+        if (instance == null) {
+            Properties props = JDBCConnectPropParser.loadProperties();
+            instance = new OrderDaoWriteBehind(OrderDaoMem.getInstance(), OrderDaoJDBC.getInstance(),
+                    props != null ? props : new Properties());
+        }
+        return instance;
+    }
+
+    /* Only an order the database gave an id is held in memory: OrderDaoMem would assign its own,
+     * which a later order from the database could reuse. A failed insert throws before that.
+     */
+    @Override
+    public void add(Order order) {
+        durable.add(order);
+        memory.add(order);
+    }
+
+    @Override
+    public Order find(int id) {
+        Order order = memory.find(id);
+        if (order != null) {
+            return order;
+        }
+        // evicted but not written yet: the queued order is newer than the stored one
+        order = writer.pending(id);
+        if (order == null) {
+            order = durable.find(id);
+        }
+        if (order != null) {
+            memory.add(order);
+        }
+        return order;
+    }
+
+    @Override
+    public void addLineItem(Order order, LineItem item) {
+        memory.addLineItem(order, item);
+        writer.enqueue(order);
+    }
+
+    @Override
+    public void update(Order order) {
+        writer.enqueue(order);
+    }
+
+    @Override
+    public void remove(int id) {
+        writer.cancel(id);
+        memory.remove(id);
+        durable.remove(id);
+    }
+
+    @Override
+    public void removeAll() {
+        writer.clear();
+        memory.removeAll();
+        durable.removeAll();
+    }
+
+    /* The orders held in memory by this process.
+     */
+    @Override
+    public List<Order> getAll() {
+        return memory.getAll();
+    }
+
+    public boolean flush(long timeoutMillis) throws InterruptedException {
+        return writer.flush(timeoutMillis);
+    }
+
+    /* Loads the journaled orders into memory and queues them to be written, since the database may
+     * have missed their last changes. products resolves the product ids of their line items. Does
+     * nothing without a journal.
+     */
+    public List<Order> recover(IntFunction<Product> products) throws IOException {
+        if (journal == null) {
+            return Collections.emptyList();
+        }
+        List<Order> recovered = memory.recover(journal, products);
+        for (Order order : recovered) {
+            writer.enqueue(order);
+        }
+        return recovered;
+    }
+
+    /* Writes every queued change before the process exits.
+     */
+    public void shutdown() {
+        writer.shutdown(DEFAULT_DRAIN_TIMEOUT_MILLIS);
+        if (journal != null) {
+            journal.close();
+        }
+    }
+
+    private static OrderJournal openJournal(Properties props) {
+        String directory = props.getProperty("orders.journalDir", "").trim();
+        if (directory.isEmpty()) {
+            return null;
+        }
+        OrderJournal.SyncPolicy syncPolicy = OrderJournal.SyncPolicy.valueOf(
+                props.getProperty("orders.journalSync", "interval").trim().toUpperCase());
+        try {
+            return new OrderJournal(Paths.get(directory),
+                    ConnectionPool.intProperty(props, "orders.journalSegmentBytes", 64 << 20),
+                    syncPolicy,
+                    ConnectionPool.intProperty(props, "orders.journalSyncIntervalMillis", 50),
+                    ConnectionPool.intProperty(props, "orders.journalMaxSegments", 4));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not open the order journal in " + directory, e);
+        }
+    }
+}
@@ -0,0 +1,235 @@
+package com.codecool.shop.dao.jdbcImplementation;
+
+import com.codecool.shop.metrics.Histogram;
+import com.codecool.shop.metrics.MetricsRegistry;
+import com.codecool.shop.model.Order;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/* Write-behind queue of changed orders, written to the database by one background thread.
+ *
+ * The queue holds at most one entry per order, so repeated changes to a cart between two flushes
+ * cost one write. The writer wakes up every orders.flushIntervalMillis, or as soon as
+ * orders.batchSize orders are waiting, and writes up to a batch per transaction. When
+ * orders.queueDepth orders are waiting, enqueue blocks for up to orders.enqueueTimeoutMillis and
+ * then writes the order on the caller's thread, so a slow database slows carts down instead of
+ * losing them. shutdown() drains the queue.
+ *
+ * Every write, batched or on a caller's thread, holds writeLock from reading the orders to the
+ * commit. Writes are therefore committed in the order they read the carts, and an older state of
+ * a cart can never be committed after a newer one.
+ */
+public class OrderWriter {
+
+    private static final Logger logger = LoggerFactory.getLogger(OrderWriter.class);
+    private static final long RETRY_DELAY_MILLIS = 1000;
+
+    private final OrderDaoJDBC durable;
+    private final long flushIntervalMillis;
+    private final int batchSize;
+    private final long enqueueTimeoutMillis;
+
+    private final ConcurrentMap<Integer, Order> pending = new ConcurrentHashMap<>();
+    private final Semaphore capacity;
+    // guards the writer's sleep and writing flag, and lets flush() wait for the writer
+    private final Object signal = new Object();
+    private final Object writeLock = new Object();
+    private final Thread thread;
+    private boolean writing;
+    private volatile boolean running = true;
+    private volatile long drainDeadline = Long.MAX_VALUE;
+
+    private final LongAdder written;
+    private final LongAdder coalesced;
+    private final LongAdder blocked;
+    private final LongAdder failures;
+    private final Histogram batchTime;
+
+    OrderWriter(OrderDaoJDBC durable, Properties props) {
+        this.durable = durable;
+        flushIntervalMillis = ConnectionPool.intProperty(props, "orders.flushIntervalMillis", 200);
+        batchSize = Math.max(1, ConnectionPool.intProperty(props, "orders.batchSize", 500));
+        enqueueTimeoutMillis = ConnectionPool.intProperty(props, "orders.enqueueTimeoutMillis", 1000);
+        capacity = new Semaphore(Math.max(1, ConnectionPool.intProperty(props, "orders.queueDepth", 10000)));
+
+        MetricsRegistry metrics = MetricsRegistry.getInstance();
+        written = metrics.counter("order_writes_total", "Orders written to the database by the write-behind queue", "");
+        coalesced = metrics.counter("order_writes_coalesced_total", "Order changes merged into an already queued write", "");
+        blocked = metrics.counter("order_writes_blocked_total", "Order changes that waited for room in the full write-behind queue", "");
+        failures = metrics.counter("order_write_failures_total", "Failed write-behind batches, retried", "");
+        batchTime = metrics.timer("order_write_batch_seconds", "Duration of one write-behind batch", "");
+        metrics.gauge("order_write_queue_depth", "Orders waiting to be written", pending::size);
+
+        thread = new Thread(this::run, "order-writer");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public void enqueue(Order order) {
+        int id = order.getId();
+        if (pending.replace(id, order) != null) {
+            coalesced.increment();
+            return;
+        }
+        boolean acquired = capacity.tryAcquire();
+        if (!acquired) {
+            blocked.increment();
+            try {
+                acquired = capacity.tryAcquire(enqueueTimeoutMillis, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (!acquired || !running) {
+            if (acquired) {
+                capacity.release();
+            }
+            // the queue is full or the writer is gone: store it now rather than drop the change;
+            // a failure reaches the caller as a DataAccessException
+            synchronized (writeLock) {
+                durable.update(order);
+            }
+            return;
+        }
+        if (pending.putIfAbsent(id, order) != null) {
+            capacity.release();
+            coalesced.increment();
+            return;
+        }
+        if (pending.size() >= batchSize) {
+            wake();
+        }
+    }
+
+    // the queued, not yet written state of the order, or null
+    public Order pending(int id) {
+        return pending.get(id);
+    }
+
+    // drops a queued write, for orders that are being removed
+    public void cancel(int id) {
+        if (pending.remove(id) != null) {
+            capacity.release();
+        }
+    }
+
+    public void clear() {
+        for (Integer id : pending.keySet()) {
+            cancel(id);
+        }
+    }
+
+    /* Waits until every order queued so far is written; false if that took longer than the timeout.
+     */
+    public boolean flush(long timeoutMillis) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        synchronized (signal) {
+            signal.notifyAll();
+            long remaining;
+            while ((!pending.isEmpty() || writing) && (remaining = deadline - System.currentTimeMillis()) > 0) {
+                signal.wait(remaining);
+            }
+            return pending.isEmpty() && !writing;
+        }
+    }
+
+    /* Stops accepting queued writes and waits up to the timeout for the queue to drain.
+     */
+    public void shutdown(long timeoutMillis) {
+        drainDeadline = System.currentTimeMillis() + timeoutMillis;
+        running = false;
+        wake();
+        try {
+            thread.join(timeoutMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (!pending.isEmpty()) {
+            logger.error("Order writer stopped with {} orders not written: {}", pending.size(), pending.keySet());
+        }
+    }
+
+    private void wake() {
+        synchronized (signal) {
+            signal.notifyAll();
+        }
+    }
+
+    private void run() {
+        while (true) {
+            synchronized (signal) {
+                if (running && pending.size() < batchSize) {
+                    try {
+                        signal.wait(flushIntervalMillis);
+                    } catch (InterruptedException e) {
+                        // only shutdown() stops the writer
+                    }
+                }
+                if (!running && pending.isEmpty()) {
+                    signal.notifyAll();
+                    return;
+                }
+                writing = true;
+            }
+            try {
+                writePending();
+            } finally {
+                synchronized (signal) {
+                    writing = false;
+                    signal.notifyAll();
+                }
+            }
+        }
+    }
+
+    private void writePending() {
+        while (!pending.isEmpty()) {
+            List<Order> batch = new ArrayList<>(Math.min(batchSize, pending.size()));
+            for (Iterator<Integer> ids = pending.keySet().iterator(); ids.hasNext() && batch.size() < batchSize; ) {
+                Order order = pending.remove(ids.next());
+                if (order != null) {
+                    batch.add(order);
+                    capacity.release();
+                }
+            }
+            write(batch);
+        }
+    }
+
+    private void write(List<Order> batch) {
+        while (true) {
+            long start = System.nanoTime();
+            try {
+                synchronized (writeLock) {
+                    durable.updateAll(batch);
+                }
+                batchTime.record(System.nanoTime() - start);
+                written.add(batch.size());
+                return;
+            } catch (SQLException e) {
+                failures.increment();
+                if (!running && System.currentTimeMillis() > drainDeadline) {
+                    logger.error("Giving up on writing {} orders during shutdown", batch.size(), e);
+                    return;
+                }
+                logger.warn("Writing {} orders failed, retrying in {} ms", batch.size(), RETRY_DELAY_MILLIS, e);
+                try {
+                    Thread.sleep(RETRY_DELAY_MILLIS);
+                } catch (InterruptedException interrupted) {
+                    // keep retrying until the drain deadline
+                }
+            }
+        }
+    }
+}
@@ -1,8 +1,12 @@
 package com.codecool.shop.dao.jdbcImplementation;
 
+import com.codecool.shop.dao.CatalogVersion;
+import com.codecool.shop.dao.DataAccessException;
 import com.codecool.shop.dao.ProductCategoryDao;
 import com.codecool.shop.model.ProductCategory;
 
+import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
@@ -12,10 +16,12 @@ public class ProductCategoryDaoJDBC extends JDBCAbstract implements ProductCateg
 
     private static ProductCategoryDaoJDBC instance = null;
 
+    private final CatalogInterner interner = CatalogInterner.getInstance();
+
     private ProductCategoryDaoJDBC() {
     }
 
-    public static ProductCategoryDaoJDBC getInstance() {
+    public static synchronized ProductCategoryDaoJDBC getInstance() {
         if (instance == null) {
             instance = new ProductCategoryDaoJDBC();
         }
@@ -23,44 +29,43 @@ public class ProductCategoryDaoJDBC extends JDBCAbstract implements ProductCateg
     }
 
     public void add(ProductCategory productCategory) {
-        String insertIntoTable = "INSERT INTO productcategory (name, description, department) VALUES (?,?,?);";
+        // RETURNING hands back the id of this row, not whichever row was inserted last
+        String insertIntoTable = "INSERT INTO productcategory (name, description, department) VALUES (?,?,?) RETURNING id;";
 
-        try {
-            preparedStatement = dbConnection.prepareStatement(insertIntoTable);
+        try (Connection connection = getConnection();
+             PreparedStatement preparedStatement = connection.prepareStatement(insertIntoTable)) {
             preparedStatement.setString(1, productCategory.getName());
             preparedStatement.setString(2, productCategory.getDescription());
             preparedStatement.setString(3, productCategory.getDepartment());
-            preparedStatement.executeUpdate();
-
-            // Get the ID of the most recent record and update our supplier
-            String findProductCategory = "SELECT id FROM ProductCategory ORDER BY id DESC LIMIT 1;";
-            preparedStatement = dbConnection.prepareStatement(findProductCategory);
-            ResultSet result = preparedStatement.executeQuery();
-            if (result.next()) {
-                productCategory.setId(result.getInt("id"));
+            try (ResultSet result = preparedStatement.executeQuery()) {
+                if (result.next()) {
+                    productCategory.setId(result.getInt("id"));
+                }
             }
+            CatalogVersion.bump();
         } catch (SQLException e) {
-            e.getStackTrace();
+            e.printStackTrace();
         }
     }
 
     public ProductCategory find(int id) {
         String query = "SELECT * FROM ProductCategory WHERE id = ?;";
 
-        try {
-            preparedStatement = dbConnection.prepareStatement(query,
-                    ResultSet.TYPE_FORWARD_ONLY,
-                    ResultSet.CONCUR_READ_ONLY,
-                    ResultSet.CLOSE_CURSORS_AT_COMMIT);
+        try (Connection connection = getConnection();
+             PreparedStatement preparedStatement = connection.prepareStatement(query,
+                     ResultSet.TYPE_FORWARD_ONLY,
+                     ResultSet.CONCUR_READ_ONLY,
+                     ResultSet.CLOSE_CURSORS_AT_COMMIT)) {
             preparedStatement.setInt(1, id);
-            ResultSet result = preparedStatement.executeQuery();
-            if (result.next()) {
-                ProductCategory productCategory = new ProductCategory(
-                        result.getString("name"),
-                        result.getString("description"),
-                        result.getString("department"));
-                productCategory.setId(result.getInt("id"));
-                return productCategory;
+            try (ResultSet result = preparedStatement.executeQuery()) {
+                if (result.next()) {
+                    ProductCategory productCategory = interner.productCategory(
+                            result.getInt("id"),
+                            result.getString("name"),
+                            result.getString("department"),
+                            result.getString("description"));
+                    return productCategory;
+                }
             }
         } catch (SQLException e) {
             e.printStackTrace();
@@ -70,28 +75,30 @@ public class ProductCategoryDaoJDBC extends JDBCAbstract implements ProductCateg
 
     public void remove(int id) {
         remove(id, "ProductCategory");
+        interner.removeProductCategory(id);
     }
 
     public List<ProductCategory> getAll() {
         String query = "SELECT * FROM ProductCategory";
         List<ProductCategory> productCategoryList = new ArrayList<>();
 
-        try {
-            preparedStatement = dbConnection.prepareStatement(query,
-                    ResultSet.TYPE_FORWARD_ONLY,
-                    ResultSet.CONCUR_READ_ONLY,
-                    ResultSet.CLOSE_CURSORS_AT_COMMIT);
-            ResultSet result = preparedStatement.executeQuery();
+        try (Connection connection = getConnection();
+             PreparedStatement preparedStatement = connection.prepareStatement(query,
+                     ResultSet.TYPE_FORWARD_ONLY,
+                     ResultSet.CONCUR_READ_ONLY,
+                     ResultSet.CLOSE_CURSORS_AT_COMMIT);
+             ResultSet result = preparedStatement.executeQuery()) {
             while (result.next()) {
-                ProductCategory productCategory = new ProductCategory(
+                ProductCategory productCategory = interner.productCategory(
+                        result.getInt("id"),
                         result.getString("name"),
-                        result.getString("description"),
-                        result.getString("department"));
-                productCategory.setId(result.getInt("id"));
+                        result.getString("department"),
+                        result.getString("description"));
                 productCategoryList.add(productCategory);
             }
         } catch (SQLException e) {
-            e.printStackTrace();
+            // the catalog snapshot is built from this list, an empty one would take the shop offline
+            throw new DataAccessException("Reading the product categories failed", e);
         }
         return productCategoryList;
     }
@@ -99,9 +106,11 @@ public class ProductCategoryDaoJDBC extends JDBCAbstract implements ProductCateg
     public void removeAll() {
         String removeRecords = "TRUNCATE productcategory CASCADE;";
 
-        try {
-            preparedStatement = dbConnection.prepareStatement(removeRecords);
+        try (Connection connection = getConnection();
+             PreparedStatement preparedStatement = connection.prepareStatement(removeRecords)) {
             preparedStatement.execute();
+            CatalogVersion.bump();
+            interner.removeAllProductCategories();
         } catch (SQLException e) {
             e.printStackTrace();
         }
@@ -1,27 +1,51 @@
 package com.codecool.shop.dao.jdbcImplementation;
 
+import com.codecool.shop.dao.CatalogVersion;
+import com.codecool.shop.dao.DataAccessException;
 import com.codecool.shop.dao.ProductDao;
 import com.codecool.shop.model.Product;
 import com.codecool.shop.model.ProductCategory;
 import com.codecool.shop.model.Supplier;
 
+import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.function.Consumer;
 
 public class ProductDaoJDBC extends JDBCAbstract implements ProductDao {
 
 
+    private static final String SELECT_PRODUCTS = "SELECT p.id, p.name, p.description, p.currency, p.default_price, " +
+            "p.supplier_id, s.name AS supplier_name, s.description AS supplier_description, " +
+            "p.product_category_id, c.name AS category_name, c.description AS category_description, " +
+            "c.department AS category_department " +
+            "FROM Product p " +
+            "JOIN Supplier s ON s.id = p.supplier_id " +
+            "JOIN ProductCategory c ON c.id = p.product_category_id";
+
+    private static final int DEFAULT_FETCH_SIZE = 500;
+
     private static ProductDaoJDBC instance = null;
 
-    private SupplierDaoJDBC supplierDaoJdbc = SupplierDaoJDBC.getInstance();
-    private ProductCategoryDaoJDBC productCategoryDaoJdbc = ProductCategoryDaoJDBC.getInstance();
+    private final CatalogInterner interner = CatalogInterner.getInstance();
+    private int fetchSize = DEFAULT_FETCH_SIZE;
 
     private ProductDaoJDBC() {
+        Properties props = JDBCConnectPropParser.loadProperties();
+        if (props != null) {
+            fetchSize = ConnectionPool.intProperty(props, "export.fetchSize", DEFAULT_FETCH_SIZE);
+        }
     }
 
-    public static ProductDaoJDBC getInstance() {
+    public static synchronized ProductDaoJDBC getInstance() {
         if (instance == null) {
             instance = new ProductDaoJDBC();
         }
@@ -29,55 +53,31 @@ public class ProductDaoJDBC extends JDBCAbstract implements ProductDao {
     }
 
     public void add(Product product) {
-        String insertIntoTable = "INSERT INTO product (name, description, currency, default_price, supplier_id, product_category_id) VALUES (?,?,?,?,?,?);";
-        try {
-            // Add record to DB
-            preparedStatement = dbConnection.prepareStatement(insertIntoTable);
+        // RETURNING hands back the id of this row, not whichever row was inserted last
+        String insertIntoTable = "INSERT INTO product (name, description, currency, default_price, supplier_id, product_category_id) VALUES (?,?,?,?,?,?) RETURNING id;";
+
+        try (Connection connection = getConnection();
+             PreparedStatement preparedStatement = connection.prepareStatement(insertIntoTable)) {
             preparedStatement.setString(1, product.getName());
             preparedStatement.setString(2, product.getDescription());
             preparedStatement.setString(3, product.getDefaultCurrency().toString());
             preparedStatement.setFloat(4, product.getDefaultPrice());
             preparedStatement.setInt(5, product.getSupplier().getId());
             preparedStatement.setInt(6, product.getProductCategory().getId());
-            preparedStatement.executeUpdate();
-
-            // Get the ID of the most recent record and update our supplier
-            String findProduct = "SELECT id FROM Product ORDER BY id DESC LIMIT 1;";
-            preparedStatement = dbConnection.prepareStatement(findProduct);
-            ResultSet result = preparedStatement.executeQuery();
-            if (result.next()) {
-                product.setId(result.getInt("id"));
+            try (ResultSet result = preparedStatement.executeQuery()) {
+                if (result.next()) {
+                    product.setId(result.getInt("id"));
+                }
             }
+            CatalogVersion.bump();
         } catch (SQLException e) {
-            e.getStackTrace();
+            e.printStackTrace();
         }
     }
 
     public Product find(int id) {
-        String query = "SELECT * FROM Product WHERE id = ?;";
-        try {
-            preparedStatement = dbConnection.prepareStatement(query,
-                    ResultSet.TYPE_FORWARD_ONLY,
-                    ResultSet.CONCUR_READ_ONLY,
-                    ResultSet.CLOSE_CURSORS_AT_COMMIT);
-            preparedStatement.setInt(1, id);
-            ResultSet result = preparedStatement.executeQuery();
-            if (result.next()) {
-                Product product = new Product(
-                        result.getString("name"),
-                        result.getFloat("default_price"),
-                        result.getString("currency"),
-                        result.getString("description"),
-                        productCategoryDaoJdbc.find(result.getInt("product_category_id")),
-                        supplierDaoJdbc.find(result.getInt("supplier_id"))
-                );
-                product.setId(result.getInt("id"));
-                return product;
-            }
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
-        return null;
+        List<Product> products = queryProducts(SELECT_PRODUCTS + " WHERE p.id = ?;", id);
+        return products.isEmpty() ? null : products.get(0);
     }
 
     public void remove(int id) {
@@ -85,100 +85,158 @@ public class ProductDaoJDBC extends JDBCAbstract implements ProductDao {
     }
 
     public void removeAll() {
-        try {
-            String removeRecords = "TRUNCATE Product CASCADE;";
-            preparedStatement = dbConnection.prepareStatement(removeRecords);
+        String removeRecords = "TRUNCATE Product CASCADE;";
+        try (Connection connection = getConnection();
+             PreparedStatement preparedStatement = connection.prepareStatement(removeRecords)) {
             preparedStatement.executeUpdate();
+            CatalogVersion.bump();
         } catch (SQLException e) {
             e.printStackTrace();
         }
     }
 
     public List<Product> getAll() {
-        String query = "SELECT * FROM Product;";
-        List<Product> productList = new ArrayList<>();
+        return queryProducts(SELECT_PRODUCTS + " ORDER BY p.id;");
+    }
 
-        try {
-            preparedStatement = dbConnection.prepareStatement(query,
-                    ResultSet.TYPE_FORWARD_ONLY,
-                    ResultSet.CONCUR_READ_ONLY,
-                    ResultSet.CLOSE_CURSORS_AT_COMMIT);
-            ResultSet result = preparedStatement.executeQuery();
-            while (result.next()) {
-                Product product = new Product(
-                        result.getString("name"),
-                        result.getFloat("default_price"),
-                        result.getString("currency"),
-                        result.getString("description"),
-                        productCategoryDaoJdbc.find(result.getInt("product_category_id")),
-                        supplierDaoJdbc.find(result.getInt("supplier_id"))
-                );
-                product.setId(result.getInt("id"));
-                productList.add(product);
+    public List<Product> getBy(Supplier supplier) {
+        return queryProducts(SELECT_PRODUCTS + " WHERE p.supplier_id = ? ORDER BY p.id;", supplier.getId());
+    }
+
+    public List<Product> getBy(ProductCategory productCategory) {
+        return queryProducts(SELECT_PRODUCTS + " WHERE p.product_category_id = ? ORDER BY p.id;", productCategory.getId());
+    }
+
+    public List<Product> getAll(int afterId, int limit) {
+        return queryProducts(SELECT_PRODUCTS + " WHERE p.id > ? ORDER BY p.id LIMIT ?;", afterId, limit);
+    }
+
+    public List<Product> getBy(Supplier supplier, int afterId, int limit) {
+        return queryProducts(SELECT_PRODUCTS + " WHERE p.supplier_id = ? AND p.id > ? ORDER BY p.id LIMIT ?;",
+                supplier.getId(), afterId, limit);
+    }
+
+    public List<Product> getBy(ProductCategory productCategory, int afterId, int limit) {
+        return queryProducts(SELECT_PRODUCTS + " WHERE p.product_category_id = ? AND p.id > ? ORDER BY p.id LIMIT ?;",
+                productCategory.getId(), afterId, limit);
+    }
+
+    public List<Product> getAllBefore(int beforeId, int limit) {
+        return ascending(queryProducts(SELECT_PRODUCTS + " WHERE p.id < ? ORDER BY p.id DESC LIMIT ?;", beforeId, limit));
+    }
+
+    public List<Product> getByBefore(Supplier supplier, int beforeId, int limit) {
+        return ascending(queryProducts(SELECT_PRODUCTS + " WHERE p.supplier_id = ? AND p.id < ? ORDER BY p.id DESC LIMIT ?;",
+                supplier.getId(), beforeId, limit));
+    }
+
+    public List<Product> getByBefore(ProductCategory productCategory, int beforeId, int limit) {
+        return ascending(queryProducts(SELECT_PRODUCTS + " WHERE p.product_category_id = ? AND p.id < ? ORDER BY p.id DESC LIMIT ?;",
+                productCategory.getId(), beforeId, limit));
+    }
+
+    /* Products with the given ids in one query, keyed by id; ids without a product are left out.
+     */
+    public Map<Integer, Product> findAll(Collection<Integer> ids) {
+        Map<Integer, Product> products = new HashMap<>();
+        if (ids.isEmpty()) {
+            return products;
+        }
+        try (Connection connection = getConnection();
+             PreparedStatement preparedStatement = connection.prepareStatement(SELECT_PRODUCTS + " WHERE p.id = ANY(?);")) {
+            preparedStatement.setArray(1, connection.createArrayOf("integer", ids.toArray()));
+            try (ResultSet result = preparedStatement.executeQuery()) {
+                while (result.next()) {
+                    Product product = mapProduct(result);
+                    products.put(product.getId(), product);
+                }
             }
         } catch (SQLException e) {
             e.printStackTrace();
         }
-        return productList;
+        return products;
     }
 
-    public List<Product> getBy(Supplier supplier) {
-        String query = "SELECT * FROM Product WHERE supplier_id = ?;";
-        List<Product> productList = new ArrayList<>();
+    public void setFetchSize(int fetchSize) {
+        this.fetchSize = fetchSize;
+    }
 
-        try {
-            preparedStatement = dbConnection.prepareStatement(query,
+    /* Streams the catalog through a server-side cursor: PostgreSQL only honours the fetch size
+     * outside auto-commit mode. A failure part-way is thrown, so the caller can tell a cut-off
+     * stream from the whole catalog.
+     */
+    public void visitAll(Consumer<Product> visitor) {
+        try (Connection connection = getConnection()) {
+            connection.setAutoCommit(false);
+            try (PreparedStatement preparedStatement = connection.prepareStatement(SELECT_PRODUCTS + " ORDER BY p.id;",
                     ResultSet.TYPE_FORWARD_ONLY,
-                    ResultSet.CONCUR_READ_ONLY,
-                    ResultSet.CLOSE_CURSORS_AT_COMMIT);
-            preparedStatement.setInt(1, supplier.getId());
-            ResultSet result = preparedStatement.executeQuery();
-            while (result.next()) {
-                Product product = new Product(
-                        result.getString("name"),
-                        result.getFloat("default_price"),
-                        result.getString("currency"),
-                        result.getString("description"),
-                        productCategoryDaoJdbc.find(result.getInt("product_category_id")),
-                        supplierDaoJdbc.find(result.getInt("supplier_id"))
-                );
-                product.setId(result.getInt("id"));
-                productList.add(product);
+                    ResultSet.CONCUR_READ_ONLY)) {
+                preparedStatement.setFetchSize(fetchSize);
+                try (ResultSet result = preparedStatement.executeQuery()) {
+                    while (result.next()) {
+                        visitor.accept(mapProduct(result));
+                    }
+                }
             }
+            connection.commit();
         } catch (SQLException e) {
-            e.printStackTrace();
+            throw new DataAccessException("Reading the catalog failed", e);
         }
-        return productList;
     }
 
-    public List<Product> getBy(ProductCategory productCategory) {
-        String query = "SELECT * FROM Product WHERE product_category_id = ?;";
+    private static List<Product> ascending(List<Product> descending) {
+        Collections.reverse(descending);
+        return descending;
+    }
+
+    /* Runs one joined query and maps every row. A failure throws DataAccessException: an empty
+     * list would read as "no such products", e.g. a changed product taken for a deleted one.
+     */
+    private List<Product> queryProducts(String query, int... parameters) {
         List<Product> productList = new ArrayList<>();
 
-        try {
-            preparedStatement = dbConnection.prepareStatement(query,
-                    ResultSet.TYPE_FORWARD_ONLY,
-                    ResultSet.CONCUR_READ_ONLY,
-                    ResultSet.CLOSE_CURSORS_AT_COMMIT);
-            preparedStatement.setInt(1, productCategory.getId());
-            ResultSet result = preparedStatement.executeQuery();
-            while (result.next()) {
-                Product product = new Product(
-                        result.getString("name"),
-                        result.getFloat("default_price"),
-                        result.getString("currency"),
-                        result.getString("description"),
-                        productCategoryDaoJdbc.find(result.getInt("product_category_id")),
-                        supplierDaoJdbc.find(result.getInt("supplier_id"))
-                );
-                product.setId(result.getInt("id"));
-                productList.add(product);
+        try (Connection connection = getConnection();
+             PreparedStatement preparedStatement = connection.prepareStatement(query,
+                     ResultSet.TYPE_FORWARD_ONLY,
+                     ResultSet.CONCUR_READ_ONLY,
+                     ResultSet.CLOSE_CURSORS_AT_COMMIT)) {
+            for (int i = 0; i < parameters.length; i++) {
+                preparedStatement.setInt(i + 1, parameters[i]);
+            }
+            try (ResultSet result = preparedStatement.executeQuery()) {
+                while (result.next()) {
+                    productList.add(mapProduct(result));
+                }
             }
         } catch (SQLException e) {
-            e.printStackTrace();
+            throw new DataAccessException("Reading products failed", e);
         }
         return productList;
     }
-}
-
 
+    /* Suppliers and categories come from the CatalogInterner, so all products of a supplier share
+     * one instance across queries, and repeated descriptions share one String.
+     */
+    private Product mapProduct(ResultSet result) throws SQLException {
+        Supplier supplier = interner.supplier(
+                result.getInt("supplier_id"),
+                result.getString("supplier_name"),
+                result.getString("supplier_description"));
+        ProductCategory productCategory = interner.productCategory(
+                result.getInt("product_category_id"),
+                result.getString("category_name"),
+                result.getString("category_department"),
+                result.getString("category_description"));
+
+        Product product = new Product(
+                result.getString("name"),
+                result.getFloat("default_price"),
+                result.getString("currency"),
+                interner.string(result.getString("description")),
+                productCategory,
+                supplier
+        );
+        product.setId(result.getInt("id"));
+        return product;
+    }
+}
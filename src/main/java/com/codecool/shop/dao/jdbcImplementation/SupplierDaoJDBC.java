@@ -1,8 +1,12 @@
 package com.codecool.shop.dao.jdbcImplementation;
 
+import com.codecool.shop.dao.CatalogVersion;
+import com.codecool.shop.dao.DataAccessException;
 import com.codecool.shop.dao.SupplierDao;
 import com.codecool.shop.model.Supplier;
 
+import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
@@ -12,10 +16,12 @@ public class SupplierDaoJDBC extends JDBCAbstract implements SupplierDao {
 
     private static SupplierDaoJDBC instance = null;
 
+    private final CatalogInterner interner = CatalogInterner.getInstance();
+
     private SupplierDaoJDBC() {
     }
 
-    public static SupplierDaoJDBC getInstance() {
+    public static synchronized SupplierDaoJDBC getInstance() {
         if (instance == null) {
             instance = new SupplierDaoJDBC();
         }
@@ -23,43 +29,40 @@ public class SupplierDaoJDBC extends JDBCAbstract implements SupplierDao {
     }
 
     public void add(Supplier supplier) {
-        String insertIntoTable = "INSERT INTO Supplier (name, description) VALUES (?,?);";
-        try {
-            // Adding record to DB
-            preparedStatement = dbConnection.prepareStatement(insertIntoTable);
+        // RETURNING hands back the id of this row, not whichever row was inserted last
+        String insertIntoTable = "INSERT INTO Supplier (name, description) VALUES (?,?) RETURNING id;";
+
+        try (Connection connection = getConnection();
+             PreparedStatement preparedStatement = connection.prepareStatement(insertIntoTable)) {
             preparedStatement.setString(1, supplier.getName());
             preparedStatement.setString(2, supplier.getDescription());
-            preparedStatement.executeUpdate();
-
-            // Get the ID of the most recent record and update our supplier
-            String findSupplier = "SELECT id FROM Supplier ORDER BY id DESC LIMIT 1;";
-            preparedStatement = dbConnection.prepareStatement(findSupplier);
-            ResultSet result = preparedStatement.executeQuery();
-            if (result.next()) {
-                supplier.setId(result.getInt("id"));
+            try (ResultSet result = preparedStatement.executeQuery()) {
+                if (result.next()) {
+                    supplier.setId(result.getInt("id"));
+                }
             }
+            CatalogVersion.bump();
         } catch (SQLException e) {
             e.printStackTrace();
         }
-
     }
 
     public Supplier find(int id) {
         String query = "SELECT * FROM Supplier WHERE id = ?;";
-        try {
-            preparedStatement = dbConnection.prepareStatement(query,
-                    ResultSet.TYPE_FORWARD_ONLY,
-                    ResultSet.CONCUR_READ_ONLY,
-                    ResultSet.CLOSE_CURSORS_AT_COMMIT);
+        try (Connection connection = getConnection();
+             PreparedStatement preparedStatement = connection.prepareStatement(query,
+                     ResultSet.TYPE_FORWARD_ONLY,
+                     ResultSet.CONCUR_READ_ONLY,
+                     ResultSet.CLOSE_CURSORS_AT_COMMIT)) {
             preparedStatement.setInt(1, id);
-            ResultSet result = preparedStatement.executeQuery();
-
-            if (result.next()) {
-                Supplier supplier = new Supplier(
-                        result.getString("name"),
-                        result.getString("description"));
-                supplier.setId(result.getInt("id"));
-                return supplier;
+            try (ResultSet result = preparedStatement.executeQuery()) {
+                if (result.next()) {
+                    Supplier supplier = interner.supplier(
+                            result.getInt("id"),
+                            result.getString("name"),
+                            result.getString("description"));
+                    return supplier;
+                }
             }
         } catch (SQLException e) {
             e.printStackTrace();
@@ -69,35 +72,39 @@ public class SupplierDaoJDBC extends JDBCAbstract implements SupplierDao {
 
     public void remove(int id) {
         remove(id, "Supplier");
+        interner.removeSupplier(id);
     }
 
     public List<Supplier> getAll() {
         String query = "SELECT * FROM supplier";
         List<Supplier> supplierList = new ArrayList<>();
-        try {
-            preparedStatement = dbConnection.prepareStatement(query,
-                    ResultSet.TYPE_FORWARD_ONLY,
-                    ResultSet.CONCUR_READ_ONLY,
-                    ResultSet.CLOSE_CURSORS_AT_COMMIT);
-            ResultSet result = preparedStatement.executeQuery();
+        try (Connection connection = getConnection();
+             PreparedStatement preparedStatement = connection.prepareStatement(query,
+                     ResultSet.TYPE_FORWARD_ONLY,
+                     ResultSet.CONCUR_READ_ONLY,
+                     ResultSet.CLOSE_CURSORS_AT_COMMIT);
+             ResultSet result = preparedStatement.executeQuery()) {
             while (result.next()) {
-                Supplier supplier = new Supplier(
+                Supplier supplier = interner.supplier(
+                        result.getInt("id"),
                         result.getString("name"),
                         result.getString("description"));
-                supplier.setId(result.getInt("id"));
                 supplierList.add(supplier);
             }
         } catch (SQLException e) {
-            e.printStackTrace();
+            // the catalog snapshot is built from this list, an empty one would take the shop offline
+            throw new DataAccessException("Reading the suppliers failed", e);
         }
         return supplierList;
     }
 
     public void removeAll() {
-        try {
-            String removeRecords = "TRUNCATE Supplier CASCADE;";
-            preparedStatement = dbConnection.prepareStatement(removeRecords);
+        String removeRecords = "TRUNCATE Supplier CASCADE;";
+        try (Connection connection = getConnection();
+             PreparedStatement preparedStatement = connection.prepareStatement(removeRecords)) {
             preparedStatement.executeUpdate();
+            CatalogVersion.bump();
+            interner.removeAllSuppliers();
         } catch (SQLException e) {
             e.printStackTrace();
         }
@@ -1,46 +1,235 @@
 package com.codecool.shop.dao.memImplementation;
 
 import com.codecool.shop.dao.OrderDao;
+import com.codecool.shop.metrics.MetricsRegistry;
+import com.codecool.shop.model.LineItem;
 import com.codecool.shop.model.Order;
+import com.codecool.shop.model.Product;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.IntFunction;
 
+/* Orders that have not been used for ttlMillis are evicted, and so are the least recently used
+ * ones while more than maxOrders are held. find and update count as a use. Expiry is tracked in a
+ * TimingWheel, checked by a background thread once per tick.
+ *
+ * With an OrderJournal attached by recover(), every added order, line item and removal is also
+ * appended to the journal, and the expiry thread compacts it when it has grown too long.
+ */
 public class OrderDaoMem implements OrderDao {
 
+    private static final long DEFAULT_TTL_MILLIS = 30 * 60 * 1000;
+    private static final int DEFAULT_MAX_ORDERS = 100000;
+    private static final long TICK_MILLIS = 1000;
+
     private static OrderDaoMem instance = null;
-    private List<Order> DATA = new ArrayList<>();
+    // ordered by id, so getAll keeps insertion order. Lookups (find, update) take no lock, but add
+    // and remove also schedule or cancel the order in the TimingWheel, which is one shared lock
+    private ConcurrentMap<Integer, TimingWheel.Entry<Order>> DATA = new ConcurrentSkipListMap<>();
+    private AtomicInteger nextId = new AtomicInteger(1);
+    private final TimingWheel<Order> expiry = new TimingWheel<>(TICK_MILLIS, System.currentTimeMillis());
+    private volatile long ttlMillis = DEFAULT_TTL_MILLIS;
+    private volatile int maxOrders = DEFAULT_MAX_ORDERS;
+    private volatile Consumer<Order> evictionListener = order -> { };
+    private volatile OrderJournal journal;
+
+    private final LongAdder expired;
+    private final LongAdder evictedForSize;
 
     /* A private Constructor prevents any other class from instantiating.
      */
     private OrderDaoMem() {
+        MetricsRegistry metrics = MetricsRegistry.getInstance();
+        String help = "Orders evicted from memory by reason";
+        expired = metrics.counter("order_evictions_total", help, "reason=\"expired\"");
+        evictedForSize = metrics.counter("order_evictions_total", help, "reason=\"size\"");
     }
 
-    public static OrderDaoMem getInstance() {
+    public static synchronized OrderDaoMem getInstance() {
         if (instance == null) {
             instance = new OrderDaoMem();
+            Thread expiryThread = new Thread(instance::expireLoop, "order-expiry");
+            expiryThread.setDaemon(true);
+            expiryThread.start();
         }
         return instance;
     }
 
+    public void configureEviction(long ttlMillis, int maxOrders) {
+        this.ttlMillis = ttlMillis;
+        this.maxOrders = maxOrders;
+        evictOverflow();
+    }
+
+    /* Called with every evicted order before it is removed, e.g. to persist it. Runs on the expiry
+     * thread, or on the thread adding an order when the size limit is hit.
+     */
+    public void setEvictionListener(Consumer<Order> evictionListener) {
+        this.evictionListener = evictionListener;
+    }
+
+    /* Loads the orders kept in the journal, compacts it and journals every change from now on.
+     * products resolves the product ids of the journaled line items. Returns the recovered orders.
+     */
+    public List<Order> recover(OrderJournal journal, IntFunction<Product> products) throws IOException {
+        List<Order> recovered = journal.replay(products);
+        long expiresAt = System.currentTimeMillis() + ttlMillis;
+        for (Order order : recovered) {
+            TimingWheel.Entry<Order> previous = DATA.put(order.getId(), expiry.schedule(order, expiresAt));
+            if (previous != null) {
+                expiry.cancel(previous);
+            }
+            nextId.accumulateAndGet(order.getId() + 1, Math::max);
+        }
+        this.journal = journal;
+        journal.compact(this::getAll);
+        evictOverflow();
+        return recovered;
+    }
+
+    /* Weakly consistent snapshot: orders added or removed while copying may or may not be included.
+     */
     @Override
     public List<Order> getAll() {
-        return DATA;
+        List<Order> orders = new ArrayList<>(DATA.size());
+        for (TimingWheel.Entry<Order> entry : DATA.values()) {
+            orders.add(entry.getValue());
+        }
+        return orders;
     }
 
+    public int size() {
+        return expiry.size();
+    }
+
+    /* Orders that already have an id (assigned by the database) keep it.
+     */
     @Override
     public void add(Order order) {
-        order.setId(DATA.size() + 1);
-        DATA.add(order);
+        if (order.getId() == 0) {
+            order.setId(nextId.getAndIncrement());
+        }
+        TimingWheel.Entry<Order> previous = DATA.put(order.getId(),
+                expiry.schedule(order, System.currentTimeMillis() + ttlMillis));
+        if (previous != null) {
+            expiry.cancel(previous);
+        }
+        OrderJournal journal = this.journal;
+        if (journal != null) {
+            journal.orderAdded(order);
+        }
+        evictOverflow();
     }
 
     @Override
     public Order find(int id) {
-        return DATA.stream().filter(t -> t.getId() == id).findFirst().orElse(null);
+        TimingWheel.Entry<Order> entry = DATA.get(id);
+        if (entry == null) {
+            return null;
+        }
+        entry.extendTo(System.currentTimeMillis() + ttlMillis);
+        return entry.getValue();
+    }
+
+    @Override
+    public void update(Order order) {
+        // orders are kept by reference, the change is already visible; only the use is recorded
+        TimingWheel.Entry<Order> entry = DATA.get(order.getId());
+        if (entry != null) {
+            entry.extendTo(System.currentTimeMillis() + ttlMillis);
+        }
+    }
+
+    /* The journal record is written under the order's monitor, so compaction sees the order
+     * either before or after the change and its record.
+     */
+    @Override
+    public void addLineItem(Order order, LineItem item) {
+        synchronized (order) {
+            order.addLineItem(item);
+            OrderJournal journal = this.journal;
+            if (journal != null) {
+                journal.itemAdded(order.getId(), item.getProduct().getId(), item.getQuantity(), item.getTotalPrice());
+            }
+        }
+        update(order);
     }
 
     @Override
     public void remove(int id) {
-        DATA.remove(find(id));
+        TimingWheel.Entry<Order> entry = DATA.remove(id);
+        if (entry != null) {
+            expiry.cancel(entry);
+            journalRemoval(id);
+        }
+    }
+
+    @Override
+    public void removeAll() {
+        for (Integer id : DATA.keySet()) {
+            remove(id);
+        }
+    }
+
+    /* Evicts the orders whose time to live ran out by nowMillis.
+     */
+    public void evictExpired(long nowMillis) {
+        for (TimingWheel.Entry<Order> entry : expiry.advance(nowMillis)) {
+            evict(entry, expired);
+        }
+    }
+
+    private void evictOverflow() {
+        while (expiry.size() > maxOrders) {
+            TimingWheel.Entry<Order> entry = expiry.pollEarliest();
+            if (entry == null) {
+                return;
+            }
+            evict(entry, evictedForSize);
+        }
+    }
+
+    private void evict(TimingWheel.Entry<Order> entry, LongAdder reason) {
+        Order order = entry.getValue();
+        try {
+            evictionListener.accept(order);
+        } finally {
+            // an order added again under the same id in the meantime stays
+            if (DATA.remove(order.getId(), entry)) {
+                journalRemoval(order.getId());
+            }
+            reason.increment();
+        }
+    }
+
+    private void journalRemoval(int id) {
+        OrderJournal journal = this.journal;
+        if (journal != null) {
+            journal.orderRemoved(id);
+        }
+    }
+
+    private void expireLoop() {
+        while (true) {
+            try {
+                Thread.sleep(TICK_MILLIS);
+                evictExpired(System.currentTimeMillis());
+                OrderJournal journal = this.journal;
+                if (journal != null && journal.needsCompaction()) {
+                    journal.compact(this::getAll);
+                }
+            } catch (InterruptedException e) {
+                return;
+            } catch (IOException | RuntimeException e) {
+                e.printStackTrace();
+            }
+        }
     }
 }
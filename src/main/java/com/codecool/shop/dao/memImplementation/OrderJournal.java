@@ -0,0 +1,427 @@
+package com.codecool.shop.dao.memImplementation;
+
+import com.codecool.shop.metrics.Histogram;
+import com.codecool.shop.metrics.MetricsRegistry;
+import com.codecool.shop.model.LineItem;
+import com.codecool.shop.model.Order;
+import com.codecool.shop.model.Product;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
+
+/* Append-only log of the changes made to the orders held by OrderDaoMem, so they survive a restart.
+ *
+ * The journal is a directory of segment files of segmentBytes each, memory-mapped while written.
+ * A segment starts with a 16 byte header (magic, format version, segment number) followed by
+ * fixed-size records of RECORD_BYTES:
+ *
+ *   int type, int order id, int product id, int quantity, float total price, int check
+ *
+ * A record with type 0 ends the segment: mapped files start zeroed. check covers the other fields,
+ * so a record torn by a crash ends the replay of its segment. Appending writes straight into the
+ * mapping and allocates nothing.
+ *
+ * Sync policies:
+ *   none      the OS writes the pages back; survives a process crash, not a power loss
+ *   interval  a background thread forces new records to disk every syncIntervalMillis
+ *   commit    like interval, but every append waits for the force that covers it; one force
+ *             acknowledges all the records appended since the previous one (group commit)
+ *
+ * An ORDER_ADDED record starts the order over and is followed by an ITEM_ADDED record for each
+ * item it already has, so an order loaded back from the database is journaled whole. Compaction
+ * rolls over to a new segment, writes every live order that way and deletes the segments before
+ * it, which drops removed, evicted and completed orders.
+ */
+public class OrderJournal {
+
+    public enum SyncPolicy { NONE, INTERVAL, COMMIT }
+
+    static final int RECORD_BYTES = 24;
+    private static final int HEADER_BYTES = 16;
+    private static final int MAGIC = 0x4F4A524E;
+    private static final int FORMAT_VERSION = 1;
+    private static final String SUFFIX = ".journal";
+
+    static final int ORDER_ADDED = 1;
+    static final int ITEM_ADDED = 2;
+    static final int ORDER_REMOVED = 3;
+
+    private static final Logger logger = LoggerFactory.getLogger(OrderJournal.class);
+
+    private final Path directory;
+    private final int segmentBytes;
+    private final SyncPolicy syncPolicy;
+    private final long syncIntervalMillis;
+    private final int maxSegments;
+
+    // guarded by this
+    private final Deque<Path> segments = new ArrayDeque<>();
+    private long segmentNumber;
+    private MappedByteBuffer buffer;
+    private int position;
+    private long appended;
+    private boolean compacting;
+    // while compacting, the orders added or removed since the roll: their new records already
+    // describe them, and rewriting one from the live orders could undo a removal
+    private Set<Integer> restartedSinceRoll;
+
+    // guarded by synced
+    private final long[] synced = new long[1];
+    private final Thread syncThread;
+    private volatile boolean open = true;
+
+    private final LongAdder appends;
+    private final LongAdder compactions;
+    private final Histogram syncTime;
+
+    public OrderJournal(Path directory, int segmentBytes, SyncPolicy syncPolicy, long syncIntervalMillis,
+                        int maxSegments) throws IOException {
+        this.directory = directory;
+        this.segmentBytes = Math.max(HEADER_BYTES + RECORD_BYTES, segmentBytes);
+        this.syncPolicy = syncPolicy;
+        this.syncIntervalMillis = Math.max(1, syncIntervalMillis);
+        this.maxSegments = Math.max(2, maxSegments);
+        Files.createDirectories(directory);
+        segments.addAll(existingSegments().values());
+        if (!segments.isEmpty()) {
+            segmentNumber = segmentNumber(segments.peekLast());
+        }
+
+        MetricsRegistry metrics = MetricsRegistry.getInstance();
+        appends = metrics.counter("order_journal_appends_total", "Records appended to the order journal", "");
+        compactions = metrics.counter("order_journal_compactions_total", "Compactions of the order journal", "");
+        syncTime = metrics.timer("order_journal_sync_seconds", "Duration of forcing the order journal to disk", "");
+        metrics.gauge("order_journal_segments", "Segment files of the order journal", this::segmentCount);
+
+        syncThread = new Thread(this::syncLoop, "order-journal-sync");
+        syncThread.setDaemon(true);
+        if (syncPolicy != SyncPolicy.NONE) {
+            syncThread.start();
+        }
+    }
+
+    /* Rebuilds the orders from every segment, in the order they were changed. Items of products
+     * that no longer exist are dropped. Appending starts in a new segment.
+     */
+    public synchronized List<Order> replay(IntFunction<Product> products) throws IOException {
+        Map<Integer, Order> orders = new LinkedHashMap<>();
+        Map<Integer, Product> productCache = new HashMap<>();
+        int records = 0;
+        for (Path segment : segments) {
+            try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ)) {
+                MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                if (mapped.capacity() < HEADER_BYTES || mapped.getInt(0) != MAGIC || mapped.getInt(4) != FORMAT_VERSION) {
+                    logger.warn("Skipping {}: not an order journal segment of format version {}", segment, FORMAT_VERSION);
+                    continue;
+                }
+                for (int at = HEADER_BYTES; at + RECORD_BYTES <= mapped.capacity(); at += RECORD_BYTES) {
+                    int type = mapped.getInt(at);
+                    int orderId = mapped.getInt(at + 4);
+                    int productId = mapped.getInt(at + 8);
+                    int quantity = mapped.getInt(at + 12);
+                    float totalPrice = mapped.getFloat(at + 16);
+                    if (type == 0) {
+                        break;
+                    }
+                    if (mapped.getInt(at + 20) != check(type, orderId, productId, quantity, totalPrice)) {
+                        logger.warn("Torn record at byte {} of {}, ignoring the rest of the segment", at, segment);
+                        break;
+                    }
+                    apply(orders, productCache, products, type, orderId, productId, quantity, totalPrice);
+                    records++;
+                }
+            }
+        }
+        logger.info("Replayed {} order journal records from {} segments into {} orders", records, segments.size(), orders.size());
+        return new ArrayList<>(orders.values());
+    }
+
+    /* Records the order with the items it has now, under its monitor.
+     */
+    public void orderAdded(Order order) {
+        long sequence = appendOrder(order);
+        if (syncPolicy == SyncPolicy.COMMIT) {
+            awaitSync(sequence);
+        }
+    }
+
+    public void itemAdded(int orderId, int productId, int quantity, float totalPrice) {
+        append(ITEM_ADDED, orderId, productId, quantity, totalPrice);
+    }
+
+    public void orderRemoved(int orderId) {
+        append(ORDER_REMOVED, orderId, 0, 0, 0f);
+    }
+
+    public synchronized boolean needsCompaction() {
+        return !compacting && segments.size() > maxSegments;
+    }
+
+    /* Rewrites the journal as the current state of the live orders. They are read only after the
+     * roll, so an order added or removed before that is in the list as it should be, and anything
+     * later has a record in the kept segments. Each order is written under its own monitor, the
+     * lock OrderDaoMem changes it under, so no change is lost or counted twice.
+     */
+    public void compact(Supplier<? extends Iterable<Order>> liveOrders) throws IOException {
+        Path firstKept;
+        synchronized (this) {
+            if (compacting) {
+                return;
+            }
+            compacting = true;
+            roll();
+            firstKept = segments.peekLast();
+            restartedSinceRoll = new HashSet<>();
+        }
+        try {
+            int orders = 0;
+            for (Order order : liveOrders.get()) {
+                // synced once at the end instead of per order
+                if (rewriteOrder(order)) {
+                    orders++;
+                }
+            }
+            sync();
+            int deleted = 0;
+            synchronized (this) {
+                while (segments.peekFirst() != firstKept) {
+                    Files.deleteIfExists(segments.pollFirst());
+                    deleted++;
+                }
+            }
+            compactions.increment();
+            logger.info("Compacted the order journal to {} orders, {} segments deleted", orders, deleted);
+        } finally {
+            synchronized (this) {
+                compacting = false;
+                restartedSinceRoll = null;
+            }
+        }
+    }
+
+    /* Forces everything appended so far to disk.
+     */
+    public void sync() {
+        long target;
+        MappedByteBuffer current;
+        synchronized (this) {
+            target = appended;
+            current = buffer;
+        }
+        synchronized (synced) {
+            if (synced[0] >= target) {
+                return;
+            }
+        }
+        long start = System.nanoTime();
+        if (current != null) {
+            current.force();
+        }
+        syncTime.record(System.nanoTime() - start);
+        synchronized (synced) {
+            if (target > synced[0]) {
+                synced[0] = target;
+            }
+            synced.notifyAll();
+        }
+    }
+
+    public void close() {
+        open = false;
+        syncThread.interrupt();
+        sync();
+    }
+
+    private void append(int type, int orderId, int productId, int quantity, float totalPrice) {
+        long sequence;
+        synchronized (this) {
+            if (type == ORDER_REMOVED && restartedSinceRoll != null) {
+                restartedSinceRoll.add(orderId);
+            }
+            sequence = appendLocked(type, orderId, productId, quantity, totalPrice);
+        }
+        if (syncPolicy == SyncPolicy.COMMIT) {
+            awaitSync(sequence);
+        }
+    }
+
+    private long appendOrder(Order order) {
+        synchronized (order) {
+            List<LineItem> items = order.getItems();
+            synchronized (this) {
+                if (restartedSinceRoll != null) {
+                    restartedSinceRoll.add(order.getId());
+                }
+                return appendOrderLocked(order.getId(), items);
+            }
+        }
+    }
+
+    // false if the order was added or removed since compaction rolled over
+    private boolean rewriteOrder(Order order) {
+        synchronized (order) {
+            List<LineItem> items = order.getItems();
+            synchronized (this) {
+                if (restartedSinceRoll.contains(order.getId())) {
+                    return false;
+                }
+                appendOrderLocked(order.getId(), items);
+                return true;
+            }
+        }
+    }
+
+    private long appendOrderLocked(int orderId, List<LineItem> items) {
+        long sequence = appendLocked(ORDER_ADDED, orderId, 0, 0, 0f);
+        for (LineItem item : items) {
+            sequence = appendLocked(ITEM_ADDED, orderId, item.getProduct().getId(), item.getQuantity(),
+                    item.getTotalPrice());
+        }
+        return sequence;
+    }
+
+    private long appendLocked(int type, int orderId, int productId, int quantity, float totalPrice) {
+        if (buffer == null || position + RECORD_BYTES > segmentBytes) {
+            try {
+                roll();
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not start a new order journal segment in " + directory, e);
+            }
+        }
+        buffer.putInt(position + 4, orderId);
+        buffer.putInt(position + 8, productId);
+        buffer.putInt(position + 12, quantity);
+        buffer.putFloat(position + 16, totalPrice);
+        buffer.putInt(position + 20, check(type, orderId, productId, quantity, totalPrice));
+        // the type goes last: a record without it reads as the end of the segment
+        buffer.putInt(position, type);
+        position += RECORD_BYTES;
+        appends.increment();
+        return ++appended;
+    }
+
+    private void awaitSync(long sequence) {
+        synchronized (synced) {
+            synced.notifyAll();
+            while (synced[0] < sequence && open) {
+                try {
+                    synced.wait(syncIntervalMillis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    // guarded by this
+    private void roll() throws IOException {
+        if (buffer != null) {
+            // written out before the new segment takes appends, so a sync never misses a segment
+            buffer.force();
+        }
+        segmentNumber++;
+        Path segment = directory.resolve(String.format("orders-%020d%s", segmentNumber, SUFFIX));
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentBytes);
+        }
+        buffer.putInt(0, MAGIC);
+        buffer.putInt(4, FORMAT_VERSION);
+        buffer.putLong(8, segmentNumber);
+        position = HEADER_BYTES;
+        segments.addLast(segment);
+    }
+
+    private void syncLoop() {
+        while (open) {
+            try {
+                synchronized (synced) {
+                    synced.wait(syncIntervalMillis);
+                }
+                sync();
+            } catch (InterruptedException e) {
+                return;
+            } catch (RuntimeException e) {
+                logger.error("Forcing the order journal to disk failed", e);
+            }
+        }
+    }
+
+    private synchronized long segmentCount() {
+        return segments.size();
+    }
+
+    private static void apply(Map<Integer, Order> orders, Map<Integer, Product> productCache, IntFunction<Product> products,
+                              int type, int orderId, int productId, int quantity, float totalPrice) {
+        switch (type) {
+            case ORDER_ADDED:
+                orders.put(orderId, newOrder(orderId));
+                break;
+            case ORDER_REMOVED:
+                orders.remove(orderId);
+                break;
+            case ITEM_ADDED:
+                Order order = orders.get(orderId);
+                Product product = productCache.computeIfAbsent(productId, products::apply);
+                if (order != null && product != null) {
+                    order.addLineItem(new LineItem(product, quantity, totalPrice));
+                }
+                break;
+            default:
+                logger.warn("Unknown order journal record type {}", type);
+        }
+    }
+
+    private static Order newOrder(int id) {
+        Order order = new Order();
+        order.setId(id);
+        return order;
+    }
+
+    private static int check(int type, int orderId, int productId, int quantity, float totalPrice) {
+        int hash = MAGIC;
+        hash = hash * 31 + type;
+        hash = hash * 31 + orderId;
+        hash = hash * 31 + productId;
+        hash = hash * 31 + quantity;
+        hash = hash * 31 + Float.floatToIntBits(totalPrice);
+        return hash;
+    }
+
+    private TreeMap<Long, Path> existingSegments() throws IOException {
+        TreeMap<Long, Path> found = new TreeMap<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "orders-*" + SUFFIX)) {
+            for (Path file : files) {
+                found.put(segmentNumber(file), file);
+            }
+        }
+        return found;
+    }
+
+    private static long segmentNumber(Path segment) {
+        String name = segment.getFileName().toString();
+        return Long.parseLong(name.substring("orders-".length(), name.length() - SUFFIX.length()));
+    }
+}
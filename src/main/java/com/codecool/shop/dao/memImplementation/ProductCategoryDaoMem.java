@@ -1,23 +1,27 @@
 package com.codecool.shop.dao.memImplementation;
 
 
+import com.codecool.shop.dao.CatalogVersion;
 import com.codecool.shop.dao.ProductCategoryDao;
 import com.codecool.shop.model.ProductCategory;
 
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 public class ProductCategoryDaoMem implements ProductCategoryDao {
 
     private static ProductCategoryDaoMem instance = null;
-    private List<ProductCategory> DATA = new ArrayList<>();
+    private Map<Integer, ProductCategory> DATA = new LinkedHashMap<>();
+    private int nextId = 1;
 
     /* A private Constructor prevents any other class from instantiating.
      */
     private ProductCategoryDaoMem() {
     }
 
-    public static ProductCategoryDaoMem getInstance() {
+    public static synchronized ProductCategoryDaoMem getInstance() {
         if (instance == null) {
             instance = new ProductCategoryDaoMem();
         }
@@ -25,28 +29,32 @@ public class ProductCategoryDaoMem implements ProductCategoryDao {
     }
 
     @Override
-    public void add(ProductCategory category) {
-        category.setId(DATA.size() + 1);
-        DATA.add(category);
+    public synchronized void add(ProductCategory category) {
+        category.setId(nextId++);
+        DATA.put(category.getId(), category);
+        CatalogVersion.bump();
     }
 
     @Override
-    public ProductCategory find(int id) {
-        return DATA.stream().filter(t -> t.getId() == id).findFirst().orElse(null);
+    public synchronized ProductCategory find(int id) {
+        return DATA.get(id);
     }
 
     @Override
-    public void remove(int id) {
-        DATA.remove(find(id));
+    public synchronized void remove(int id) {
+        if (DATA.remove(id) != null) {
+            CatalogVersion.bump();
+        }
     }
 
     @Override
-    public List<ProductCategory> getAll() {
-        return DATA;
+    public synchronized List<ProductCategory> getAll() {
+        return new ArrayList<>(DATA.values());
     }
 
-    public void removeAll() {
+    public synchronized void removeAll() {
         DATA.clear();
+        CatalogVersion.bump();
     }
 
 }
@@ -1,26 +1,41 @@
 package com.codecool.shop.dao.memImplementation;
 
 
+import com.codecool.shop.dao.CatalogVersion;
 import com.codecool.shop.dao.ProductDao;
 import com.codecool.shop.model.Product;
 import com.codecool.shop.model.ProductCategory;
 import com.codecool.shop.model.Supplier;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.function.Consumer;
 
 public class ProductDaoMem implements ProductDao {
 
+    private static final int VISIT_PAGE_SIZE = 1000;
+
     private static ProductDaoMem instance = null;
-    private List<Product> DATA = new ArrayList<>();
+    private Map<Integer, Product> DATA = new HashMap<>();
+    // the same products ordered by id, for listings and keyset pagination
+    private NavigableMap<Integer, Product> ordered = new TreeMap<>();
+    // secondary indexes: supplier / category id -> products of it, ordered by product id
+    private Map<Integer, NavigableMap<Integer, Product>> bySupplierId = new HashMap<>();
+    private Map<Integer, NavigableMap<Integer, Product>> byProductCategoryId = new HashMap<>();
+    private int nextId = 1;
 
     /* A private Constructor prevents any other class from instantiating.
      */
     private ProductDaoMem() {
     }
 
-    public static ProductDaoMem getInstance() {
+    public static synchronized ProductDaoMem getInstance() {
         if (instance == null) {
             instance = new ProductDaoMem();
         }
@@ -28,37 +43,135 @@ public class ProductDaoMem implements ProductDao {
     }
 
     @Override
-    public void add(Product product) {
-        product.setId(DATA.size() + 1);
-        DATA.add(product);
+    public synchronized void add(Product product) {
+        product.setId(nextId++);
+        DATA.put(product.getId(), product);
+        CatalogVersion.bump();
+        ordered.put(product.getId(), product);
+        bySupplierId.computeIfAbsent(product.getSupplier().getId(), id -> new TreeMap<>())
+                .put(product.getId(), product);
+        byProductCategoryId.computeIfAbsent(product.getProductCategory().getId(), id -> new TreeMap<>())
+                .put(product.getId(), product);
     }
 
     @Override
-    public Product find(int id) {
-        return DATA.stream().filter(t -> t.getId() == id).findFirst().orElse(null);
+    public synchronized Product find(int id) {
+        return DATA.get(id);
     }
 
     @Override
-    public void remove(int id) {
-        DATA.remove(find(id));
+    public synchronized void remove(int id) {
+        Product product = DATA.remove(id);
+        if (product != null) {
+            CatalogVersion.bump();
+            ordered.remove(id);
+            removeFromIndex(bySupplierId, product.getSupplier().getId(), id);
+            removeFromIndex(byProductCategoryId, product.getProductCategory().getId(), id);
+        }
     }
 
-    public void removeAll() {
+    public synchronized void removeAll() {
         DATA.clear();
+        CatalogVersion.bump();
+        ordered.clear();
+        bySupplierId.clear();
+        byProductCategoryId.clear();
+    }
+
+    @Override
+    public synchronized List<Product> getAll() {
+        return new ArrayList<>(ordered.values());
+    }
+
+    @Override
+    public synchronized List<Product> getBy(Supplier supplier) {
+        return valuesOf(bySupplierId.get(supplier.getId()));
+    }
+
+    @Override
+    public synchronized List<Product> getBy(ProductCategory productCategory) {
+        return valuesOf(byProductCategoryId.get(productCategory.getId()));
+    }
+
+    @Override
+    public synchronized List<Product> getAll(int afterId, int limit) {
+        return pageAfter(ordered, afterId, limit);
+    }
+
+    @Override
+    public synchronized List<Product> getBy(Supplier supplier, int afterId, int limit) {
+        return pageAfter(bySupplierId.get(supplier.getId()), afterId, limit);
+    }
+
+    @Override
+    public synchronized List<Product> getBy(ProductCategory productCategory, int afterId, int limit) {
+        return pageAfter(byProductCategoryId.get(productCategory.getId()), afterId, limit);
     }
 
     @Override
-    public List<Product> getAll() {
-        return DATA;
+    public synchronized List<Product> getAllBefore(int beforeId, int limit) {
+        return pageBefore(ordered, beforeId, limit);
     }
 
     @Override
-    public List<Product> getBy(Supplier supplier) {
-        return DATA.stream().filter(t -> t.getSupplier().equals(supplier)).collect(Collectors.toList());
+    public synchronized List<Product> getByBefore(Supplier supplier, int beforeId, int limit) {
+        return pageBefore(bySupplierId.get(supplier.getId()), beforeId, limit);
     }
 
     @Override
-    public List<Product> getBy(ProductCategory productCategory) {
-        return DATA.stream().filter(t -> t.getProductCategory().equals(productCategory)).collect(Collectors.toList());
+    public synchronized List<Product> getByBefore(ProductCategory productCategory, int beforeId, int limit) {
+        return pageBefore(byProductCategoryId.get(productCategory.getId()), beforeId, limit);
+    }
+
+    @Override
+    public void visitAll(Consumer<Product> visitor) {
+        // page through the store so the visitor never runs while holding the lock
+        int afterId = 0;
+        List<Product> page;
+        while (!(page = getAll(afterId, VISIT_PAGE_SIZE)).isEmpty()) {
+            page.forEach(visitor);
+            afterId = page.get(page.size() - 1).getId();
+        }
+    }
+
+    private static void removeFromIndex(Map<Integer, NavigableMap<Integer, Product>> index, int key, int productId) {
+        Map<Integer, Product> products = index.get(key);
+        if (products != null) {
+            products.remove(productId);
+            if (products.isEmpty()) {
+                index.remove(key);
+            }
+        }
+    }
+
+    private static List<Product> valuesOf(Map<Integer, Product> products) {
+        return products == null ? new ArrayList<>() : new ArrayList<>(products.values());
+    }
+
+    private static List<Product> pageAfter(NavigableMap<Integer, Product> products, int afterId, int limit) {
+        if (products == null) {
+            return new ArrayList<>();
+        }
+        return firstOf(products.tailMap(afterId, false).values(), limit);
+    }
+
+    private static List<Product> pageBefore(NavigableMap<Integer, Product> products, int beforeId, int limit) {
+        if (products == null) {
+            return new ArrayList<>();
+        }
+        List<Product> page = firstOf(products.headMap(beforeId, false).descendingMap().values(), limit);
+        Collections.reverse(page);
+        return page;
+    }
+
+    private static List<Product> firstOf(Collection<Product> products, int limit) {
+        List<Product> page = new ArrayList<>();
+        for (Product product : products) {
+            if (page.size() >= limit) {
+                break;
+            }
+            page.add(product);
+        }
+        return page;
     }
 }
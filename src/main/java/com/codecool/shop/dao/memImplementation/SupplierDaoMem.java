@@ -1,22 +1,26 @@
 package com.codecool.shop.dao.memImplementation;
 
+import com.codecool.shop.dao.CatalogVersion;
 import com.codecool.shop.dao.SupplierDao;
 import com.codecool.shop.model.Supplier;
 
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 public class SupplierDaoMem implements SupplierDao {
 
     private static SupplierDaoMem instance = null;
-    private List<Supplier> DATA = new ArrayList<>();
+    private Map<Integer, Supplier> DATA = new LinkedHashMap<>();
+    private int nextId = 1;
 
     /* A private Constructor prevents any other class from instantiating.
      */
     private SupplierDaoMem() {
     }
 
-    public static SupplierDaoMem getInstance() {
+    public static synchronized SupplierDaoMem getInstance() {
         if (instance == null) {
             instance = new SupplierDaoMem();
         }
@@ -24,27 +28,31 @@ public class SupplierDaoMem implements SupplierDao {
     }
 
     @Override
-    public void add(Supplier supplier) {
-        supplier.setId(DATA.size() + 1);
-        DATA.add(supplier);
+    public synchronized void add(Supplier supplier) {
+        supplier.setId(nextId++);
+        DATA.put(supplier.getId(), supplier);
+        CatalogVersion.bump();
     }
 
     @Override
-    public Supplier find(int id) {
-        return DATA.stream().filter(t -> t.getId() == id).findFirst().orElse(null);
+    public synchronized Supplier find(int id) {
+        return DATA.get(id);
     }
 
     @Override
-    public void remove(int id) {
-        DATA.remove(find(id));
+    public synchronized void remove(int id) {
+        if (DATA.remove(id) != null) {
+            CatalogVersion.bump();
+        }
     }
 
-    public void removeAll() {
+    public synchronized void removeAll() {
         DATA.clear();
+        CatalogVersion.bump();
     }
 
     @Override
-    public List<Supplier> getAll() {
-        return DATA;
+    public synchronized List<Supplier> getAll() {
+        return new ArrayList<>(DATA.values());
     }
 }
@@ -0,0 +1,208 @@
+package com.codecool.shop.dao.memImplementation;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/* Hierarchical timing wheel of expiring entries.
+ *
+ * Time is cut into ticks of tickMillis. Level 0 has a slot per tick for the next 64 ticks, level 1
+ * a slot per 64 ticks, and so on; an entry sits in the lowest level that covers its expiry tick and
+ * moves down a level whenever the wheel reaches its slot. Scheduling, cancelling and expiring an
+ * entry are O(1), and advancing the wheel never looks at entries that are not due.
+ *
+ * Extending a deadline does not touch the wheel: the entry only records the new deadline, and is
+ * put back into the wheel when it comes due. Deadlines may therefore only be moved later.
+ */
+public class TimingWheel<V> {
+
+    private static final int SLOT_BITS = 6;
+    private static final int SLOTS = 1 << SLOT_BITS;
+    private static final int MASK = SLOTS - 1;
+    private static final int LEVELS = 4;
+    // the furthest tick a level can hold, relative to the current one
+    private static final long SPAN = 1L << (SLOT_BITS * LEVELS);
+
+    private final long tickMillis;
+    // heads of the circular lists of the slots, without entries of their own
+    private final Entry<V>[][] wheel;
+    // the last tick that has been processed
+    private long currentTick;
+    private int size;
+
+    public TimingWheel(long tickMillis, long startMillis) {
+        this.tickMillis = tickMillis;
+        this.currentTick = startMillis / tickMillis;
+        wheel = newSlots();
+        for (Entry<V>[] level : wheel) {
+            for (int slot = 0; slot < SLOTS; slot++) {
+                Entry<V> head = new Entry<>(null, 0);
+                head.prev = head;
+                head.next = head;
+                level[slot] = head;
+            }
+        }
+    }
+
+    // Java cannot create a generic array; every slot is filled with an Entry<V> head right after
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static <V> Entry<V>[][] newSlots() {
+        return new Entry[LEVELS][SLOTS];
+    }
+
+    public synchronized Entry<V> schedule(V value, long deadlineMillis) {
+        Entry<V> entry = new Entry<>(value, deadlineMillis);
+        insert(entry, tickOf(deadlineMillis));
+        size++;
+        return entry;
+    }
+
+    /* Removes the entry, if it is still in the wheel.
+     */
+    public synchronized void cancel(Entry<V> entry) {
+        if (entry.next != null) {
+            unlink(entry);
+            size--;
+        }
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    /* Moves the wheel up to nowMillis and removes and returns the entries whose deadline has passed.
+     */
+    public synchronized List<Entry<V>> advance(long nowMillis) {
+        List<Entry<V>> expired = new ArrayList<>();
+        long nowTick = nowMillis / tickMillis;
+        if (size == 0) {
+            currentTick = Math.max(currentTick, nowTick);
+            return expired;
+        }
+        while (currentTick < nowTick) {
+            long tick = currentTick + 1;
+            // bring the entries of the coming block down from the higher levels, highest first,
+            // while currentTick is still the previous tick so that entries due now land in level 0
+            for (int level = LEVELS - 1; level > 0; level--) {
+                if ((tick & ((1L << (SLOT_BITS * level)) - 1)) == 0) {
+                    reinsertAll(wheel[level][(int) (tick >>> (SLOT_BITS * level)) & MASK]);
+                }
+            }
+            Entry<V> head = wheel[0][(int) tick & MASK];
+            for (Entry<V> entry = head.next; entry != head; ) {
+                Entry<V> next = entry.next;
+                unlink(entry);
+                long due = tickOf(entry.deadline);
+                if (due <= tick) {
+                    size--;
+                    expired.add(entry);
+                } else {
+                    insert(entry, due);
+                }
+                entry = next;
+            }
+            currentTick = tick;
+        }
+        return expired;
+    }
+
+    /* Removes and returns the entry that comes due first, or null when the wheel is empty. Entries
+     * within one slot come out in no particular order, so the choice is exact up to the slot width.
+     */
+    public synchronized Entry<V> pollEarliest() {
+        // an entry whose deadline was extended is moved to its new slot and the search starts again
+        for (int moved = 0; size > 0; moved++) {
+            Entry<V> entry = earliest();
+            unlink(entry);
+            long due = tickOf(entry.deadline);
+            if (due > entry.tick && moved < size) {
+                insert(entry, due);
+                continue;
+            }
+            size--;
+            return entry;
+        }
+        return null;
+    }
+
+    private Entry<V> earliest() {
+        for (int level = 0; level < LEVELS; level++) {
+            long base = currentTick >>> (SLOT_BITS * level);
+            // the slot of the current block comes last: it only holds entries of the next round
+            for (int offset = 1; offset <= SLOTS; offset++) {
+                Entry<V> head = wheel[level][(int) (base + offset) & MASK];
+                if (head.next != head) {
+                    return head.next;
+                }
+            }
+        }
+        throw new IllegalStateException("wheel of size " + size + " has no entries");
+    }
+
+    private void reinsertAll(Entry<V> head) {
+        for (Entry<V> entry = head.next; entry != head; ) {
+            Entry<V> next = entry.next;
+            unlink(entry);
+            insert(entry, entry.tick);
+            entry = next;
+        }
+    }
+
+    private void insert(Entry<V> entry, long tick) {
+        entry.tick = tick;
+        // ticks between the next tick to process and the entry's; overdue entries go into the next one
+        long delta = Math.max(0, tick - currentTick - 1);
+        long placed = currentTick + 1 + Math.min(delta, SPAN - 1);
+        int level = 0;
+        while (level < LEVELS - 1 && delta >= 1L << (SLOT_BITS * (level + 1))) {
+            level++;
+        }
+        Entry<V> head = wheel[level][(int) (placed >>> (SLOT_BITS * level)) & MASK];
+        entry.prev = head.prev;
+        entry.next = head;
+        head.prev.next = entry;
+        head.prev = entry;
+    }
+
+    private static <V> void unlink(Entry<V> entry) {
+        entry.prev.next = entry.next;
+        entry.next.prev = entry.prev;
+        entry.prev = null;
+        entry.next = null;
+    }
+
+    // the first tick at or after the deadline
+    private long tickOf(long deadlineMillis) {
+        return (deadlineMillis + tickMillis - 1) / tickMillis;
+    }
+
+    public static class Entry<V> {
+
+        private final V value;
+        private volatile long deadline;
+        // guarded by the wheel
+        private long tick;
+        private Entry<V> prev;
+        private Entry<V> next;
+
+        private Entry(V value, long deadline) {
+            this.value = value;
+            this.deadline = deadline;
+        }
+
+        public V getValue() {
+            return value;
+        }
+
+        public long getDeadline() {
+            return deadline;
+        }
+
+        /* Lock-free: the wheel picks the new deadline up when the old one comes due.
+         */
+        public void extendTo(long deadlineMillis) {
+            if (deadlineMillis > deadline) {
+                deadline = deadlineMillis;
+            }
+        }
+    }
+}
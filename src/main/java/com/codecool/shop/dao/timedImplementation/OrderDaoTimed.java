@@ -0,0 +1,105 @@
+package com.codecool.shop.dao.timedImplementation;
+
+import com.codecool.shop.dao.OrderDao;
+import com.codecool.shop.metrics.Histogram;
+import com.codecool.shop.metrics.MetricsRegistry;
+import com.codecool.shop.model.LineItem;
+import com.codecool.shop.model.Order;
+
+import java.util.List;
+
+/* Decorator recording the duration of every OrderDao call in the dao_query_duration_seconds summary.
+ */
+public class OrderDaoTimed implements OrderDao {
+
+    private final OrderDao delegate;
+    private final Histogram add;
+    private final Histogram find;
+    private final Histogram addLineItem;
+    private final Histogram update;
+    private final Histogram remove;
+    private final Histogram removeAll;
+    private final Histogram getAll;
+
+    public OrderDaoTimed(OrderDao delegate) {
+        this.delegate = delegate;
+        MetricsRegistry metrics = MetricsRegistry.getInstance();
+        add = metrics.timer(TimedDao.METRIC, TimedDao.HELP, TimedDao.labels("OrderDao", "add"));
+        find = metrics.timer(TimedDao.METRIC, TimedDao.HELP, TimedDao.labels("OrderDao", "find"));
+        addLineItem = metrics.timer(TimedDao.METRIC, TimedDao.HELP, TimedDao.labels("OrderDao", "addLineItem"));
+        update = metrics.timer(TimedDao.METRIC, TimedDao.HELP, TimedDao.labels("OrderDao", "update"));
+        remove = metrics.timer(TimedDao.METRIC, TimedDao.HELP, TimedDao.labels("OrderDao", "remove"));
+        removeAll = metrics.timer(TimedDao.METRIC, TimedDao.HELP, TimedDao.labels("OrderDao", "removeAll"));
+        getAll = metrics.timer(TimedDao.METRIC, TimedDao.HELP, TimedDao.labels("OrderDao", "getAll"));
+    }
+
+    @Override
+    public void add(Order order) {
+        long start = System.nanoTime();
+        try {
+            delegate.add(order);
+        } finally {
+            add.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public Order find(int id) {
+        long start = System.nanoTime();
+        try {
+            return delegate.find(id);
+        } finally {
+            find.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public void addLineItem(Order order, LineItem item) {
+        long start = System.nanoTime();
+        try {
+            delegate.addLineItem(order, item);
+        } finally {
+            addLineItem.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public void update(Order order) {
+        long start = System.nanoTime();
+        try {
+            delegate.update(order);
+        } finally {
+            update.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public void remove(int id) {
+        long start = System.nanoTime();
+        try {
+            delegate.remove(id);
+        } finally {
+            remove.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public void removeAll() {
+        long start = System.nanoTime();
+        try {
+            delegate.removeAll();
+        } finally {
+            removeAll.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public List<Order> getAll() {
+        long start = System.nanoTime();
+        try {
+            return delegate.getAll();
+        } finally {
+            getAll.record(System.nanoTime() - start);
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.codecool.shop.dao.timedImplementation;
+
+import com.codecool.shop.dao.ProductCategoryDao;
+import com.codecool.shop.metrics.Histogram;
+import com.codecool.shop.metrics.MetricsRegistry;
+import com.codecool.shop.model.ProductCategory;
+
+import java.util.List;
+
+/* Decorator recording the duration of every ProductCategoryDao call in the dao_query_duration_seconds summary.
+ */
+public class ProductCategoryDaoTimed implements ProductCategoryDao {
+
+    private final ProductCategoryDao delegate;
+    private final Histogram add;
+    private final Histogram find;
+    private final Histogram remove;
+    private final Histogram removeAll;
+    private final Histogram getAll;
+
+    public ProductCategoryDaoTimed(ProductCategoryDao delegate) {
+        this.delegate = delegate;
+        MetricsRegistry metrics = MetricsRegistry.getInstance();
+        add = metrics.timer(TimedDao.METRIC, TimedDao.HELP, TimedDao.labels("ProductCategoryDao", "add"));
+        find = metrics.timer(TimedDao.METRIC, TimedDao.HELP, TimedDao.labels("ProductCategoryDao", "find"));
+        remove = metrics.timer(TimedDao.METRIC, TimedDao.HELP, TimedDao.labels("ProductCategoryDao", "remove"));
+        removeAll = metrics.timer(TimedDao.METRIC, TimedDao.HELP, TimedDao.labels("ProductCategoryDao", "removeAll"));
+        getAll = metrics.timer(TimedDao.METRIC, TimedDao.HELP, TimedDao.labels("ProductCategoryDao", "getAll"));
+    }
+
+    @Override
+    public void add(ProductCategory category) {
+        long start = System.nanoTime();
+        try {
+            delegate.add(category);
+        } finally {
+            add.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public ProductCategory find(int id) {
+        long start = System.nanoTime();
+        try {
+            return delegate.find(id);
+        } finally {
+            find.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public void remove(int id) {
+        long start = System.nanoTime();
+        try {
+            delegate.remove(id);
+        } finally {
+            remove.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public void removeAll() {
+        long start = System.nanoTime();
+        try {
+            delegate.removeAll();
+        } finally {
+            removeAll.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public List<ProductCategory> getAll() {
+        long start = System.nanoTime();
+        try {
+            return delegate.getAll();
+        } finally {
+            getAll.record(System.nanoTime() - start);
+        }
+    }
+}
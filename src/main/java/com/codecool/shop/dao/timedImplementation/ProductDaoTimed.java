@@ -0,0 +1,185 @@
+package com.codecool.shop.dao.timedImplementation;
+
+import com.codecool.shop.dao.ProductDao;
+import com.codecool.shop.metrics.Histogram;
+import com.codecool.shop.metrics.MetricsRegistry;
+import com.codecool.shop.model.Product;
+import com.codecool.shop.model.ProductCategory;
+import com.codecool.shop.model.Supplier;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+/* Decorator recording the duration of every ProductDao call in the dao_query_duration_seconds summary.
+ */
+public class ProductDaoTimed implements ProductDao {
+
+    private final ProductDao delegate;
+    private final Histogram add;
+    private final Histogram find;
+    private final Histogram remove;
+    private final Histogram removeAll;
+    private final Histogram getAll;
+    private final Histogram getBy;
+    private final Histogram getAllAfter;
+    private final Histogram getByAfter;
+    private final Histogram getAllBefore;
+    private final Histogram getByBefore;
+    private final Histogram visitAll;
+
+    public ProductDaoTimed(ProductDao delegate) {
+        this.delegate = delegate;
+        MetricsRegistry metrics = MetricsRegistry.getInstance();
+        add = metrics.timer(TimedDao.METRIC, TimedDao.HELP, TimedDao.labels("ProductDao", "add"));
+        find = metrics.timer(TimedDao.METRIC, TimedDao.HELP, TimedDao.labels("ProductDao", "find"));
+        remove = metrics.timer(TimedDao.METRIC, TimedDao.HELP, TimedDao.labels("ProductDao", "remove"));
+        removeAll = metrics.timer(TimedDao.METRIC, TimedDao.HELP, TimedDao.labels("ProductDao", "removeAll"));
+        getAll = metrics.timer(TimedDao.METRIC, TimedDao.HELP, TimedDao.labels("ProductDao", "getAll"));
+        getBy = metrics.timer(TimedDao.METRIC, TimedDao.HELP, TimedDao.labels("ProductDao", "getBy"));
+        getAllAfter = metrics.timer(TimedDao.METRIC, TimedDao.HELP, TimedDao.labels("ProductDao", "getAllAfter"));
+        getByAfter = metrics.timer(TimedDao.METRIC, TimedDao.HELP, TimedDao.labels("ProductDao", "getByAfter"));
+        getAllBefore = metrics.timer(TimedDao.METRIC, TimedDao.HELP, TimedDao.labels("ProductDao", "getAllBefore"));
+        getByBefore = metrics.timer(TimedDao.METRIC, TimedDao.HELP, TimedDao.labels("ProductDao", "getByBefore"));
+        visitAll = metrics.timer(TimedDao.METRIC, TimedDao.HELP, TimedDao.labels("ProductDao", "visitAll"));
+    }
+
+    @Override
+    public void add(Product product) {
+        long start = System.nanoTime();
+        try {
+            delegate.add(product);
+        } finally {
+            add.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public Product find(int id) {
+        long start = System.nanoTime();
+        try {
+            return delegate.find(id);
+        } finally {
+            find.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public void remove(int id) {
+        long start = System.nanoTime();
+        try {
+            delegate.remove(id);
+        } finally {
+            remove.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public void removeAll() {
+        long start = System.nanoTime();
+        try {
+            delegate.removeAll();
+        } finally {
+            removeAll.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public List<Product> getAll() {
+        long start = System.nanoTime();
+        try {
+            return delegate.getAll();
+        } finally {
+            getAll.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public List<Product> getBy(Supplier supplier) {
+        long start = System.nanoTime();
+        try {
+            return delegate.getBy(supplier);
+        } finally {
+            getBy.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public List<Product> getBy(ProductCategory productCategory) {
+        long start = System.nanoTime();
+        try {
+            return delegate.getBy(productCategory);
+        } finally {
+            getBy.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public List<Product> getAll(int afterId, int limit) {
+        long start = System.nanoTime();
+        try {
+            return delegate.getAll(afterId, limit);
+        } finally {
+            getAllAfter.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public List<Product> getBy(Supplier supplier, int afterId, int limit) {
+        long start = System.nanoTime();
+        try {
+            return delegate.getBy(supplier, afterId, limit);
+        } finally {
+            getByAfter.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public List<Product> getBy(ProductCategory productCategory, int afterId, int limit) {
+        long start = System.nanoTime();
+        try {
+            return delegate.getBy(productCategory, afterId, limit);
+        } finally {
+            getByAfter.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public List<Product> getAllBefore(int beforeId, int limit) {
+        long start = System.nanoTime();
+        try {
+            return delegate.getAllBefore(beforeId, limit);
+        } finally {
+            getAllBefore.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public List<Product> getByBefore(Supplier supplier, int beforeId, int limit) {
+        long start = System.nanoTime();
+        try {
+            return delegate.getByBefore(supplier, beforeId, limit);
+        } finally {
+            getByBefore.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public List<Product> getByBefore(ProductCategory productCategory, int beforeId, int limit) {
+        long start = System.nanoTime();
+        try {
+            return delegate.getByBefore(productCategory, beforeId, limit);
+        } finally {
+            getByBefore.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public void visitAll(Consumer<Product> visitor) {
+        long start = System.nanoTime();
+        try {
+            delegate.visitAll(visitor);
+        } finally {
+            visitAll.record(System.nanoTime() - start);
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.codecool.shop.dao.timedImplementation;
+
+import com.codecool.shop.dao.SupplierDao;
+import com.codecool.shop.metrics.Histogram;
+import com.codecool.shop.metrics.MetricsRegistry;
+import com.codecool.shop.model.Supplier;
+
+import java.util.List;
+
+/* Decorator recording the duration of every SupplierDao call in the dao_query_duration_seconds summary.
+ */
+public class SupplierDaoTimed implements SupplierDao {
+
+    private final SupplierDao delegate;
+    private final Histogram add;
+    private final Histogram find;
+    private final Histogram remove;
+    private final Histogram removeAll;
+    private final Histogram getAll;
+
+    public SupplierDaoTimed(SupplierDao delegate) {
+        this.delegate = delegate;
+        MetricsRegistry metrics = MetricsRegistry.getInstance();
+        add = metrics.timer(TimedDao.METRIC, TimedDao.HELP, TimedDao.labels("SupplierDao", "add"));
+        find = metrics.timer(TimedDao.METRIC, TimedDao.HELP, TimedDao.labels("SupplierDao", "find"));
+        remove = metrics.timer(TimedDao.METRIC, TimedDao.HELP, TimedDao.labels("SupplierDao", "remove"));
+        removeAll = metrics.timer(TimedDao.METRIC, TimedDao.HELP, TimedDao.labels("SupplierDao", "removeAll"));
+        getAll = metrics.timer(TimedDao.METRIC, TimedDao.HELP, TimedDao.labels("SupplierDao", "getAll"));
+    }
+
+    @Override
+    public void add(Supplier supplier) {
+        long start = System.nanoTime();
+        try {
+            delegate.add(supplier);
+        } finally {
+            add.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public Supplier find(int id) {
+        long start = System.nanoTime();
+        try {
+            return delegate.find(id);
+        } finally {
+            find.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public void remove(int id) {
+        long start = System.nanoTime();
+        try {
+            delegate.remove(id);
+        } finally {
+            remove.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public void removeAll() {
+        long start = System.nanoTime();
+        try {
+            delegate.removeAll();
+        } finally {
+            removeAll.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public List<Supplier> getAll() {
+        long start = System.nanoTime();
+        try {
+            return delegate.getAll();
+        } finally {
+            getAll.record(System.nanoTime() - start);
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package com.codecool.shop.dao.timedImplementation;
+
+final class TimedDao {
+
+    static final String METRIC = "dao_query_duration_seconds";
+    static final String HELP = "Duration of DAO method calls";
+
+    private TimedDao() {
+    }
+
+    static String labels(String dao, String method) {
+        return "dao=\"" + dao + "\",method=\"" + method + "\"";
+    }
+}
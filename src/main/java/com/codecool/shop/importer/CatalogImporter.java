@@ -0,0 +1,229 @@
+package com.codecool.shop.importer;
+
+import com.codecool.shop.dao.CatalogVersion;
+import com.codecool.shop.dao.jdbcImplementation.ConnectionPool;
+import com.codecool.shop.dao.jdbcImplementation.JDBCConnectPropParser;
+import com.codecool.shop.metrics.MetricsRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Currency;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/* Bulk loads a catalog file (CSV or NDJSON, see CatalogReader) into the database.
+ *
+ * Suppliers and categories are resolved by name and created when missing, reading their ids back
+ * with RETURNING. Products are inserted with JDBC batches; every batch is committed in its own
+ * transaction together with the number of records consumed so far, stored in the catalog_import
+ * table under the file's path. An interrupted import started again on the same file continues
+ * after the last committed batch.
+ *
+ *   java -cp ... com.codecool.shop.importer.CatalogImporter catalog.csv [--restart]
+ */
+public class CatalogImporter {
+
+    public static final int DEFAULT_BATCH_SIZE = 1000;
+
+    private static final Logger logger = LoggerFactory.getLogger(CatalogImporter.class);
+    private static final LongAdder importedProducts = MetricsRegistry.getInstance()
+            .counter("catalog_import_products_total", "Products inserted by the catalog import", "");
+
+    private static final String INSERT_PRODUCT = "INSERT INTO Product (name, description, currency, default_price, supplier_id, product_category_id) VALUES (?,?,?,?,?,?);";
+    private static final String INSERT_SUPPLIER = "INSERT INTO Supplier (name, description) VALUES (?,?) RETURNING id;";
+    private static final String INSERT_CATEGORY = "INSERT INTO ProductCategory (name, description, department) VALUES (?,?,?) RETURNING id;";
+    private static final String SELECT_CHECKPOINT = "SELECT position FROM catalog_import WHERE source = ?;";
+    private static final String UPDATE_CHECKPOINT = "UPDATE catalog_import SET position = ?, updated_at = now() WHERE source = ?;";
+    private static final String INSERT_CHECKPOINT = "INSERT INTO catalog_import (position, source) VALUES (?,?);";
+    private static final String DELETE_CHECKPOINT = "DELETE FROM catalog_import WHERE source = ?;";
+
+    private final ConnectionPool connectionPool = ConnectionPool.getInstance();
+    private final int batchSize;
+
+    public CatalogImporter() {
+        Properties props = JDBCConnectPropParser.loadProperties();
+        if (props != null && props.getProperty("import.batchSize") != null) {
+            batchSize = Integer.parseInt(props.getProperty("import.batchSize").trim());
+        } else {
+            batchSize = DEFAULT_BATCH_SIZE;
+        }
+    }
+
+    public CatalogImporter(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    public static void main(String[] args) throws IOException, SQLException {
+        if (args.length == 0) {
+            System.err.println("Usage: CatalogImporter <catalog.csv|catalog.ndjson> [--restart]");
+            System.exit(1);
+        }
+        Path file = Paths.get(args[0]);
+        CatalogImporter importer = new CatalogImporter();
+        if (args.length > 1 && "--restart".equals(args[1])) {
+            importer.resetCheckpoint(file);
+        }
+        importer.importFile(file);
+        ConnectionPool.getInstance().shutdown();
+    }
+
+    /* Imports the records of the file after its checkpoint and returns how many products were inserted.
+     */
+    public long importFile(Path file) throws IOException, SQLException {
+        String source = sourceOf(file);
+        long started = System.nanoTime();
+        long imported = 0;
+
+        try (CatalogReader reader = CatalogReader.open(file);
+             Connection connection = connectionPool.getConnection()) {
+            connection.setAutoCommit(false);
+            long checkpoint = readCheckpoint(connection, source);
+            if (checkpoint > 0) {
+                logger.info("Resuming import of {} after record {}", file, checkpoint);
+                reader.skip(checkpoint);
+            }
+            Map<String, Integer> supplierIds = loadIds(connection, "SELECT id, name FROM Supplier;");
+            Map<String, Integer> categoryIds = loadIds(connection, "SELECT id, name FROM ProductCategory;");
+
+            try (PreparedStatement insertProduct = connection.prepareStatement(INSERT_PRODUCT);
+                 PreparedStatement insertSupplier = connection.prepareStatement(INSERT_SUPPLIER);
+                 PreparedStatement insertCategory = connection.prepareStatement(INSERT_CATEGORY)) {
+                int batched = 0;
+                CatalogRecord record;
+                while ((record = reader.next()) != null) {
+                    if (record.name == null || record.supplier == null || record.category == null) {
+                        throw reader.invalid("name, supplier and category are required");
+                    }
+                    int supplierId = resolve(supplierIds, record.supplier, insertSupplier,
+                            record.supplierDescription);
+                    int categoryId = resolve(categoryIds, record.category, insertCategory,
+                            record.categoryDescription, record.categoryDepartment);
+
+                    insertProduct.setString(1, record.name);
+                    insertProduct.setString(2, record.description);
+                    insertProduct.setString(3, currencyCode(reader, record.currency));
+                    insertProduct.setFloat(4, record.price);
+                    insertProduct.setInt(5, supplierId);
+                    insertProduct.setInt(6, categoryId);
+                    insertProduct.addBatch();
+
+                    if (++batched == batchSize) {
+                        commitBatch(connection, insertProduct, source, reader.getPosition(), batched);
+                        imported += batched;
+                        batched = 0;
+                        logProgress(file, imported, started);
+                    }
+                }
+                commitBatch(connection, insertProduct, source, reader.getPosition(), batched);
+                imported += batched;
+            } catch (SQLException | RuntimeException e) {
+                connection.rollback();
+                logger.error("Import of {} stopped after {} products, run it again to resume", file, imported);
+                throw e;
+            }
+        }
+        logProgress(file, imported, started);
+        return imported;
+    }
+
+    /* Forgets how far the file was imported, so the next import starts at its first record.
+     */
+    public void resetCheckpoint(Path file) throws SQLException {
+        try (Connection connection = connectionPool.getConnection();
+             PreparedStatement preparedStatement = connection.prepareStatement(DELETE_CHECKPOINT)) {
+            preparedStatement.setString(1, sourceOf(file));
+            preparedStatement.executeUpdate();
+        }
+    }
+
+    private void commitBatch(Connection connection, PreparedStatement insertProduct,
+                             String source, long position, int batched) throws SQLException {
+        if (batched > 0) {
+            insertProduct.executeBatch();
+        }
+        saveCheckpoint(connection, source, position);
+        connection.commit();
+        CatalogVersion.bump();
+        importedProducts.add(batched);
+    }
+
+    private int resolve(Map<String, Integer> ids, String name, PreparedStatement insert,
+                        String... columns) throws SQLException {
+        Integer id = ids.get(name);
+        if (id == null) {
+            insert.setString(1, name);
+            for (int i = 0; i < columns.length; i++) {
+                insert.setString(i + 2, columns[i]);
+            }
+            try (ResultSet result = insert.executeQuery()) {
+                result.next();
+                id = result.getInt("id");
+            }
+            ids.put(name, id);
+        }
+        return id;
+    }
+
+    private static Map<String, Integer> loadIds(Connection connection, String query) throws SQLException {
+        Map<String, Integer> ids = new HashMap<>();
+        try (PreparedStatement preparedStatement = connection.prepareStatement(query);
+             ResultSet result = preparedStatement.executeQuery()) {
+            while (result.next()) {
+                ids.putIfAbsent(result.getString("name"), result.getInt("id"));
+            }
+        }
+        return ids;
+    }
+
+    private static long readCheckpoint(Connection connection, String source) throws SQLException {
+        try (PreparedStatement preparedStatement = connection.prepareStatement(SELECT_CHECKPOINT)) {
+            preparedStatement.setString(1, source);
+            try (ResultSet result = preparedStatement.executeQuery()) {
+                return result.next() ? result.getLong("position") : 0;
+            }
+        }
+    }
+
+    private static void saveCheckpoint(Connection connection, String source, long position) throws SQLException {
+        try (PreparedStatement update = connection.prepareStatement(UPDATE_CHECKPOINT)) {
+            update.setLong(1, position);
+            update.setString(2, source);
+            if (update.executeUpdate() > 0) {
+                return;
+            }
+        }
+        try (PreparedStatement insert = connection.prepareStatement(INSERT_CHECKPOINT)) {
+            insert.setLong(1, position);
+            insert.setString(2, source);
+            insert.executeUpdate();
+        }
+    }
+
+    private static String currencyCode(CatalogReader reader, String currency) {
+        try {
+            return Currency.getInstance(currency.trim()).getCurrencyCode();
+        } catch (NullPointerException | IllegalArgumentException e) {
+            throw reader.invalid("invalid currency " + currency);
+        }
+    }
+
+    private static String sourceOf(Path file) {
+        return file.toAbsolutePath().normalize().toString();
+    }
+
+    private static void logProgress(Path file, long imported, long started) {
+        long elapsedMillis = Math.max(1, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+        logger.info("{}: {} products imported ({} products/s)", file.getFileName(), imported,
+                imported * 1000 / elapsedMillis);
+    }
+}
@@ -0,0 +1,210 @@
+package com.codecool.shop.importer;
+
+import org.json.simple.JSONObject;
+import org.json.simple.parser.JSONParser;
+import org.json.simple.parser.ParseException;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/* Reads catalog records one at a time from a CSV file with a header row or from NDJSON,
+ * the two formats written by /export/products. Only the current record is held in memory.
+ */
+abstract class CatalogReader implements Closeable {
+
+    protected final BufferedReader reader;
+    private long position;
+
+    CatalogReader(Reader reader) {
+        this.reader = reader instanceof BufferedReader ? (BufferedReader) reader : new BufferedReader(reader);
+    }
+
+    static CatalogReader open(Path file) throws IOException {
+        BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8);
+        String fileName = file.getFileName().toString().toLowerCase();
+        if (fileName.endsWith(".csv")) {
+            return new Csv(reader);
+        } else if (fileName.endsWith(".ndjson") || fileName.endsWith(".json")) {
+            return new Ndjson(reader);
+        }
+        reader.close();
+        throw new IllegalArgumentException("Unknown catalog format, expected .csv or .ndjson: " + file);
+    }
+
+    // the next record, or null at the end of the file
+    CatalogRecord next() throws IOException {
+        CatalogRecord record = read();
+        if (record != null) {
+            position++;
+        }
+        return record;
+    }
+
+    // number of records read so far
+    long getPosition() {
+        return position;
+    }
+
+    void skip(long records) throws IOException {
+        while (position < records && next() != null) {
+            // records before the checkpoint are already in the database
+        }
+    }
+
+    protected abstract CatalogRecord read() throws IOException;
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    protected IllegalArgumentException invalid(String message) {
+        return new IllegalArgumentException("Catalog record " + (position + 1) + ": " + message);
+    }
+
+    protected float parsePrice(String price) {
+        try {
+            return Float.parseFloat(price.trim());
+        } catch (NullPointerException | NumberFormatException e) {
+            throw invalid("invalid price " + price);
+        }
+    }
+
+    static class Csv extends CatalogReader {
+
+        private final Map<String, Integer> columns = new HashMap<>();
+
+        Csv(Reader reader) throws IOException {
+            super(reader);
+            List<String> header = readRow();
+            if (header == null) {
+                throw new IllegalArgumentException("The catalog file is empty");
+            }
+            for (int i = 0; i < header.size(); i++) {
+                columns.put(header.get(i).trim().toLowerCase(), i);
+            }
+            for (String required : new String[]{"name", "price", "currency", "supplier", "category"}) {
+                if (!columns.containsKey(required)) {
+                    throw new IllegalArgumentException("The catalog header has no " + required + " column");
+                }
+            }
+        }
+
+        @Override
+        protected CatalogRecord read() throws IOException {
+            List<String> row;
+            do {
+                row = readRow();
+            } while (row != null && row.size() == 1 && row.get(0).isEmpty());
+            if (row == null) {
+                return null;
+            }
+            CatalogRecord record = new CatalogRecord();
+            record.name = field(row, "name");
+            record.description = field(row, "description");
+            record.price = parsePrice(field(row, "price"));
+            record.currency = field(row, "currency");
+            record.supplier = field(row, "supplier");
+            record.supplierDescription = field(row, "supplier_description");
+            record.category = field(row, "category");
+            record.categoryDescription = field(row, "category_description");
+            record.categoryDepartment = field(row, "category_department");
+            return record;
+        }
+
+        private String field(List<String> row, String column) {
+            Integer index = columns.get(column);
+            return index == null || index >= row.size() ? null : row.get(index);
+        }
+
+        // one RFC 4180 row: quoted fields may contain commas, doubled quotes and line breaks
+        private List<String> readRow() throws IOException {
+            List<String> fields = new ArrayList<>();
+            StringBuilder field = new StringBuilder();
+            boolean quoted = false;
+            boolean empty = true;
+            int c;
+            while ((c = reader.read()) != -1) {
+                empty = false;
+                if (quoted) {
+                    if (c == '"') {
+                        reader.mark(1);
+                        if (reader.read() == '"') {
+                            field.append('"');
+                        } else {
+                            quoted = false;
+                            reader.reset();
+                        }
+                    } else {
+                        field.append((char) c);
+                    }
+                } else if (c == '"') {
+                    quoted = true;
+                } else if (c == ',') {
+                    fields.add(field.toString());
+                    field.setLength(0);
+                } else if (c == '\n') {
+                    break;
+                } else if (c != '\r') {
+                    field.append((char) c);
+                }
+            }
+            if (empty) {
+                return null;
+            }
+            fields.add(field.toString());
+            return fields;
+        }
+    }
+
+    static class Ndjson extends CatalogReader {
+
+        private final JSONParser parser = new JSONParser();
+
+        Ndjson(Reader reader) {
+            super(reader);
+        }
+
+        @Override
+        protected CatalogRecord read() throws IOException {
+            String line;
+            do {
+                line = reader.readLine();
+            } while (line != null && line.trim().isEmpty());
+            if (line == null) {
+                return null;
+            }
+            JSONObject json;
+            try {
+                json = (JSONObject) parser.parse(line);
+            } catch (ParseException | ClassCastException e) {
+                throw invalid("not a JSON object");
+            }
+            CatalogRecord record = new CatalogRecord();
+            record.name = string(json, "name");
+            record.description = string(json, "description");
+            record.price = parsePrice(string(json, "price"));
+            record.currency = string(json, "currency");
+            record.supplier = string(json, "supplier");
+            record.supplierDescription = string(json, "supplierDescription");
+            record.category = string(json, "category");
+            record.categoryDescription = string(json, "categoryDescription");
+            record.categoryDepartment = string(json, "categoryDepartment");
+            return record;
+        }
+
+        private static String string(JSONObject json, String key) {
+            Object value = json.get(key);
+            return value == null ? null : value.toString();
+        }
+    }
+}
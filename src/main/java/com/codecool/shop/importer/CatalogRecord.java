@@ -0,0 +1,17 @@
+package com.codecool.shop.importer;
+
+/* One product row of a catalog file. Supplier and category are referenced by name; their
+ * descriptions are only used when the import has to create them.
+ */
+class CatalogRecord {
+
+    String name;
+    String description;
+    float price;
+    String currency;
+    String supplier;
+    String supplierDescription;
+    String category;
+    String categoryDescription;
+    String categoryDepartment;
+}
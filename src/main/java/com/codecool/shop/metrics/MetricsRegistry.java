@@ -0,0 +1,96 @@
+package com.codecool.shop.metrics;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/* Application-wide registry of timers, counters and gauges, rendered in the Prometheus text format.
+ * Metrics are looked up once, when the instrumented class is initialised, and kept in fields;
+ * recording on the hot path then never touches the registry.
+ */
+public class MetricsRegistry {
+
+    private static final double NANOS_PER_SECOND = 1_000_000_000.0;
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+
+    private static MetricsRegistry instance = null;
+
+    // metric name -> label string -> metric, both sorted so the output is stable
+    private final Map<String, Map<String, Histogram>> timers = new ConcurrentSkipListMap<>();
+    private final Map<String, Map<String, LongAdder>> counters = new ConcurrentSkipListMap<>();
+    private final Map<String, LongSupplier> gauges = new ConcurrentSkipListMap<>();
+    private final Map<String, String> help = new ConcurrentSkipListMap<>();
+
+    private MetricsRegistry() {
+    }
+
+    public static synchronized MetricsRegistry getInstance() {
+        if (instance == null) {
+            instance = new MetricsRegistry();
+        }
+        return instance;
+    }
+
+    /* Histogram of durations recorded in nanoseconds and exported in seconds.
+     * labels is a ready-made Prometheus label list such as: dao="ProductDao",method="find"
+     */
+    public Histogram timer(String name, String description, String labels) {
+        help.putIfAbsent(name, description);
+        return timers.computeIfAbsent(name, key -> new ConcurrentSkipListMap<>())
+                .computeIfAbsent(labels, key -> new Histogram());
+    }
+
+    public LongAdder counter(String name, String description, String labels) {
+        help.putIfAbsent(name, description);
+        return counters.computeIfAbsent(name, key -> new ConcurrentSkipListMap<>())
+                .computeIfAbsent(labels, key -> new LongAdder());
+    }
+
+    public void gauge(String name, String description, LongSupplier value) {
+        help.putIfAbsent(name, description);
+        gauges.put(name, value);
+    }
+
+    public String scrape() {
+        StringBuilder out = new StringBuilder();
+        for (Map.Entry<String, Map<String, Histogram>> timer : timers.entrySet()) {
+            String name = timer.getKey();
+            writeHeader(out, name, "summary");
+            for (Map.Entry<String, Histogram> series : timer.getValue().entrySet()) {
+                String labels = series.getKey();
+                Histogram histogram = series.getValue();
+                for (double quantile : QUANTILES) {
+                    out.append(name).append('{').append(labels).append(labels.isEmpty() ? "" : ",")
+                            .append("quantile=\"").append(quantile).append("\"} ")
+                            .append(histogram.valueAt(quantile) / NANOS_PER_SECOND).append('\n');
+                }
+                out.append(name).append("_sum").append(braced(labels)).append(' ')
+                        .append(histogram.getSum() / NANOS_PER_SECOND).append('\n');
+                out.append(name).append("_count").append(braced(labels)).append(' ')
+                        .append(histogram.getCount()).append('\n');
+            }
+        }
+        for (Map.Entry<String, Map<String, LongAdder>> counter : counters.entrySet()) {
+            writeHeader(out, counter.getKey(), "counter");
+            for (Map.Entry<String, LongAdder> series : counter.getValue().entrySet()) {
+                out.append(counter.getKey()).append(braced(series.getKey())).append(' ')
+                        .append(series.getValue().sum()).append('\n');
+            }
+        }
+        for (Map.Entry<String, LongSupplier> gauge : gauges.entrySet()) {
+            writeHeader(out, gauge.getKey(), "gauge");
+            out.append(gauge.getKey()).append(' ').append(gauge.getValue().getAsLong()).append('\n');
+        }
+        return out.toString();
+    }
+
+    private void writeHeader(StringBuilder out, String name, String type) {
+        out.append("# HELP ").append(name).append(' ').append(help.get(name)).append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private static String braced(String labels) {
+        return labels.isEmpty() ? "" : "{" + labels + "}";
+    }
+}
@@ -19,6 +19,13 @@ public class LineItem {
         this.totalPrice = quantity * product.getDefaultPrice();
     }
 
+    // an item as it was priced when it was added, e.g. read back from the order journal
+    public LineItem(Product product, int quantity, float totalPrice) {
+        this.product = product;
+        this.quantity = quantity;
+        this.totalPrice = totalPrice;
+    }
+
     public static boolean equals(LineItem lineItemOne, LineItem lineItemTwo) {
         if (lineItemOne.getProduct() == lineItemTwo.getProduct() &&
                 lineItemOne.getTotalPrice() == lineItemTwo.getTotalPrice()
@@ -2,58 +2,57 @@ package com.codecool.shop.model;
 
 
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 public class Order {
 
-    private List<LineItem> items = new ArrayList<>();
+    // line items keyed by product id; every access is guarded by this order's monitor
+    private final Map<Integer, LineItem> items = new LinkedHashMap<>();
     private float orderPrice;
     private int orderQuantity;
     private int id;
 
     public static boolean equals(Order orderOne, Order orderTwo) {
         if (orderOne.getId() == orderTwo.getId() &&
-                orderOne.getItems() == orderTwo.getItems()
+                orderOne.items == orderTwo.items
                 ) {
             return true;
         }
         return false;
     }
 
-    public void addLineItem(LineItem item) {
-        int counter = 0;
-        for (LineItem n : items) {
-            if (n.product.equals(item.product)) {
-                n.quantity += item.quantity;
-                n.totalPrice += item.totalPrice;
-                counter += 1;
-            }
-        }
-        if (counter == 0) {
-            items.add(item);
+    public synchronized void addLineItem(LineItem item) {
+        LineItem existing = items.get(item.product.getId());
+        if (existing != null) {
+            existing.quantity += item.quantity;
+            existing.totalPrice += item.totalPrice;
+        } else {
+            items.put(item.product.getId(), item);
         }
         updateOrderPrice(item);
         updateOrderQuantity(item);
     }
 
-    public void updateOrderPrice(LineItem item) {
+    public synchronized void updateOrderPrice(LineItem item) {
         this.orderPrice += item.totalPrice;
     }
 
-    public void updateOrderQuantity(LineItem item) {
+    public synchronized void updateOrderQuantity(LineItem item) {
         this.orderQuantity += item.quantity;
     }
 
-    public float getOrderPrice() {
+    public synchronized float getOrderPrice() {
         return orderPrice;
     }
 
-    public int getOrderQuantity() {
+    public synchronized int getOrderQuantity() {
         return orderQuantity;
     }
 
-    public List<LineItem> getItems() {
-        return items;
+    public synchronized List<LineItem> getItems() {
+        return new ArrayList<>(items.values());
     }
 
     public int getId() {
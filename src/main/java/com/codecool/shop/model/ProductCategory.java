@@ -1,15 +1,13 @@
 package com.codecool.shop.model;
 
-import java.util.ArrayList;
-
+/* Like Supplier, a category keeps no list of its products; ProductDao.getBy finds them.
+ */
 public class ProductCategory extends BaseModel {
     private String department;
-    private ArrayList<Product> products;
 
     public ProductCategory(String name, String department, String description) {
         super(name, description);
         this.department = department;
-        this.products = new ArrayList<>();
     }
 
     public String getDepartment() {
@@ -20,18 +18,6 @@ public class ProductCategory extends BaseModel {
         this.department = department;
     }
 
-    public ArrayList getProducts() {
-        return this.products;
-    }
-
-    public void setProducts(ArrayList<Product> products) {
-        this.products = products;
-    }
-
-    public void addProduct(Product product) {
-        this.products.add(product);
-    }
-
     public String toString() {
         return String.format(
                 "id: %1$d," +
@@ -1,30 +1,16 @@
 package com.codecool.shop.model;
 
-import java.util.ArrayList;
-
+/* Products are looked up by supplier through ProductDao.getBy, a supplier keeps no list of its own:
+ * one shared instance is referenced by every product of the supplier.
+ */
 public class Supplier extends BaseModel {
-    private ArrayList<Product> products;
 
     public Supplier(String name) {
         super(name);
-        this.products = new ArrayList<>();
     }
 
     public Supplier(String name, String description) {
         super(name, description);
-        this.products = new ArrayList<>();
-    }
-
-    public ArrayList getProducts() {
-        return this.products;
-    }
-
-    public void setProducts(ArrayList<Product> products) {
-        this.products = products;
-    }
-
-    public void addProduct(Product product) {
-        this.products.add(product);
     }
 
     public String toString() {
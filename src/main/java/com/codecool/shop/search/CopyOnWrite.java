@@ -0,0 +1,30 @@
+package com.codecool.shop.search;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
+/* Which structures of an index may be changed in place. After an index is copied, the copy and
+ * the original share everything; each of them copies a shared structure before changing it and
+ * owns the copies it made, so a change never shows up in the other index.
+ */
+final class CopyOnWrite {
+
+    // created since the last share(); null while nothing was ever shared
+    private Set<Object> owned;
+
+    void share() {
+        owned = Collections.newSetFromMap(new IdentityHashMap<>());
+    }
+
+    boolean owns(Object structure) {
+        return owned == null || owned.contains(structure);
+    }
+
+    <T> T own(T structure) {
+        if (owned != null) {
+            owned.add(structure);
+        }
+        return structure;
+    }
+}
@@ -0,0 +1,358 @@
+package com.codecool.shop.search;
+
+import com.codecool.shop.model.Product;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/* Bitmap indexes of the catalog by category, supplier and price band, keyed by product id.
+ * A facet query ORs the bitmaps of the selected values of each facet and ANDs the facets together;
+ * the count of a facet value is the size of its bitmap intersected with the other facets' filters,
+ * so the counts stay meaningful while several values of the same facet are selected.
+ *
+ * copy() shares the bitmaps with the copy; changing a product in either index copies only the
+ * bitmaps it is in.
+ */
+public class ProductFacetIndex {
+
+    // lower bounds of the price bands, the last band is open-ended
+    public static final float[] PRICE_BANDS = {0, 50, 100, 250, 500, 1000};
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    // indexed by product id, like the bitmaps
+    private Product[] products = new Product[1024];
+    private int size;
+    private BitSet live = new BitSet();
+    private Map<Integer, BitSet> byCategory = new HashMap<>();
+    private Map<Integer, BitSet> bySupplier = new HashMap<>();
+    private BitSet[] byPriceBand = new BitSet[PRICE_BANDS.length];
+    private CopyOnWrite shared = new CopyOnWrite();
+
+    public ProductFacetIndex() {
+        for (int band = 0; band < byPriceBand.length; band++) {
+            byPriceBand[band] = new BitSet();
+        }
+    }
+
+    public void add(Product product) {
+        lock.writeLock().lock();
+        try {
+            int id = product.getId();
+            removeLocked(id);
+            if (id >= products.length) {
+                products = shared.own(Arrays.copyOf(products, Math.max(id + 1, products.length * 2)));
+            } else if (!shared.owns(products)) {
+                products = shared.own(products.clone());
+            }
+            products[id] = product;
+            size++;
+            live = writable(live);
+            live.set(id);
+            setBit(byCategory, product.getProductCategory().getId(), id);
+            setBit(bySupplier, product.getSupplier().getId(), id);
+            int band = priceBandOf(product.getDefaultPrice());
+            byPriceBand[band] = writable(byPriceBand[band]);
+            byPriceBand[band].set(id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(int id) {
+        lock.writeLock().lock();
+        try {
+            removeLocked(id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // starts over with new structures, which are not shared with any copy
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            products = new Product[1024];
+            size = 0;
+            live = new BitSet();
+            byCategory = new HashMap<>();
+            bySupplier = new HashMap<>();
+            shared = new CopyOnWrite();
+            for (int band = 0; band < byPriceBand.length; band++) {
+                byPriceBand[band] = new BitSet();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /* An index with the same products that shares this index's bitmaps until one of the two
+     * changes them.
+     */
+    public ProductFacetIndex copy() {
+        lock.writeLock().lock();
+        try {
+            ProductFacetIndex copy = new ProductFacetIndex();
+            copy.products = products;
+            copy.size = size;
+            copy.live = live;
+            copy.byCategory = new HashMap<>(byCategory);
+            copy.bySupplier = new HashMap<>(bySupplier);
+            copy.byPriceBand = byPriceBand.clone();
+            copy.shared.share();
+            shared.share();
+            return copy;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /* Products matching any of the given categories, any of the given suppliers and any of the
+     * given price bands; an empty collection leaves that facet unrestricted. The selection is
+     * evaluated when it is first read.
+     */
+    public Selection select(Collection<Integer> categoryIds, Collection<Integer> supplierIds,
+                            Collection<Integer> priceBands) {
+        return new Selection(categoryIds, supplierIds, priceBands);
+    }
+
+    public static int priceBandOf(float price) {
+        int band = 0;
+        while (band + 1 < PRICE_BANDS.length && price >= PRICE_BANDS[band + 1]) {
+            band++;
+        }
+        return band;
+    }
+
+    private void removeLocked(int id) {
+        Product product = productAt(id);
+        if (product == null) {
+            return;
+        }
+        if (!shared.owns(products)) {
+            products = shared.own(products.clone());
+        }
+        products[id] = null;
+        size--;
+        live = writable(live);
+        live.clear(id);
+        clearBit(byCategory, product.getProductCategory().getId(), id);
+        clearBit(bySupplier, product.getSupplier().getId(), id);
+        for (int band = 0; band < byPriceBand.length; band++) {
+            if (byPriceBand[band].get(id)) {
+                byPriceBand[band] = writable(byPriceBand[band]);
+                byPriceBand[band].clear(id);
+            }
+        }
+    }
+
+    private Product productAt(int id) {
+        return id >= 0 && id < products.length ? products[id] : null;
+    }
+
+    // the bitmap itself, or a copy if it is shared with another index
+    private BitSet writable(BitSet bitmap) {
+        return shared.owns(bitmap) ? bitmap : shared.own((BitSet) bitmap.clone());
+    }
+
+    private void setBit(Map<Integer, BitSet> bitmaps, int key, int id) {
+        BitSet bitmap = bitmaps.get(key);
+        bitmap = bitmap == null ? shared.own(new BitSet()) : writable(bitmap);
+        bitmap.set(id);
+        bitmaps.put(key, bitmap);
+    }
+
+    private void clearBit(Map<Integer, BitSet> bitmaps, int key, int id) {
+        BitSet bitmap = bitmaps.get(key);
+        if (bitmap != null && bitmap.get(id)) {
+            bitmap = writable(bitmap);
+            bitmap.clear(id);
+            if (bitmap.isEmpty()) {
+                bitmaps.remove(key);
+            } else {
+                bitmaps.put(key, bitmap);
+            }
+        }
+    }
+
+    // union of the selected values' bitmaps, null when nothing is selected
+    private static BitSet union(Collection<Integer> selected, Map<Integer, BitSet> bitmaps) {
+        if (selected.isEmpty()) {
+            return null;
+        }
+        BitSet union = new BitSet();
+        for (Integer value : selected) {
+            BitSet bitmap = bitmaps.get(value);
+            if (bitmap != null) {
+                union.or(bitmap);
+            }
+        }
+        return union;
+    }
+
+    private static BitSet intersect(BitSet base, BitSet... filters) {
+        BitSet result = (BitSet) base.clone();
+        for (BitSet filter : filters) {
+            if (filter != null) {
+                result.and(filter);
+            }
+        }
+        return result;
+    }
+
+    private static int intersectionSize(BitSet bitmap, BitSet filter) {
+        BitSet intersection = (BitSet) bitmap.clone();
+        intersection.and(filter);
+        return intersection.cardinality();
+    }
+
+    public class Selection {
+
+        private final Collection<Integer> categoryIds;
+        private final Collection<Integer> supplierIds;
+        private final Collection<Integer> priceBands;
+
+        private BitSet matches;
+        private Map<Integer, Integer> categoryCounts;
+        private Map<Integer, Integer> supplierCounts;
+        private int[] priceBandCounts;
+
+        private Selection(Collection<Integer> categoryIds, Collection<Integer> supplierIds,
+                          Collection<Integer> priceBands) {
+            this.categoryIds = categoryIds;
+            this.supplierIds = supplierIds;
+            this.priceBands = priceBands;
+        }
+
+        public Collection<Integer> getCategoryIds() {
+            return categoryIds;
+        }
+
+        public Collection<Integer> getSupplierIds() {
+            return supplierIds;
+        }
+
+        public Collection<Integer> getPriceBands() {
+            return priceBands;
+        }
+
+        public int size() {
+            evaluate();
+            return matches.cardinality();
+        }
+
+        // at most limit matching products with id greater than afterId, ordered by id
+        public List<Product> after(int afterId, int limit) {
+            evaluate();
+            List<Product> page = new ArrayList<>(limit);
+            // cursors come from the query string: no id follows MAX_VALUE, and BitSet rejects negative indexes
+            if (afterId == Integer.MAX_VALUE) {
+                return page;
+            }
+            lock.readLock().lock();
+            try {
+                for (int id = matches.nextSetBit(Math.max(0, afterId + 1)); id >= 0 && page.size() < limit; id = matches.nextSetBit(id + 1)) {
+                    Product product = productAt(id);
+                    if (product != null) {
+                        page.add(product);
+                    }
+                }
+            } finally {
+                lock.readLock().unlock();
+            }
+            return page;
+        }
+
+        // the last limit matching products with id less than beforeId, still ordered by id
+        public List<Product> before(int beforeId, int limit) {
+            evaluate();
+            List<Product> page = new ArrayList<>(limit);
+            if (beforeId <= 0) {
+                return page;
+            }
+            lock.readLock().lock();
+            try {
+                for (int id = matches.previousSetBit(beforeId - 1); id >= 0 && page.size() < limit; id = matches.previousSetBit(id - 1)) {
+                    Product product = productAt(id);
+                    if (product != null) {
+                        page.add(product);
+                    }
+                }
+            } finally {
+                lock.readLock().unlock();
+            }
+            Collections.reverse(page);
+            return page;
+        }
+
+        public Map<Integer, Integer> getCategoryCounts() {
+            evaluate();
+            return categoryCounts;
+        }
+
+        public Map<Integer, Integer> getSupplierCounts() {
+            evaluate();
+            return supplierCounts;
+        }
+
+        public int[] getPriceBandCounts() {
+            evaluate();
+            return priceBandCounts;
+        }
+
+        private void evaluate() {
+            if (matches != null) {
+                return;
+            }
+            lock.readLock().lock();
+            try {
+                BitSet categoryFilter = union(categoryIds, byCategory);
+                BitSet supplierFilter = union(supplierIds, bySupplier);
+                BitSet priceFilter = union(priceBands, indexedBands());
+
+                categoryCounts = counts(byCategory, intersect(live, supplierFilter, priceFilter));
+                supplierCounts = counts(bySupplier, intersect(live, categoryFilter, priceFilter));
+                BitSet priceBase = intersect(live, categoryFilter, supplierFilter);
+                priceBandCounts = new int[byPriceBand.length];
+                for (int band = 0; band < byPriceBand.length; band++) {
+                    priceBandCounts[band] = intersectionSize(byPriceBand[band], priceBase);
+                }
+                matches = intersect(priceBase, priceFilter);
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        private Map<Integer, Integer> counts(Map<Integer, BitSet> bitmaps, BitSet filter) {
+            Map<Integer, Integer> counts = new HashMap<>();
+            for (Map.Entry<Integer, BitSet> value : bitmaps.entrySet()) {
+                counts.put(value.getKey(), intersectionSize(value.getValue(), filter));
+            }
+            return counts;
+        }
+
+        private Map<Integer, BitSet> indexedBands() {
+            Map<Integer, BitSet> bands = new HashMap<>();
+            for (int band = 0; band < byPriceBand.length; band++) {
+                bands.put(band, byPriceBand[band]);
+            }
+            return bands;
+        }
+    }
+}
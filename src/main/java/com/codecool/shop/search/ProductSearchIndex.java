@@ -0,0 +1,402 @@
+package com.codecool.shop.search;
+
+import com.codecool.shop.model.Product;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/* In-memory inverted index over product names and descriptions, ranked with BM25.
+ *
+ * Every indexed product gets a slot; a term's postings list the slots containing it in ascending
+ * order together with the term frequency. Removed products leave their postings behind and are
+ * skipped while scoring until enough slots are dead to rebuild the index. The last query token
+ * also matches as a prefix, so results show up while the user is still typing.
+ *
+ * copy() shares the postings with the copy. Changing a product in either index then copies only
+ * the postings of its terms and the slot arrays, without tokenizing the rest of the catalog again.
+ */
+public class ProductSearchIndex {
+
+    private static final float K1 = 1.2f;
+    private static final float B = 0.75f;
+    // a name token counts as much as this many description tokens
+    private static final int NAME_BOOST = 2;
+    private static final float PREFIX_WEIGHT = 0.5f;
+    private static final int MIN_PREFIX_LENGTH = 2;
+    private static final int MAX_PREFIX_EXPANSIONS = 50;
+    private static final int MIN_SLOTS_TO_COMPACT = 1024;
+
+    // shared by all indexes, so a copy does not allocate new score arrays on every thread
+    private static final ThreadLocal<Scores> scratch = ThreadLocal.withInitial(Scores::new);
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    // terms grouped by their first MIN_PREFIX_LENGTH characters, so a prefix is looked up in one
+    // group and a copy only copies the groups of the terms it changes
+    private Map<String, NavigableMap<String, Postings>> terms = new HashMap<>();
+    // the slot of each product id plus one, 0 where the id is not indexed
+    private int[] slotById = new int[1024];
+    private CopyOnWrite shared = new CopyOnWrite();
+
+    private Product[] products = new Product[1024];
+    private int[] lengths = new int[1024];
+    private int slots;
+    private int liveCount;
+    private long totalLength;
+
+    public void add(Product product) {
+        lock.writeLock().lock();
+        try {
+            addLocked(product);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(int id) {
+        lock.writeLock().lock();
+        try {
+            removeLocked(id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /* An index with the same products that shares this index's postings and arrays until one of
+     * the two changes them.
+     */
+    public ProductSearchIndex copy() {
+        lock.writeLock().lock();
+        try {
+            ProductSearchIndex copy = new ProductSearchIndex();
+            copy.terms = new HashMap<>(terms);
+            copy.slotById = slotById;
+            copy.products = products;
+            copy.lengths = lengths;
+            copy.slots = slots;
+            copy.liveCount = liveCount;
+            copy.totalLength = totalLength;
+            copy.shared.share();
+            shared.share();
+            return copy;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            clearLocked();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return liveCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /* The best matching products for the query, highest BM25 score first.
+     */
+    public List<Product> search(String query, int limit) {
+        List<String> tokens = tokenize(query);
+        if (tokens.isEmpty() || limit <= 0) {
+            return Collections.emptyList();
+        }
+
+        lock.readLock().lock();
+        try {
+            if (liveCount == 0) {
+                return Collections.emptyList();
+            }
+            Scores scores = scratch.get();
+            scores.ensureCapacity(slots);
+            float averageLength = (float) totalLength / liveCount;
+
+            for (int i = 0; i < tokens.size(); i++) {
+                String token = tokens.get(i);
+                boolean last = i == tokens.size() - 1;
+                NavigableMap<String, Postings> group = terms.get(groupOf(token));
+                if (group == null) {
+                    continue;
+                }
+                if (last && token.length() >= MIN_PREFIX_LENGTH) {
+                    int expansions = 0;
+                    for (Map.Entry<String, Postings> term : group.subMap(token, true, token + Character.MAX_VALUE, false).entrySet()) {
+                        score(scores, term.getValue(), term.getKey().equals(token) ? 1f : PREFIX_WEIGHT, averageLength);
+                        if (++expansions == MAX_PREFIX_EXPANSIONS) {
+                            break;
+                        }
+                    }
+                } else {
+                    Postings postings = group.get(token);
+                    if (postings != null) {
+                        score(scores, postings, 1f, averageLength);
+                    }
+                }
+            }
+            return scores.top(limit, products);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null) {
+            return tokens;
+        }
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean wordChar = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                tokens.add(text.substring(start, i).toLowerCase(Locale.ROOT));
+                start = -1;
+            }
+        }
+        return tokens;
+    }
+
+    private void score(Scores scores, Postings postings, float weight, float averageLength) {
+        float idf = (float) Math.log(1 + (liveCount - postings.docFreq + 0.5) / (postings.docFreq + 0.5));
+        for (int i = 0; i < postings.size; i++) {
+            int slot = postings.slots[i];
+            if (products[slot] == null) {
+                continue;
+            }
+            int frequency = postings.frequencies[i];
+            float norm = frequency * (K1 + 1) / (frequency + K1 * (1 - B + B * lengths[slot] / averageLength));
+            scores.add(slot, weight * idf * norm);
+        }
+    }
+
+    private void addLocked(Product product) {
+        int id = product.getId();
+        // re-adding a product replaces it
+        removeLocked(id);
+        int slot = slots++;
+        if (slot == products.length) {
+            products = shared.own(Arrays.copyOf(products, slot * 2));
+            lengths = shared.own(Arrays.copyOf(lengths, slot * 2));
+        } else if (!shared.owns(products)) {
+            products = shared.own(products.clone());
+            lengths = shared.own(lengths.clone());
+        }
+        int length = 0;
+        for (Map.Entry<String, Integer> term : termFrequencies(product).entrySet()) {
+            writablePostings(term.getKey()).add(slot, term.getValue());
+            length += term.getValue();
+        }
+        products[slot] = product;
+        lengths[slot] = length;
+        if (id >= slotById.length) {
+            slotById = shared.own(Arrays.copyOf(slotById, Math.max(id + 1, slotById.length * 2)));
+        } else if (!shared.owns(slotById)) {
+            slotById = shared.own(slotById.clone());
+        }
+        slotById[id] = slot + 1;
+        totalLength += length;
+        liveCount++;
+    }
+
+    private void removeLocked(int id) {
+        if (id < 0 || id >= slotById.length || slotById[id] == 0) {
+            return;
+        }
+        int slot = slotById[id] - 1;
+        for (String term : termFrequencies(products[slot]).keySet()) {
+            NavigableMap<String, Postings> group = writableGroup(groupOf(term));
+            Postings postings = group.get(term);
+            if (postings.docFreq == 1) {
+                group.remove(term);
+                if (group.isEmpty()) {
+                    terms.remove(groupOf(term));
+                }
+            } else {
+                writablePostings(term).docFreq--;
+            }
+        }
+        if (!shared.owns(slotById)) {
+            slotById = shared.own(slotById.clone());
+        }
+        slotById[id] = 0;
+        if (!shared.owns(products)) {
+            products = shared.own(products.clone());
+            lengths = shared.own(lengths.clone());
+        }
+        products[slot] = null;
+        totalLength -= lengths[slot];
+        liveCount--;
+        if (slots - liveCount > MIN_SLOTS_TO_COMPACT && slots - liveCount > liveCount) {
+            compact();
+        }
+    }
+
+    // the postings of term, copied first if they are shared with another index
+    private Postings writablePostings(String term) {
+        NavigableMap<String, Postings> group = writableGroup(groupOf(term));
+        Postings postings = group.get(term);
+        if (postings == null) {
+            postings = shared.own(new Postings());
+            group.put(term, postings);
+        } else if (!shared.owns(postings)) {
+            postings = shared.own(new Postings(postings));
+            group.put(term, postings);
+        }
+        return postings;
+    }
+
+    private NavigableMap<String, Postings> writableGroup(String key) {
+        NavigableMap<String, Postings> group = terms.get(key);
+        if (group == null) {
+            group = shared.own(new TreeMap<>());
+            terms.put(key, group);
+        } else if (!shared.owns(group)) {
+            group = shared.own(new TreeMap<>(group));
+            terms.put(key, group);
+        }
+        return group;
+    }
+
+    private static String groupOf(String term) {
+        return term.length() <= MIN_PREFIX_LENGTH ? term : term.substring(0, MIN_PREFIX_LENGTH);
+    }
+
+    private void compact() {
+        List<Product> live = new ArrayList<>(liveCount);
+        for (int slot = 0; slot < slots; slot++) {
+            if (products[slot] != null) {
+                live.add(products[slot]);
+            }
+        }
+        clearLocked();
+        for (Product product : live) {
+            addLocked(product);
+        }
+    }
+
+    // starts over with new structures, which are not shared with any copy
+    private void clearLocked() {
+        terms = new HashMap<>();
+        slotById = new int[1024];
+        shared = new CopyOnWrite();
+        products = new Product[1024];
+        lengths = new int[1024];
+        slots = 0;
+        liveCount = 0;
+        totalLength = 0;
+    }
+
+    private static Map<String, Integer> termFrequencies(Product product) {
+        Map<String, Integer> frequencies = new HashMap<>();
+        for (String token : tokenize(product.getName())) {
+            frequencies.merge(token, NAME_BOOST, Integer::sum);
+        }
+        for (String token : tokenize(product.getDescription())) {
+            frequencies.merge(token, 1, Integer::sum);
+        }
+        return frequencies;
+    }
+
+    private static class Postings {
+        private int[] slots;
+        private int[] frequencies;
+        private int size;
+        // live products containing the term
+        private int docFreq;
+        // the arrays belong to other postings as well, add() copies them first
+        private boolean sharesArrays;
+
+        Postings() {
+            slots = new int[4];
+            frequencies = new int[4];
+        }
+
+        Postings(Postings other) {
+            slots = other.slots;
+            frequencies = other.frequencies;
+            size = other.size;
+            docFreq = other.docFreq;
+            sharesArrays = true;
+        }
+
+        void add(int slot, int frequency) {
+            if (size == slots.length || sharesArrays) {
+                int capacity = size == slots.length ? size * 2 : slots.length;
+                slots = Arrays.copyOf(slots, capacity);
+                frequencies = Arrays.copyOf(frequencies, capacity);
+                sharesArrays = false;
+            }
+            slots[size] = slot;
+            frequencies[size] = frequency;
+            size++;
+            docFreq++;
+        }
+    }
+
+    /* Per-thread score accumulator, reused between queries; only the touched slots are reset.
+     */
+    private static class Scores {
+        private float[] scores = new float[0];
+        private int[] touched = new int[64];
+        private int touchedCount;
+
+        void ensureCapacity(int slots) {
+            if (scores.length < slots) {
+                scores = new float[Math.max(slots, scores.length * 2)];
+            }
+        }
+
+        void add(int slot, float score) {
+            if (scores[slot] == 0) {
+                if (touchedCount == touched.length) {
+                    touched = Arrays.copyOf(touched, touchedCount * 2);
+                }
+                touched[touchedCount++] = slot;
+            }
+            scores[slot] += score;
+        }
+
+        List<Product> top(int limit, Product[] products) {
+            int[] best = new int[Math.min(limit, touchedCount)];
+            int found = 0;
+            for (int i = 0; i < touchedCount; i++) {
+                int slot = touched[i];
+                float score = scores[slot];
+                if (found < best.length || score > scores[best[found - 1]]) {
+                    int position = found < best.length ? found++ : found - 1;
+                    while (position > 0 && scores[best[position - 1]] < score) {
+                        best[position] = best[position - 1];
+                        position--;
+                    }
+                    best[position] = slot;
+                }
+            }
+            List<Product> result = new ArrayList<>(found);
+            for (int i = 0; i < found; i++) {
+                result.add(products[best[i]]);
+            }
+            for (int i = 0; i < touchedCount; i++) {
+                scores[touched[i]] = 0;
+            }
+            touchedCount = 0;
+            return result;
+        }
+    }
+}
@@ -1,4 +1,4 @@
-DROP TABLE IF EXISTS ProductCategory, Product, Supplier;
+DROP TABLE IF EXISTS LineItem, Orders, ProductCategory, Product, Supplier, catalog_import, catalog_change;
 
 CREATE TABLE ProductCategory (
   id          SERIAL PRIMARY KEY,
@@ -25,6 +25,69 @@ CREATE TABLE Product (
   FOREIGN KEY (product_category_id) REFERENCES ProductCategory (id)
 );
 
+CREATE INDEX product_supplier_id_idx ON Product (supplier_id, id);
+CREATE INDEX product_category_id_idx ON Product (product_category_id, id);
+
+-- every change to the catalog tables, from any process; polled by CatalogChangeFeed on each node
+CREATE TABLE catalog_change (
+  seq        BIGSERIAL PRIMARY KEY,
+  table_name VARCHAR(35) NOT NULL,
+  -- NULL when the whole table changed (TRUNCATE)
+  row_id     INT,
+  changed_at TIMESTAMP   NOT NULL DEFAULT now()
+);
+
+CREATE OR REPLACE FUNCTION log_catalog_change() RETURNS TRIGGER AS $$
+BEGIN
+  IF TG_OP = 'TRUNCATE' THEN
+    INSERT INTO catalog_change (table_name) VALUES (TG_TABLE_NAME);
+  ELSIF TG_OP = 'DELETE' THEN
+    INSERT INTO catalog_change (table_name, row_id) VALUES (TG_TABLE_NAME, OLD.id);
+  ELSE
+    INSERT INTO catalog_change (table_name, row_id) VALUES (TG_TABLE_NAME, NEW.id);
+  END IF;
+  RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER product_change AFTER INSERT OR UPDATE OR DELETE ON Product
+  FOR EACH ROW EXECUTE PROCEDURE log_catalog_change();
+CREATE TRIGGER product_truncate AFTER TRUNCATE ON Product
+  FOR EACH STATEMENT EXECUTE PROCEDURE log_catalog_change();
+CREATE TRIGGER supplier_change AFTER INSERT OR UPDATE OR DELETE ON Supplier
+  FOR EACH ROW EXECUTE PROCEDURE log_catalog_change();
+CREATE TRIGGER supplier_truncate AFTER TRUNCATE ON Supplier
+  FOR EACH STATEMENT EXECUTE PROCEDURE log_catalog_change();
+CREATE TRIGGER productcategory_change AFTER INSERT OR UPDATE OR DELETE ON ProductCategory
+  FOR EACH ROW EXECUTE PROCEDURE log_catalog_change();
+CREATE TRIGGER productcategory_truncate AFTER TRUNCATE ON ProductCategory
+  FOR EACH STATEMENT EXECUTE PROCEDURE log_catalog_change();
+
+-- carts, written behind by OrderDaoWriteBehind; ORDER is a reserved word
+CREATE TABLE Orders (
+  id          SERIAL PRIMARY KEY,
+  quantity    INT       NOT NULL DEFAULT 0,
+  total_price FLOAT     NOT NULL DEFAULT 0,
+  updated_at  TIMESTAMP NOT NULL DEFAULT now()
+);
+
+CREATE TABLE LineItem (
+  order_id    INT   NOT NULL,
+  product_id  INT   NOT NULL,
+  quantity    INT   NOT NULL,
+  total_price FLOAT NOT NULL,
+  PRIMARY KEY (order_id, product_id),
+  FOREIGN KEY (order_id) REFERENCES Orders (id) ON DELETE CASCADE,
+  FOREIGN KEY (product_id) REFERENCES Product (id) ON DELETE CASCADE
+);
+
+-- how many records of each catalog file the bulk import has committed
+CREATE TABLE catalog_import (
+  source     VARCHAR(1024) PRIMARY KEY,
+  position   BIGINT    NOT NULL,
+  updated_at TIMESTAMP NOT NULL DEFAULT now()
+);
+
 INSERT INTO productcategory (name, description, department) VALUES ('Tablet', 'Hardware',
                                                                     'A tablet computer, commonly shortened to tablet, is a thin, flat mobile computer with a touchscreen display.');
 INSERT INTO productcategory (name, description, department)
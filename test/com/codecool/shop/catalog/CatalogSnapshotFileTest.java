@@ -0,0 +1,156 @@
+package com.codecool.shop.catalog;
+
+import com.codecool.shop.dao.CatalogVersion;
+import com.codecool.shop.dao.ProductCategoryDao;
+import com.codecool.shop.dao.ProductDao;
+import com.codecool.shop.dao.SupplierDao;
+import com.codecool.shop.dao.memImplementation.ProductCategoryDaoMem;
+import com.codecool.shop.dao.memImplementation.ProductDaoMem;
+import com.codecool.shop.dao.memImplementation.SupplierDaoMem;
+import com.codecool.shop.model.Product;
+import com.codecool.shop.model.ProductCategory;
+import com.codecool.shop.model.Supplier;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CatalogSnapshotFileTest {
+
+    private static ProductDao productDataStore = ProductDaoMem.getInstance();
+    private static SupplierDao supplierDataStore = SupplierDaoMem.getInstance();
+    private static ProductCategoryDao productCategoryDataStore = ProductCategoryDaoMem.getInstance();
+
+    private Path file;
+    private Supplier amazon;
+    private ProductCategory tablet;
+
+    @BeforeEach
+    public void setupTests() throws IOException {
+        productDataStore.removeAll();
+        supplierDataStore.removeAll();
+        productCategoryDataStore.removeAll();
+        amazon = new Supplier("Amazon", "Digital content and services");
+        tablet = new ProductCategory("Tablet", "Hardware", "A tablet computer.");
+        supplierDataStore.add(amazon);
+        productCategoryDataStore.add(tablet);
+        file = Files.createTempFile("catalog", ".snapshot");
+    }
+
+    @AfterEach
+    public void deleteFile() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    private static CatalogSnapshot build() {
+        return CatalogSnapshot.build(CatalogVersion.current(), productDataStore, supplierDataStore, productCategoryDataStore);
+    }
+
+    @Test
+    public void testRead_WrittenCatalog_SameProductsSuppliersAndCategories() throws IOException {
+        productDataStore.add(new Product("Fire", 49.9f, "USD", "Fantastic price.", tablet, amazon));
+        productDataStore.add(new Product("Kindle", 79, "EUR", null, tablet, amazon));
+        CatalogSnapshot written = build();
+
+        CatalogSnapshotFile.write(written, file);
+        CatalogSnapshot read = CatalogSnapshotFile.read(file, 7);
+
+        assertEquals(7, read.getVersion());
+        assertEquals(written.getBuiltAt(), read.getBuiltAt());
+        assertEquals(written.products(), read.products());
+        Product kindle = read.getAll(read.products().get(0).getId(), 1).get(0);
+        assertEquals("Kindle", kindle.getName());
+        assertNull(kindle.getDescription());
+        assertEquals("79.0 EUR", kindle.getPrice());
+        assertSame(read.findSupplier(amazon.getId()), kindle.getSupplier());
+        assertEquals("Hardware", read.findProductCategory(tablet.getId()).getDepartment());
+        assertEquals("Fire", read.search("fantastic", 1).get(0).getName());
+    }
+
+    @Test
+    public void testRead_DamagedFile_Rejected() throws IOException {
+        productDataStore.add(new Product("Fire", 49.9f, "USD", "Fantastic price.", tablet, amazon));
+        CatalogSnapshotFile.write(build(), file);
+        try (RandomAccessFile raw = new RandomAccessFile(file.toFile(), "rw")) {
+            raw.seek(raw.length() / 2);
+            int original = raw.read();
+            raw.seek(raw.length() / 2);
+            raw.write(original ^ 0xFF);
+        }
+
+        assertThrows(IOException.class, () -> CatalogSnapshotFile.read(file, 0));
+    }
+
+    @Test
+    public void testStart_SnapshotFileOnDisk_ServedBeforeTheFirstBuild() throws Exception {
+        productDataStore.add(new Product("Fire", 49.9f, "USD", "Fantastic price.", tablet, amazon));
+        Properties props = new Properties();
+        props.setProperty("catalog.snapshotFile", file.toString());
+        props.setProperty("catalog.checkIntervalMillis", "60000");
+        new CatalogStore(productDataStore, supplierDataStore, productCategoryDataStore, props).refresh();
+        // changed after the file was written, so only a build from the DAOs sees it
+        productDataStore.add(new Product("Kindle", 79, "USD", "Paper white.", tablet, amazon));
+
+        CatalogStore restarted = new CatalogStore(productDataStore, supplierDataStore, productCategoryDataStore, props);
+        restarted.start();
+        CatalogSnapshot servedAtStart = restarted.current();
+        restarted.reconcile();
+        restarted.stop();
+
+        assertTrue(servedAtStart.size() > 0);
+        assertEquals(2, restarted.current().size());
+        assertEquals(2, CatalogSnapshotFile.read(file, 0).size());
+    }
+
+    @Test
+    public void testRefresh_CatalogEmptied_SnapshotFileRemoved() {
+        Product fire = new Product("Fire", 49.9f, "USD", "Fantastic price.", tablet, amazon);
+        productDataStore.add(fire);
+        Properties props = new Properties();
+        props.setProperty("catalog.snapshotFile", file.toString());
+        CatalogStore store = new CatalogStore(productDataStore, supplierDataStore, productCategoryDataStore, props);
+        store.refresh();
+        assertTrue(Files.exists(file));
+        productDataStore.remove(fire.getId());
+
+        store.refresh();
+
+        assertEquals(0, store.current().size());
+        assertFalse(Files.exists(file));
+    }
+
+    @Test
+    public void testRead_LargeCatalog_SameProductsAndSuppliers() throws IOException {
+        Supplier[] suppliers = new Supplier[50];
+        for (int i = 0; i < suppliers.length; i++) {
+            suppliers[i] = new Supplier("Supplier " + i, "Generated supplier");
+            supplierDataStore.add(suppliers[i]);
+        }
+        for (int i = 0; i < 200_000; i++) {
+            productDataStore.add(new Product("Product " + i, 1 + i % 500, "USD", "Generated product " + i % 100,
+                    tablet, suppliers[i % suppliers.length]));
+        }
+        CatalogSnapshot built = build();
+        CatalogSnapshotFile.write(built, file);
+
+        CatalogSnapshot read = CatalogSnapshotFile.read(file, 0);
+
+        assertEquals(built.size(), read.size());
+        assertEquals(built.getSuppliers().size(), read.getSuppliers().size());
+        Product last = built.getAllBefore(Integer.MAX_VALUE, 1).get(0);
+        assertEquals(last.getName(), read.find(last.getId()).getName());
+        assertEquals(last.getSupplier().getId(), read.find(last.getId()).getSupplier().getId());
+    }
+}
@@ -0,0 +1,223 @@
+package com.codecool.shop.catalog;
+
+import com.codecool.shop.dao.CatalogChange;
+import com.codecool.shop.dao.CatalogVersion;
+import com.codecool.shop.dao.DataAccessException;
+import com.codecool.shop.dao.ProductCategoryDao;
+import com.codecool.shop.dao.ProductDao;
+import com.codecool.shop.dao.SupplierDao;
+import com.codecool.shop.dao.memImplementation.ProductCategoryDaoMem;
+import com.codecool.shop.dao.memImplementation.ProductDaoMem;
+import com.codecool.shop.dao.memImplementation.SupplierDaoMem;
+import com.codecool.shop.dao.timedImplementation.ProductDaoTimed;
+import com.codecool.shop.model.Product;
+import com.codecool.shop.model.ProductCategory;
+import com.codecool.shop.model.Supplier;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CatalogSnapshotTest {
+
+    private static ProductDao productDataStore = ProductDaoMem.getInstance();
+    private static SupplierDao supplierDataStore = SupplierDaoMem.getInstance();
+    private static ProductCategoryDao productCategoryDataStore = ProductCategoryDaoMem.getInstance();
+
+    private Supplier amazon;
+    private ProductCategory tablet;
+
+    @BeforeEach
+    public void setupTests() {
+        productDataStore.removeAll();
+        supplierDataStore.removeAll();
+        productCategoryDataStore.removeAll();
+        amazon = new Supplier("Amazon", "Digital content and services");
+        tablet = new ProductCategory("Tablet", "Hardware", "A tablet computer.");
+        supplierDataStore.add(amazon);
+        productCategoryDataStore.add(tablet);
+        for (int i = 1; i <= 30; i++) {
+            productDataStore.add(new Product("Fire " + i, 10 * i, "USD", "Tablet number " + i, tablet, amazon));
+        }
+    }
+
+    private static CatalogSnapshot build() {
+        return CatalogSnapshot.build(CatalogVersion.current(), productDataStore, supplierDataStore, productCategoryDataStore);
+    }
+
+    @Test
+    public void testGetAll_KeysetPages_MatchTheDaoOrder() {
+        CatalogSnapshot catalog = build();
+        List<Product> products = productDataStore.getAll();
+        int afterId = products.get(9).getId();
+
+        assertEquals(30, catalog.size());
+        assertEquals(products.subList(10, 22), catalog.getAll(afterId, 12));
+        assertEquals(products.subList(0, 9), catalog.getAllBefore(afterId, 12));
+        assertEquals(Collections.emptyList(), catalog.getAll(products.get(29).getId(), 12));
+    }
+
+    @Test
+    public void testFind_ProductsSuppliersAndCategories_FoundById() {
+        CatalogSnapshot catalog = build();
+        Product product = productDataStore.getAll().get(5);
+
+        assertSame(product, catalog.find(product.getId()));
+        assertNull(catalog.find(-1));
+        assertSame(amazon, catalog.findSupplier(amazon.getId()));
+        assertSame(tablet, catalog.findProductCategory(tablet.getId()));
+        assertEquals(Collections.singletonList(amazon), catalog.getSuppliers());
+    }
+
+    @Test
+    public void testSearchAndSelect_SnapshotIndexes_AnswerFromTheSnapshot() {
+        CatalogSnapshot catalog = build();
+
+        assertEquals("Fire 7", catalog.search("number 7", 1).get(0).getName());
+        assertEquals(30, catalog.select(Collections.singleton(tablet.getId()),
+                Collections.emptySet(), Collections.emptySet()).size());
+    }
+
+    @Test
+    public void testRefresh_CatalogChanged_OldSnapshotUnchangedAndNewOnePublished() {
+        CatalogStore store = new CatalogStore(productDataStore, supplierDataStore, productCategoryDataStore, new Properties());
+        CatalogSnapshot before = store.refresh();
+        productDataStore.remove(productDataStore.getAll().get(0).getId());
+
+        CatalogSnapshot after = store.refresh();
+
+        assertEquals(30, before.size());
+        assertEquals(29, after.size());
+        assertSame(after, store.current());
+    }
+
+    @Test
+    public void testCatalogChanged_ProductRemovedAndAdded_OnlyThoseProductsReloaded() {
+        CatalogStore store = new CatalogStore(productDataStore, supplierDataStore, productCategoryDataStore, new Properties());
+        CatalogSnapshot before = store.refresh();
+        Product removed = productDataStore.getAll().get(0);
+        productDataStore.remove(removed.getId());
+        Product added = new Product("Fire HD", 99, "USD", "The bigger one", tablet, amazon);
+        productDataStore.add(added);
+
+        store.catalogChanged(Arrays.asList(
+                new CatalogChange(1, CatalogChange.Table.PRODUCT, removed.getId()),
+                new CatalogChange(2, CatalogChange.Table.PRODUCT, added.getId())));
+
+        CatalogSnapshot after = store.current();
+        assertEquals(30, after.size());
+        assertNull(after.find(removed.getId()));
+        assertSame(added, after.find(added.getId()));
+        assertEquals("Fire HD", after.search("bigger", 1).get(0).getName());
+        assertEquals(before.getBuiltAt(), after.getBuiltAt());
+        assertTrue(after.getGeneration() > before.getGeneration());
+        assertSame(removed, before.find(removed.getId()));
+        // the indexes of the old snapshot are not changed by the copy
+        assertTrue(before.search("bigger", 1).isEmpty());
+        assertEquals(30, before.select(Collections.singleton(tablet.getId()),
+                Collections.emptySet(), Collections.emptySet()).size());
+        assertFalse(after.select(Collections.singleton(tablet.getId()),
+                Collections.emptySet(), Collections.emptySet()).after(0, 30).contains(removed));
+    }
+
+    @Test
+    public void testChangesMissed_NextCheck_SnapshotRebuilt() {
+        CatalogStore store = new CatalogStore(productDataStore, supplierDataStore, productCategoryDataStore, new Properties());
+        CatalogSnapshot before = store.refresh();
+        store.refreshIfStale();
+        assertSame(before, store.current());
+
+        store.changesMissed();
+        store.refreshIfStale();
+
+        assertNotSame(before, store.current());
+        assertEquals(30, store.current().size());
+    }
+
+    @Test
+    public void testRefresh_SupplierReadFails_PreviousSnapshotKept() {
+        FailingSupplierDao suppliers = new FailingSupplierDao();
+        CatalogStore store = new CatalogStore(productDataStore, suppliers, productCategoryDataStore, new Properties());
+        CatalogSnapshot before = store.refresh();
+        suppliers.failing = true;
+
+        assertThrows(DataAccessException.class, store::refresh);
+
+        assertSame(before, store.current());
+        assertEquals(30, store.current().size());
+    }
+
+    @Test
+    public void testCatalogChanged_ProductReadFails_ProductKeptAndSnapshotRebuiltLater() {
+        boolean[] failing = {false};
+        ProductDao products = new ProductDaoTimed(productDataStore) {
+            @Override
+            public Product find(int id) {
+                if (failing[0]) {
+                    throw new DataAccessException("Reading products failed", new SQLException("Connection refused"));
+                }
+                return super.find(id);
+            }
+        };
+        CatalogStore store = new CatalogStore(products, supplierDataStore, productCategoryDataStore, new Properties());
+        CatalogSnapshot before = store.refresh();
+        Product changed = productDataStore.getAll().get(3);
+        failing[0] = true;
+
+        store.catalogChanged(Collections.singletonList(new CatalogChange(1, CatalogChange.Table.PRODUCT, changed.getId())));
+
+        assertSame(before, store.current());
+        assertSame(changed, store.current().find(changed.getId()));
+
+        failing[0] = false;
+        store.refreshIfStale();
+
+        assertNotSame(before, store.current());
+        assertEquals(30, store.current().size());
+    }
+
+    private static class FailingSupplierDao implements SupplierDao {
+
+        boolean failing;
+
+        @Override
+        public void add(Supplier supplier) {
+            supplierDataStore.add(supplier);
+        }
+
+        @Override
+        public Supplier find(int id) {
+            return supplierDataStore.find(id);
+        }
+
+        @Override
+        public void remove(int id) {
+            supplierDataStore.remove(id);
+        }
+
+        @Override
+        public void removeAll() {
+            supplierDataStore.removeAll();
+        }
+
+        @Override
+        public List<Supplier> getAll() {
+            if (failing) {
+                throw new DataAccessException("Reading the suppliers failed", new SQLException("Connection refused"));
+            }
+            return supplierDataStore.getAll();
+        }
+    }
+}
@@ -1,14 +1,33 @@
 package com.codecool.shop.dao;
 
+import com.codecool.shop.dao.jdbcImplementation.OrderDaoJDBC;
+import com.codecool.shop.dao.jdbcImplementation.OrderDaoWriteBehind;
+import com.codecool.shop.dao.jdbcImplementation.ProductCategoryDaoJDBC;
+import com.codecool.shop.dao.jdbcImplementation.ProductDaoJDBC;
+import com.codecool.shop.dao.jdbcImplementation.SupplierDaoJDBC;
 import com.codecool.shop.dao.memImplementation.OrderDaoMem;
+import com.codecool.shop.model.LineItem;
 import com.codecool.shop.model.Order;
+import com.codecool.shop.model.Product;
+import com.codecool.shop.model.ProductCategory;
+import com.codecool.shop.model.Supplier;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 class OrderDaoTest {
 
@@ -16,7 +35,7 @@ class OrderDaoTest {
 
     @BeforeEach
     public void clearOrderList() {
-        orderList.getAll().clear();
+        orderList.removeAll();
     }
 
     @Test
@@ -52,4 +71,146 @@ class OrderDaoTest {
         List<Order> expectedList = Arrays.asList(order1, order2, order3);
         assertEquals(expectedList, orderList.getAll());
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testAdd_AddOrdersFromManyThreads_NoLostOrDuplicateOrders() throws Exception {
+        int threads = 16;
+        int ordersPerThread = 2000;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                for (int j = 0; j < ordersPerThread; j++) {
+                    orderList.add(new Order());
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+
+        List<Order> orders = orderList.getAll();
+        Set<Integer> ids = new HashSet<>();
+        for (Order order : orders) {
+            ids.add(order.getId());
+            assertEquals(order, orderList.find(order.getId()));
+        }
+        assertEquals(threads * ordersPerThread, orders.size());
+        assertEquals(threads * ordersPerThread, ids.size());
+    }
+
+    private static Product storedProduct(float price) {
+        Supplier supplier = new Supplier("Amazon", "Digital content and services");
+        ProductCategory category = new ProductCategory("Tablet", "Hardware", "A tablet computer.");
+        SupplierDaoJDBC.getInstance().add(supplier);
+        ProductCategoryDaoJDBC.getInstance().add(category);
+        Product product = new Product("Amazon Fire", price, "USD", "Fantastic price.", category, supplier);
+        ProductDaoJDBC.getInstance().add(product);
+        return product;
+    }
+
+    @Test
+    public void testJdbcUpdate_OrderWithItems_ItemsReadBackFromDatabase() {
+        OrderDaoJDBC orders = OrderDaoJDBC.getInstance();
+        orders.removeAll();
+        Product product = storedProduct(10f);
+        Order order = new Order();
+        orders.add(order);
+        assertTrue(order.getId() > 0);
+
+        order.addLineItem(new LineItem(product, 3));
+        orders.update(order);
+
+        Order stored = orders.find(order.getId());
+        assertEquals(3, stored.getOrderQuantity());
+        assertEquals(30f, stored.getOrderPrice(), 0.001f);
+        assertEquals(product.getId(), stored.getItems().get(0).getProduct().getId());
+    }
+
+    @Test
+    public void testWriteBehind_RepeatedUpdates_LastStateWrittenOnFlush() throws Exception {
+        OrderDaoWriteBehind orders = OrderDaoWriteBehind.getInstance();
+        orders.removeAll();
+        Product product = storedProduct(5f);
+        Order order = new Order();
+        orders.add(order);
+        for (int i = 0; i < 10; i++) {
+            order.addLineItem(new LineItem(product, 1));
+            orders.update(order);
+        }
+
+        assertTrue(orders.flush(5000));
+        Order stored = OrderDaoJDBC.getInstance().find(order.getId());
+        assertEquals(10, stored.getOrderQuantity());
+        assertEquals(50f, stored.getOrderPrice(), 0.001f);
+    }
+
+    @Test
+    public void testWriteBehind_RemoveQueuedOrder_NotWrittenBack() throws Exception {
+        OrderDaoWriteBehind orders = OrderDaoWriteBehind.getInstance();
+        orders.removeAll();
+        Product product = storedProduct(5f);
+        Order order = new Order();
+        orders.add(order);
+        order.addLineItem(new LineItem(product, 1));
+        orders.update(order);
+        orders.remove(order.getId());
+
+        assertTrue(orders.flush(5000));
+        assertNull(OrderDaoJDBC.getInstance().find(order.getId()));
+        assertNull(orders.find(order.getId()));
+    }
+
+    @Test
+    public void testEvictExpired_IdleAndUsedOrders_OnlyIdleOrderEvictedAndReported() throws Exception {
+        List<Order> evicted = new ArrayList<>();
+        orderList.configureEviction(60_000, 100_000);
+        orderList.setEvictionListener(evicted::add);
+        try {
+            Order idle = new Order();
+            Order used = new Order();
+            orderList.add(idle);
+            orderList.add(used);
+            long added = System.currentTimeMillis();
+            Thread.sleep(1100);
+            orderList.find(used.getId());
+
+            orderList.evictExpired(added + 61_000);
+
+            assertNull(orderList.find(idle.getId()));
+            assertEquals(used, orderList.find(used.getId()));
+            assertEquals(Arrays.asList(idle), evicted);
+        } finally {
+            orderList.setEvictionListener(order -> { });
+            orderList.configureEviction(30 * 60 * 1000, 100_000);
+        }
+    }
+
+    @Test
+    public void testAdd_MoreOrdersThanTheLimit_LeastRecentlyUsedEvicted() throws Exception {
+        orderList.configureEviction(60_000, 2);
+        try {
+            Order first = new Order();
+            Order second = new Order();
+            Order third = new Order();
+            orderList.add(first);
+            Thread.sleep(1100);
+            orderList.add(second);
+            Thread.sleep(1100);
+            orderList.find(first.getId());
+            orderList.add(third);
+
+            assertEquals(2, orderList.size());
+            assertNull(orderList.find(second.getId()));
+            assertEquals(first, orderList.find(first.getId()));
+        } finally {
+            orderList.configureEviction(30 * 60 * 1000, 100_000);
+        }
+    }
+}
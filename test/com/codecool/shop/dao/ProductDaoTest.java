@@ -1,5 +1,6 @@
 package com.codecool.shop.dao;
 
+import com.codecool.shop.dao.jdbcImplementation.ConnectionPool;
 import com.codecool.shop.dao.jdbcImplementation.ProductCategoryDaoJDBC;
 import com.codecool.shop.dao.jdbcImplementation.ProductDaoJDBC;
 import com.codecool.shop.dao.jdbcImplementation.SupplierDaoJDBC;
@@ -9,9 +10,14 @@ import com.codecool.shop.model.ProductCategory;
 import com.codecool.shop.model.Supplier;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.MethodSource;
 
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.stream.Stream;
@@ -54,6 +60,16 @@ class ProductDaoTest {
         return products;
     }
 
+    private List<Product> prepareProductDataStoreWithProducts(ProductDao dao, int count) {
+        List<Product> products = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Product fire = new Product("Amazon Fire " + i, 49.9f, "USD", "Fantastic price. Large content ecosystem. Good parental controls. Helpful technical support.", tablet, amazon);
+            dao.add(fire);
+            products.add(fire);
+        }
+        return products;
+    }
+
     @ParameterizedTest
     @MethodSource(names = "daoProvider")
     public void testAdd_AddNewProduct_ProductAddedToDao(ProductDao dao) {
@@ -135,4 +151,119 @@ class ProductDaoTest {
         List<Product> products = prepareProductDataStoreWithOneProduct(dao);
         assertEquals(products, dao.getBy(tablet));
     }
-}
\ No newline at end of file
+
+    @ParameterizedTest
+    @MethodSource(names = "daoProvider")
+    public void testGetAll_PageAfterCursor_ReturnsFollowingProducts(ProductDao dao) {
+        List<Product> products = prepareProductDataStoreWithProducts(dao, 5);
+        assertEquals(products.subList(0, 2), dao.getAll(0, 2));
+        assertEquals(products.subList(2, 4), dao.getAll(products.get(1).getId(), 2));
+        assertEquals(products.subList(4, 5), dao.getAll(products.get(3).getId(), 2));
+    }
+
+    @ParameterizedTest
+    @MethodSource(names = "daoProvider")
+    public void testGetAllBefore_PageBeforeCursor_ReturnsPrecedingProductsInIdOrder(ProductDao dao) {
+        List<Product> products = prepareProductDataStoreWithProducts(dao, 5);
+        assertEquals(products.subList(1, 3), dao.getAllBefore(products.get(3).getId(), 2));
+        assertEquals(products.subList(0, 1), dao.getAllBefore(products.get(1).getId(), 2));
+    }
+
+    @ParameterizedTest
+    @MethodSource(names = "daoProvider")
+    public void testGetAllBy_Suppliers_PageAfterCursor_ReturnsFollowingProducts(ProductDao dao) {
+        List<Product> products = prepareProductDataStoreWithProducts(dao, 5);
+        assertEquals(products.subList(2, 5), dao.getBy(amazon, products.get(1).getId(), 10));
+        assertEquals(products.subList(0, 2), dao.getByBefore(amazon, products.get(2).getId(), 10));
+    }
+
+    @ParameterizedTest
+    @MethodSource(names = "daoProvider")
+    public void testGetAllBy_ProductCategory_PageAfterCursor_ReturnsFollowingProducts(ProductDao dao) {
+        List<Product> products = prepareProductDataStoreWithProducts(dao, 5);
+        assertEquals(products.subList(2, 5), dao.getBy(tablet, products.get(1).getId(), 10));
+        assertEquals(products.subList(0, 2), dao.getByBefore(tablet, products.get(2).getId(), 10));
+    }
+
+    private void prepareJdbcDataStoreWithManyProducts() {
+        for (int i = 0; i < 20; i++) {
+            productDataStoreJdbc.add(new Product("Amazon Fire " + i, 49.9f, "USD", "Fantastic price. Large content ecosystem. Good parental controls. Helpful technical support.", tablet, amazon));
+        }
+    }
+
+    private long statementsExecutedBy(Runnable listing) {
+        long before = ConnectionPool.getInstance().getStatementCount();
+        listing.run();
+        return ConnectionPool.getInstance().getStatementCount() - before;
+    }
+
+    @Test
+    public void testGetAll_ManyProductsInJdbc_ExecutesOneStatement() {
+        prepareJdbcDataStoreWithManyProducts();
+        assertEquals(1, statementsExecutedBy(() -> assertEquals(20, productDataStoreJdbc.getAll().size())));
+    }
+
+    @Test
+    public void testGetAllBy_Suppliers_ManyProductsInJdbc_ExecutesOneStatement() {
+        prepareJdbcDataStoreWithManyProducts();
+        assertEquals(1, statementsExecutedBy(() -> assertEquals(20, productDataStoreJdbc.getBy(amazon).size())));
+    }
+
+    @Test
+    public void testGetAllBy_ProductCategory_ManyProductsInJdbc_ExecutesOneStatement() {
+        prepareJdbcDataStoreWithManyProducts();
+        assertEquals(1, statementsExecutedBy(() -> assertEquals(20, productDataStoreJdbc.getBy(tablet).size())));
+    }
+
+    @Test
+    public void testAdd_AddProductAfterRemovingOne_IdsStayUnique() {
+        Product fire = new Product("Amazon Fire", 49.9f, "USD", "Fantastic price. Large content ecosystem. Good parental controls. Helpful technical support.", tablet, amazon);
+        Product fireHd = new Product("Amazon Fire HD 8", 89, "USD", "Amazon's latest Fire HD 8 tablet is a great value for media consumption.", tablet, amazon);
+        Product miix = new Product("Lenovo IdeaPad Miix 700", 479, "USD", "Keyboard cover is included. Fanless Core m5 processor. Full-size USB ports. Adjustable kickstand.", tablet, amazon);
+        productDataStoreMem.add(fire);
+        productDataStoreMem.add(fireHd);
+        productDataStoreMem.remove(fire.getId());
+        productDataStoreMem.add(miix);
+        assertEquals(fireHd, productDataStoreMem.find(fireHd.getId()));
+        assertEquals(miix, productDataStoreMem.find(miix.getId()));
+        assertEquals(2, productDataStoreMem.getBy(amazon).size());
+        assertEquals(2, productDataStoreMem.getBy(tablet).size());
+    }
+
+    @Test
+    public void testVisitAll_ManyProductsInJdbc_RowsArriveWhileTheCursorIsOpen() {
+        prepareJdbcDataStoreWithManyProducts();
+        ProductDaoJDBC jdbc = ProductDaoJDBC.getInstance();
+        jdbc.setFetchSize(5);
+        try {
+            List<Product> visited = new ArrayList<>();
+            long[] openCursors = new long[1];
+            productDataStoreJdbc.visitAll(product -> {
+                if (visited.isEmpty()) {
+                    openCursors[0] = openCatalogCursors();
+                }
+                visited.add(product);
+            });
+
+            assertEquals(20, visited.size());
+            // a fully fetched result would have ended its query, and the connection would be idle
+            assertEquals(1, openCursors[0]);
+        } finally {
+            jdbc.setFetchSize(500);
+        }
+    }
+
+    // other connections with the catalog query open in a transaction, i.e. fetching through a cursor
+    private static long openCatalogCursors() {
+        String query = "SELECT count(*) FROM pg_stat_activity WHERE pid <> pg_backend_pid() " +
+                "AND state = 'idle in transaction' AND query LIKE 'SELECT p.id, p.name%ORDER BY p.id;'";
+        try (Connection connection = ConnectionPool.getInstance().getConnection();
+             PreparedStatement statement = connection.prepareStatement(query);
+             ResultSet result = statement.executeQuery()) {
+            result.next();
+            return result.getLong(1);
+        } catch (SQLException e) {
+            throw new DataAccessException("Reading pg_stat_activity failed", e);
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.codecool.shop.dao.jdbcImplementation;
+
+import com.codecool.shop.dao.CatalogChange;
+import com.codecool.shop.dao.CatalogChangeListener;
+import com.codecool.shop.model.Supplier;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/* Two feeds over the same database stand in for two nodes: one makes the change, the other one
+ * has to hear about it.
+ */
+class CatalogChangeFeedTest {
+
+    private static SupplierDaoJDBC suppliers = SupplierDaoJDBC.getInstance();
+
+    private CatalogChangeFeed writer;
+    private CatalogChangeFeed reader;
+    private List<CatalogChange> received;
+
+    @BeforeEach
+    public void setup() {
+        suppliers.removeAll();
+        Properties props = JDBCConnectPropParser.loadProperties();
+        writer = new CatalogChangeFeed(props);
+        reader = new CatalogChangeFeed(props);
+        writer.skipToLatest();
+        reader.skipToLatest();
+        received = new ArrayList<>();
+        reader.subscribe(new CatalogChangeListener() {
+            @Override
+            public void catalogChanged(List<CatalogChange> changes) {
+                received.addAll(changes);
+            }
+
+            @Override
+            public void changesMissed() {
+            }
+        });
+    }
+
+    @Test
+    public void testPoll_SupplierAddedThroughDao_ChangeDeliveredToOtherNode() throws Exception {
+        Supplier amazon = new Supplier("Amazon", "Digital content and services");
+        suppliers.add(amazon);
+
+        assertEquals(1, reader.poll());
+        assertEquals(CatalogChange.Table.SUPPLIER, received.get(0).getTable());
+        assertEquals(Integer.valueOf(amazon.getId()), received.get(0).getRowId());
+        assertEquals(0, reader.poll());
+    }
+
+    @Test
+    public void testPoll_RowUpdatedOutsideTheDao_ChangeDelivered() throws Exception {
+        Supplier amazon = new Supplier("Amazon", "Digital content and services");
+        suppliers.add(amazon);
+        reader.poll();
+        received.clear();
+
+        try (Connection connection = writer.getConnection();
+             PreparedStatement preparedStatement = connection.prepareStatement(
+                     "UPDATE supplier SET description = ? WHERE id = ?;")) {
+            preparedStatement.setString(1, "Books, mostly");
+            preparedStatement.setInt(2, amazon.getId());
+            preparedStatement.executeUpdate();
+        }
+
+        assertEquals(1, reader.poll());
+        assertEquals(Integer.valueOf(amazon.getId()), received.get(0).getRowId());
+    }
+
+    @Test
+    public void testPoll_TableTruncated_WholeTableChangeDelivered() throws Exception {
+        suppliers.add(new Supplier("Amazon", "Digital content and services"));
+        reader.poll();
+        received.clear();
+
+        suppliers.removeAll();
+
+        assertTrue(reader.poll() > 0);
+        assertTrue(received.stream().anyMatch(change ->
+                change.getTable() == CatalogChange.Table.SUPPLIER && change.isWholeTable()));
+    }
+}
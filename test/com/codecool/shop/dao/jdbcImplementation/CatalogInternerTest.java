@@ -0,0 +1,118 @@
+package com.codecool.shop.dao.jdbcImplementation;
+
+import com.codecool.shop.model.Product;
+import com.codecool.shop.model.ProductCategory;
+import com.codecool.shop.model.Supplier;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CatalogInternerTest {
+
+    private static final int PRODUCTS = 200_000;
+    private static final int SUPPLIERS = 50;
+    private static final int CATEGORIES = 20;
+    private static final String[] DESCRIPTIONS = {
+            "Fantastic price. Large content ecosystem. Good parental controls. Helpful technical support.",
+            "Keyboard, touchpad and a screen that folds away. Battery life of a whole working day.",
+            "The phone your mother uses to ask what you had for lunch, now with a better camera."
+    };
+
+    @Test
+    public void testSupplier_SameRowTwice_ReturnsOneInstance() {
+        CatalogInterner interner = new CatalogInterner();
+        Supplier first = interner.supplier(1, new String("Amazon"), new String("Digital content and services"));
+        Supplier second = interner.supplier(1, new String("Amazon"), new String("Digital content and services"));
+        assertSame(first, second);
+        assertEquals(1, first.getId());
+    }
+
+    @Test
+    public void testProductCategory_ChangedRow_ReturnsNewInstance() {
+        CatalogInterner interner = new CatalogInterner();
+        ProductCategory before = interner.productCategory(1, "Tablet", "Hardware", "A tablet computer.");
+        ProductCategory after = interner.productCategory(1, "Tablet", "Hardware", "A thin, flat mobile computer.");
+        assertNotSame(before, after);
+        assertEquals("Hardware", after.getDepartment());
+        assertEquals("A thin, flat mobile computer.", after.getDescription());
+        assertSame(after, interner.productCategory(1, "Tablet", "Hardware", "A thin, flat mobile computer."));
+    }
+
+    @Test
+    public void testString_EqualStrings_ReturnsFirstInstance() {
+        CatalogInterner interner = new CatalogInterner();
+        String first = interner.string(new String(DESCRIPTIONS[0]));
+        assertSame(first, interner.string(new String(DESCRIPTIONS[0])));
+        assertEquals(null, interner.string(null));
+    }
+
+    @Test
+    public void testFootprint_InternedCatalog_SmallerPerProductThanFreshRows() {
+        long fresh = bytesPerProduct(false);
+        long interned = bytesPerProduct(true);
+        assertTrue(interned * 2 < fresh, interned + " bytes interned vs " + fresh + " fresh");
+    }
+
+    /* Heap held by a catalog of PRODUCTS products built the way the DAO maps rows: every row
+     * brings new String instances, as a JDBC driver hands them out.
+     */
+    private static long bytesPerProduct(boolean interned) {
+        CatalogInterner interner = new CatalogInterner();
+        long before = usedHeap();
+        List<Product> catalog = new ArrayList<>(PRODUCTS);
+        for (int id = 1; id <= PRODUCTS; id++) {
+            int supplierId = id % SUPPLIERS;
+            int categoryId = id % CATEGORIES;
+            String supplierName = "Supplier " + supplierId;
+            String supplierDescription = "Supplier number " + supplierId + " of the generated catalog";
+            String categoryName = "Category " + categoryId;
+            String categoryDescription = "Category number " + categoryId + " of the generated catalog";
+            String description = new String(DESCRIPTIONS[id % DESCRIPTIONS.length]);
+
+            Supplier supplier;
+            ProductCategory productCategory;
+            if (interned) {
+                supplier = interner.supplier(supplierId, supplierName, supplierDescription);
+                productCategory = interner.productCategory(categoryId, categoryName, "Hardware", categoryDescription);
+                description = interner.string(description);
+            } else {
+                supplier = new Supplier(supplierName, supplierDescription);
+                supplier.setId(supplierId);
+                productCategory = new ProductCategory(categoryName, new String("Hardware"), categoryDescription);
+                productCategory.setId(categoryId);
+            }
+            Product product = new Product("Product " + id, 10f + id % 1000, "USD", description, productCategory, supplier);
+            product.setId(id);
+            catalog.add(product);
+        }
+        long after = usedHeap();
+        assertEquals(PRODUCTS, catalog.size());
+        return (after - before) / PRODUCTS;
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        long used = Long.MAX_VALUE;
+        // a few rounds, until collection stops freeing memory
+        for (int round = 0; round < 5; round++) {
+            System.gc();
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            long now = runtime.totalMemory() - runtime.freeMemory();
+            if (now >= used) {
+                break;
+            }
+            used = now;
+        }
+        return used;
+    }
+}
@@ -0,0 +1,252 @@
+package com.codecool.shop.dao.memImplementation;
+
+import com.codecool.shop.model.LineItem;
+import com.codecool.shop.model.Order;
+import com.codecool.shop.model.Product;
+import com.codecool.shop.model.ProductCategory;
+import com.codecool.shop.model.Supplier;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class OrderJournalTest {
+
+    private Path directory;
+    private Map<Integer, Product> products = new HashMap<>();
+    private Product fire;
+    private Product kindle;
+
+    @BeforeEach
+    public void setupTests() throws IOException {
+        directory = Files.createTempDirectory("orders");
+        Supplier amazon = new Supplier("Amazon", "Digital content and services");
+        ProductCategory tablet = new ProductCategory("Tablet", "Hardware", "A tablet computer.");
+        fire = new Product("Fire", 49.9f, "USD", "Fantastic price.", tablet, amazon);
+        fire.setId(1);
+        kindle = new Product("Kindle", 79, "USD", "Paper white.", tablet, amazon);
+        kindle.setId(2);
+        products.put(fire.getId(), fire);
+        products.put(kindle.getId(), kindle);
+    }
+
+    @AfterEach
+    public void deleteDirectory() throws IOException {
+        for (Path segment : segments()) {
+            Files.deleteIfExists(segment);
+        }
+        Files.deleteIfExists(directory);
+    }
+
+    private OrderJournal open(int segmentBytes, OrderJournal.SyncPolicy syncPolicy) throws IOException {
+        return new OrderJournal(directory, segmentBytes, syncPolicy, 10, 2);
+    }
+
+    private List<Path> segments() throws IOException {
+        List<Path> segments = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            files.forEach(segments::add);
+        }
+        return segments;
+    }
+
+    private static Order order(int id, LineItem... items) {
+        Order order = new Order();
+        order.setId(id);
+        for (LineItem item : items) {
+            order.addLineItem(item);
+        }
+        return order;
+    }
+
+    @Test
+    public void testReplay_JournaledChanges_SameOrdersAfterReopening() throws IOException {
+        OrderJournal journal = open(1 << 16, OrderJournal.SyncPolicy.COMMIT);
+        journal.replay(products::get);
+        journal.orderAdded(order(10));
+        journal.itemAdded(10, fire.getId(), 2, 99.8f);
+        journal.orderAdded(order(11, new LineItem(kindle)));
+        journal.orderAdded(order(12));
+        journal.itemAdded(11, fire.getId(), 1, 49.9f);
+        journal.orderRemoved(12);
+        journal.close();
+
+        List<Order> replayed = open(1 << 16, OrderJournal.SyncPolicy.COMMIT).replay(products::get);
+
+        assertEquals(2, replayed.size());
+        assertEquals(10, replayed.get(0).getId());
+        assertEquals(2, replayed.get(0).getOrderQuantity());
+        assertEquals(99.8f, replayed.get(0).getOrderPrice());
+        assertEquals(Arrays.asList(kindle, fire), Arrays.asList(replayed.get(1).getItems().get(0).getProduct(),
+                replayed.get(1).getItems().get(1).getProduct()));
+    }
+
+    @Test
+    public void testReplay_TornLastRecord_EarlierRecordsKept() throws IOException {
+        OrderJournal journal = open(1 << 16, OrderJournal.SyncPolicy.NONE);
+        journal.replay(products::get);
+        journal.orderAdded(order(10));
+        journal.itemAdded(10, fire.getId(), 1, 49.9f);
+        journal.itemAdded(10, kindle.getId(), 1, 79f);
+        journal.close();
+        // a crash in the middle of the last record: its type is written, its check is not
+        try (RandomAccessFile raw = new RandomAccessFile(segments().get(0).toFile(), "rw")) {
+            raw.seek(16 + 2 * OrderJournal.RECORD_BYTES + 20);
+            raw.writeInt(0);
+        }
+
+        List<Order> replayed = open(1 << 16, OrderJournal.SyncPolicy.NONE).replay(products::get);
+
+        assertEquals(1, replayed.size());
+        assertEquals(Arrays.asList(fire), Arrays.asList(replayed.get(0).getItems().get(0).getProduct()));
+        assertEquals(1, replayed.get(0).getItems().size());
+    }
+
+    @Test
+    public void testCompact_RemovedOrdersAndFullSegments_OnlyLiveOrdersKept() throws IOException {
+        // room for 10 records per segment
+        OrderJournal journal = open(16 + 10 * OrderJournal.RECORD_BYTES, OrderJournal.SyncPolicy.INTERVAL);
+        journal.replay(products::get);
+        Order live = order(1);
+        journal.orderAdded(live);
+        for (int id = 2; id < 40; id++) {
+            journal.orderAdded(order(id));
+            journal.itemAdded(id, kindle.getId(), 1, 79f);
+            journal.orderRemoved(id);
+        }
+        live.addLineItem(new LineItem(fire));
+        journal.itemAdded(1, fire.getId(), 1, 49.9f);
+        assertTrue(journal.needsCompaction());
+
+        journal.compact(() -> Arrays.asList(live));
+        journal.close();
+
+        assertEquals(1, segments().size());
+        List<Order> replayed = open(1 << 16, OrderJournal.SyncPolicy.NONE).replay(products::get);
+        assertEquals(1, replayed.size());
+        assertEquals(1, replayed.get(0).getId());
+        assertEquals(1, replayed.get(0).getOrderQuantity());
+    }
+
+    @Test
+    public void testCompact_OrdersAddedAndRemovedAroundTheLiveOrderRead_SameOrdersReplayed() throws IOException {
+        OrderJournal journal = open(1 << 16, OrderJournal.SyncPolicy.NONE);
+        journal.replay(products::get);
+        Map<Integer, Order> live = new LinkedHashMap<>();
+        for (int id = 1; id <= 4; id++) {
+            live.put(id, order(id, new LineItem(fire)));
+            journal.orderAdded(live.get(id));
+        }
+
+        journal.compact(() -> {
+            // after the roll, before the live orders are read
+            live.remove(1);
+            journal.orderRemoved(1);
+            List<Order> read = new ArrayList<>(live.values());
+            // after they are read, before they are written
+            live.remove(2);
+            journal.orderRemoved(2);
+            live.put(5, order(5, new LineItem(kindle)));
+            journal.orderAdded(live.get(5));
+            return read;
+        });
+        journal.close();
+
+        List<Order> replayed = open(1 << 16, OrderJournal.SyncPolicy.NONE).replay(products::get);
+        assertEquals(live.keySet(), ids(replayed));
+    }
+
+    @Test
+    public void testCompact_ConcurrentAddsAndRemoves_ReplayMatchesTheLiveOrders() throws Exception {
+        // room for 50 records per segment, so the journal keeps asking for compaction
+        OrderJournal journal = open(16 + 50 * OrderJournal.RECORD_BYTES, OrderJournal.SyncPolicy.NONE);
+        journal.replay(products::get);
+        Map<Integer, Order> live = new ConcurrentHashMap<>();
+        AtomicInteger nextId = new AtomicInteger(1);
+        int threads = 4;
+        CountDownLatch done = new CountDownLatch(threads);
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            Thread worker = new Thread(() -> {
+                List<Integer> mine = new ArrayList<>();
+                for (int i = 0; i < 5000; i++) {
+                    if (i % 3 == 2) {
+                        // like OrderDaoMem.remove: out of the map first, then journaled
+                        int id = mine.remove(mine.size() / 2);
+                        live.remove(id);
+                        journal.orderRemoved(id);
+                    } else {
+                        Order order = order(nextId.getAndIncrement(), new LineItem(fire));
+                        live.put(order.getId(), order);
+                        journal.orderAdded(order);
+                        mine.add(order.getId());
+                    }
+                }
+                done.countDown();
+            });
+            workers.add(worker);
+            worker.start();
+        }
+        int compactions = 0;
+        while (done.getCount() > 0 || compactions == 0) {
+            journal.compact(() -> new ArrayList<>(live.values()));
+            compactions++;
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        journal.close();
+
+        List<Order> replayed = open(1 << 16, OrderJournal.SyncPolicy.NONE).replay(products::get);
+        assertEquals(live.keySet(), ids(replayed));
+    }
+
+    private static Set<Integer> ids(List<Order> orders) {
+        Set<Integer> ids = new HashSet<>();
+        for (Order order : orders) {
+            ids.add(order.getId());
+        }
+        return ids;
+    }
+
+    @Test
+    public void testReplay_ManyAppends_EveryItemReplayed() throws IOException {
+        OrderJournal journal = open(64 << 20, OrderJournal.SyncPolicy.INTERVAL);
+        journal.replay(products::get);
+        int orders = 1000;
+        int appends = 1_000_000;
+        for (int id = 0; id < orders; id++) {
+            journal.orderAdded(order(id));
+        }
+        for (int i = 0; i < appends; i++) {
+            journal.itemAdded(i % orders, fire.getId(), 1, 49.9f);
+        }
+        journal.close();
+
+        List<Order> replayed = open(64 << 20, OrderJournal.SyncPolicy.INTERVAL).replay(products::get);
+
+        assertEquals(orders, replayed.size());
+        for (Order order : replayed) {
+            assertEquals(appends / orders, order.getOrderQuantity());
+        }
+    }
+}
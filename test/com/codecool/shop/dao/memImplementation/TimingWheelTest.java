@@ -0,0 +1,77 @@
+package com.codecool.shop.dao.memImplementation;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TimingWheelTest {
+
+    @Test
+    public void testAdvance_RandomDeadlinesAcrossLevels_EachExpiresOnItsTick() {
+        TimingWheel<Long> wheel = new TimingWheel<>(10, 0);
+        Random random = new Random(42);
+        int entries = 5000;
+        for (int i = 0; i < entries; i++) {
+            // up to ~3 levels deep
+            long deadline = 1 + (long) (random.nextDouble() * random.nextDouble() * 3_000_000);
+            wheel.schedule(deadline, deadline);
+        }
+        int expired = 0;
+        for (long now = 0; now <= 3_000_000; now += 70) {
+            for (TimingWheel.Entry<Long> entry : wheel.advance(now)) {
+                assertTrue(entry.getDeadline() <= now);
+                assertTrue(entry.getDeadline() > now - 80);
+                expired++;
+            }
+        }
+        assertEquals(entries, expired);
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    public void testAdvance_ExtendedDeadline_ExpiresAtTheNewDeadline() {
+        TimingWheel<String> wheel = new TimingWheel<>(1000, 0);
+        TimingWheel.Entry<String> entry = wheel.schedule("cart", 5000);
+        entry.extendTo(200_000);
+
+        assertEquals(0, wheel.advance(100_000).size());
+        assertEquals(1, wheel.size());
+        assertEquals(0, wheel.advance(199_000).size());
+        assertEquals(1, wheel.advance(200_000).size());
+    }
+
+    @Test
+    public void testCancel_ScheduledEntry_NeverExpires() {
+        TimingWheel<String> wheel = new TimingWheel<>(1000, 0);
+        TimingWheel.Entry<String> entry = wheel.schedule("cart", 5000);
+        wheel.cancel(entry);
+        wheel.cancel(entry);
+
+        assertEquals(0, wheel.size());
+        assertEquals(0, wheel.advance(10_000).size());
+    }
+
+    @Test
+    public void testPollEarliest_MixedDeadlines_ReturnsThemInDeadlineOrder() {
+        TimingWheel<Integer> wheel = new TimingWheel<>(1000, 0);
+        int[] deadlines = {900_000, 3_000, 130_000, 5_000_000, 64_000};
+        List<TimingWheel.Entry<Integer>> entries = new ArrayList<>();
+        for (int deadline : deadlines) {
+            entries.add(wheel.schedule(deadline, deadline));
+        }
+        // touched, so it now comes last
+        entries.get(1).extendTo(6_000_000);
+
+        int[] expected = {64_000, 130_000, 900_000, 5_000_000, 3_000};
+        for (int value : expected) {
+            assertEquals(value, (int) wheel.pollEarliest().getValue());
+        }
+        assertNull(wheel.pollEarliest());
+    }
+}
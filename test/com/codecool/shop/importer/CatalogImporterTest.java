@@ -0,0 +1,155 @@
+package com.codecool.shop.importer;
+
+import com.codecool.shop.controller.ExportController;
+import com.codecool.shop.dao.ProductDao;
+import com.codecool.shop.dao.jdbcImplementation.ProductCategoryDaoJDBC;
+import com.codecool.shop.dao.jdbcImplementation.ProductDaoJDBC;
+import com.codecool.shop.dao.jdbcImplementation.SupplierDaoJDBC;
+import com.codecool.shop.model.Product;
+import com.codecool.shop.model.ProductCategory;
+import com.codecool.shop.model.Supplier;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class CatalogImporterTest {
+
+    private static final String HEADER = "id,name,description,price,currency,category_id,category,supplier_id,supplier\n";
+
+    private ProductDao productDataStore = ProductDaoJDBC.getInstance();
+    private Path catalogFile;
+
+    @BeforeEach
+    public void setup() throws IOException {
+        productDataStore.removeAll();
+        SupplierDaoJDBC.getInstance().removeAll();
+        ProductCategoryDaoJDBC.getInstance().removeAll();
+        catalogFile = Files.createTempFile("catalog", ".csv");
+    }
+
+    @AfterEach
+    public void cleanup() throws IOException, SQLException {
+        new CatalogImporter().resetCheckpoint(catalogFile);
+        Files.deleteIfExists(catalogFile);
+    }
+
+    private void appendProducts(int from, int to) throws IOException {
+        StringBuilder csv = new StringBuilder(from == 0 ? HEADER : "");
+        for (int i = from; i < to; i++) {
+            csv.append(i).append(",\"Product ").append(i).append("\",\"Imported\",")
+                    .append(i % 100).append(".5,USD,0,\"Category ").append(i % 7).append("\",0,\"Supplier ")
+                    .append(i % 3).append("\"\n");
+        }
+        Files.write(catalogFile, csv.toString().getBytes(StandardCharsets.UTF_8),
+                StandardOpenOption.APPEND);
+    }
+
+    @Test
+    public void testCsvReader_QuotedFields_CommasQuotesAndLineBreaksKept() throws IOException {
+        String csv = HEADER + "1,\"Fire, HD\",\"The \"\"best\"\"\nreader\",49.9,USD,1,Tablet,1,Amazon\r\n\n";
+        try (CatalogReader reader = new CatalogReader.Csv(new StringReader(csv))) {
+            CatalogRecord record = reader.next();
+            assertEquals("Fire, HD", record.name);
+            assertEquals("The \"best\"\nreader", record.description);
+            assertEquals(49.9f, record.price);
+            assertEquals("Tablet", record.category);
+            assertEquals("Amazon", record.supplier);
+            assertNull(reader.next());
+            assertEquals(1, reader.getPosition());
+        }
+    }
+
+    @Test
+    public void testImportFile_CsvCatalog_ProductsAndReferencesInserted() throws IOException, SQLException {
+        appendProducts(0, 2500);
+
+        assertEquals(2500, new CatalogImporter(1000).importFile(catalogFile));
+
+        List<Product> products = productDataStore.getAll();
+        assertEquals(2500, products.size());
+        assertEquals(3, SupplierDaoJDBC.getInstance().getAll().size());
+        assertEquals(7, ProductCategoryDaoJDBC.getInstance().getAll().size());
+        assertEquals("Supplier 1", products.get(1).getSupplier().getName());
+        assertEquals("Category 1", products.get(1).getProductCategory().getName());
+    }
+
+    @Test
+    public void testImportFile_FileGrewAfterImport_OnlyNewRecordsImported() throws IOException, SQLException {
+        appendProducts(0, 1500);
+        new CatalogImporter(1000).importFile(catalogFile);
+        appendProducts(1500, 2000);
+
+        assertEquals(500, new CatalogImporter(1000).importFile(catalogFile));
+        assertEquals(2000, productDataStore.getAll().size());
+    }
+
+    @Test
+    public void testImportFile_InvalidRecord_CommittedBatchesKeptAndResumable() throws IOException, SQLException {
+        appendProducts(0, 1200);
+        Files.write(catalogFile, "0,\"Broken\",\"\",not a price,USD,0,\"Category 0\",0,\"Supplier 0\"\n"
+                .getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+
+        assertThrows(IllegalArgumentException.class, () -> new CatalogImporter(500).importFile(catalogFile));
+        assertEquals(1000, productDataStore.getAll().size());
+    }
+
+    @Test
+    public void testImportFile_CsvExport_SameCatalogAfterRoundTrip() throws IOException, SQLException {
+        assertRoundTrip(catalogFile, true);
+    }
+
+    @Test
+    public void testImportFile_NdjsonExport_SameCatalogAfterRoundTrip() throws IOException, SQLException {
+        Path ndjsonFile = Files.createTempFile("catalog", ".ndjson");
+        try {
+            assertRoundTrip(ndjsonFile, false);
+        } finally {
+            new CatalogImporter().resetCheckpoint(ndjsonFile);
+            Files.deleteIfExists(ndjsonFile);
+        }
+    }
+
+    private void assertRoundTrip(Path file, boolean csv) throws IOException, SQLException {
+        Supplier amazon = new Supplier("Amazon", "Digital content and services");
+        SupplierDaoJDBC.getInstance().add(amazon);
+        ProductCategory tablet = new ProductCategory("Tablet", "Hardware", "A tablet computer, \"portable\".");
+        ProductCategoryDaoJDBC.getInstance().add(tablet);
+        productDataStore.add(new Product("Amazon Fire", 49.9f, "USD", "Fantastic price,\nlarge selection.", tablet, amazon));
+        productDataStore.add(new Product("Kindle", 79, "EUR", "Paper white.", tablet, amazon));
+        try (OutputStream out = Files.newOutputStream(file)) {
+            ExportController.write(productDataStore, out, csv);
+        }
+        productDataStore.removeAll();
+        SupplierDaoJDBC.getInstance().removeAll();
+        ProductCategoryDaoJDBC.getInstance().removeAll();
+
+        assertEquals(2, new CatalogImporter(1).importFile(file));
+
+        List<Product> products = productDataStore.getAll();
+        assertEquals(2, products.size());
+        assertEquals("Amazon Fire", products.get(0).getName());
+        assertEquals("Fantastic price,\nlarge selection.", products.get(0).getDescription());
+        assertEquals(49.9f, products.get(0).getDefaultPrice());
+        assertEquals("EUR", products.get(1).getDefaultCurrency().getCurrencyCode());
+        assertEquals("Digital content and services", products.get(0).getSupplier().getDescription());
+        assertEquals("A tablet computer, \"portable\".", products.get(1).getProductCategory().getDescription());
+        assertEquals("Hardware", products.get(1).getProductCategory().getDepartment());
+        assertEquals(1, SupplierDaoJDBC.getInstance().getAll().size());
+        assertEquals(1, ProductCategoryDaoJDBC.getInstance().getAll().size());
+    }
+}
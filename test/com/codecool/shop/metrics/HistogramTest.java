@@ -0,0 +1,46 @@
+package com.codecool.shop.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HistogramTest {
+
+    @Test
+    public void testBucketOf_EveryBucketBoundary_MapsBackToItsLowestValue() {
+        for (long value = 1; value > 0 && value < Long.MAX_VALUE / 2; value = value * 3 / 2 + 1) {
+            int bucket = Histogram.bucketOf(value);
+            assertTrue(Histogram.lowestValueOf(bucket) <= value);
+            assertEquals(bucket, Histogram.bucketOf(Histogram.lowestValueOf(bucket)));
+            assertTrue(Histogram.lowestValueOf(bucket + 1) > value);
+        }
+    }
+
+    @Test
+    public void testValueAt_UniformLatencies_QuantilesWithinRelativeError() {
+        Histogram histogram = new Histogram();
+        for (long micros = 1; micros <= 100_000; micros++) {
+            histogram.record(micros * 1000);
+        }
+        assertEquals(100_000, histogram.getCount());
+        assertEquals(50_000, histogram.valueAt(0.5) / 1000.0, 50_000 * 0.07);
+        assertEquals(99_000, histogram.valueAt(0.99) / 1000.0, 99_000 * 0.07);
+        assertEquals(99_900, histogram.valueAt(0.999) / 1000.0, 99_900 * 0.07);
+    }
+
+    @Test
+    public void testValueAt_Empty_ReturnsZero() {
+        assertEquals(0, new Histogram().valueAt(0.99));
+    }
+
+    @Test
+    public void testScrape_RecordedTimer_RendersPrometheusSummary() {
+        MetricsRegistry metrics = MetricsRegistry.getInstance();
+        metrics.timer("test_duration_seconds", "Test timer", "route=\"/test\"").record(2_000_000_000L);
+        String text = metrics.scrape();
+        assertTrue(text.contains("# TYPE test_duration_seconds summary"));
+        assertTrue(text.contains("test_duration_seconds_count{route=\"/test\"} 1"));
+        assertTrue(text.contains("test_duration_seconds_sum{route=\"/test\"} 2.0"));
+    }
+}
@@ -0,0 +1,80 @@
+package com.codecool.shop.model;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class OrderTest {
+
+    private Supplier amazon;
+    private ProductCategory tablet;
+    private Product fire;
+    private Product fireHd;
+
+    @BeforeEach
+    public void setup() {
+        amazon = new Supplier("Amazon", "Digital content and services");
+        tablet = new ProductCategory("Tablet", "Hardware", "A tablet computer, commonly shortened to tablet, is a thin, flat mobile computer with a touchscreen display.");
+        fire = new Product("Amazon Fire", 2.5f, "USD", "Fantastic price. Large content ecosystem. Good parental controls. Helpful technical support.", tablet, amazon);
+        fire.setId(1);
+        fireHd = new Product("Amazon Fire HD 8", 4f, "USD", "Amazon's latest Fire HD 8 tablet is a great value for media consumption.", tablet, amazon);
+        fireHd.setId(2);
+    }
+
+    @Test
+    public void testAddLineItem_AddSameProductTwice_OneLineItemWithSummedQuantity() {
+        Order order = new Order();
+        order.addLineItem(new LineItem(fire, 2));
+        order.addLineItem(new LineItem(fire, 3));
+        order.addLineItem(new LineItem(fireHd));
+        assertEquals(2, order.getItems().size());
+        assertEquals(5, order.getItems().get(0).getQuantity());
+        assertEquals(12.5f, order.getItems().get(0).getTotalPrice());
+        assertEquals(6, order.getOrderQuantity());
+        assertEquals(16.5f, order.getOrderPrice());
+    }
+
+    @Test
+    public void testAddLineItem_AddFromManyThreadsToOneOrder_TotalsAreExact() throws Exception {
+        int threads = 8;
+        int addsPerThread = 5000;
+        Order order = new Order();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            Product product = i % 2 == 0 ? fire : fireHd;
+            futures.add(executor.submit(() -> {
+                start.await();
+                for (int j = 0; j < addsPerThread; j++) {
+                    order.addLineItem(new LineItem(product, 1));
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+
+        int addsPerProduct = threads / 2 * addsPerThread;
+        assertEquals(2, order.getItems().size());
+        for (LineItem item : order.getItems()) {
+            assertEquals(addsPerProduct, item.getQuantity());
+            assertEquals(addsPerProduct * item.getProduct().getDefaultPrice(), item.getTotalPrice());
+        }
+        assertEquals(threads * addsPerThread, order.getOrderQuantity());
+        assertEquals(addsPerProduct * 6.5f, order.getOrderPrice());
+    }
+}
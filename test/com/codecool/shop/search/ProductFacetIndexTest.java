@@ -0,0 +1,131 @@
+package com.codecool.shop.search;
+
+import com.codecool.shop.model.Product;
+import com.codecool.shop.model.ProductCategory;
+import com.codecool.shop.model.Supplier;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ProductFacetIndexTest {
+
+    private Supplier amazon;
+    private Supplier lenovo;
+    private ProductCategory tablet;
+    private ProductCategory phone;
+    private ProductFacetIndex index;
+
+    @BeforeEach
+    public void setup() {
+        amazon = new Supplier("Amazon", "Digital content and services");
+        amazon.setId(1);
+        lenovo = new Supplier("Lenovo", "Computers");
+        lenovo.setId(2);
+        tablet = new ProductCategory("Tablet", "Hardware", "A tablet computer");
+        tablet.setId(1);
+        phone = new ProductCategory("Phone", "Hardware", "Mobile phones");
+        phone.setId(2);
+        index = new ProductFacetIndex();
+
+        add(1, 49.9f, tablet, amazon);
+        add(2, 479, tablet, lenovo);
+        add(3, 89, tablet, amazon);
+        add(4, 90, phone, lenovo);
+        add(5, 1200, phone, amazon);
+    }
+
+    private void add(int id, float price, ProductCategory category, Supplier supplier) {
+        Product product = new Product("Product " + id, price, "USD", "", category, supplier);
+        product.setId(id);
+        index.add(product);
+    }
+
+    private static List<Integer> ids(List<Product> products) {
+        return products.stream().map(Product::getId).collect(Collectors.toList());
+    }
+
+    @Test
+    public void testSelect_NoFilter_AllProductsAndCounts() {
+        ProductFacetIndex.Selection selection = index.select(Collections.emptySet(), Collections.emptySet(), Collections.emptySet());
+
+        assertEquals(5, selection.size());
+        assertEquals(3, (int) selection.getCategoryCounts().get(1));
+        assertEquals(2, (int) selection.getCategoryCounts().get(2));
+        assertEquals(3, (int) selection.getSupplierCounts().get(1));
+        assertArrayEquals(new int[]{1, 2, 0, 1, 0, 1}, selection.getPriceBandCounts());
+    }
+
+    @Test
+    public void testSelect_SupplierAndPriceBands_IntersectionOfFacets() {
+        ProductFacetIndex.Selection selection = index.select(Collections.emptySet(),
+                Collections.singleton(2), Arrays.asList(1, 3));
+
+        assertEquals(Arrays.asList(2, 4), ids(selection.after(0, 10)));
+    }
+
+    @Test
+    public void testSelect_TwoCategoriesSelected_CategoryCountsIgnoreOwnFilter() {
+        ProductFacetIndex.Selection selection = index.select(Arrays.asList(1, 2),
+                Collections.singleton(1), Collections.emptySet());
+
+        assertEquals(Arrays.asList(1, 3, 5), ids(selection.after(0, 10)));
+        // counts of a facet are restricted by the other facets only
+        assertEquals(2, (int) selection.getCategoryCounts().get(1));
+        assertEquals(1, (int) selection.getCategoryCounts().get(2));
+        assertEquals(3, (int) selection.getSupplierCounts().get(1));
+        assertEquals(2, (int) selection.getSupplierCounts().get(2));
+    }
+
+    @Test
+    public void testAfterAndBefore_KeysetPages_OrderedById() {
+        ProductFacetIndex.Selection selection = index.select(Collections.emptySet(), Collections.emptySet(), Collections.emptySet());
+
+        assertEquals(Arrays.asList(1, 2), ids(selection.after(0, 2)));
+        assertEquals(Arrays.asList(3, 4), ids(selection.after(2, 2)));
+        assertEquals(Arrays.asList(2, 3), ids(selection.before(4, 2)));
+    }
+
+    @Test
+    public void testAfterAndBefore_CursorsOutOfIdRange_EmptyPages() {
+        ProductFacetIndex.Selection selection = index.select(Collections.emptySet(), Collections.emptySet(), Collections.emptySet());
+
+        assertEquals(Collections.emptyList(), selection.after(Integer.MAX_VALUE, 2));
+        assertEquals(Arrays.asList(1, 2), ids(selection.after(-5, 2)));
+        assertEquals(Collections.emptyList(), selection.before(0, 2));
+        assertEquals(Collections.emptyList(), selection.before(Integer.MIN_VALUE, 2));
+        assertEquals(Arrays.asList(4, 5), ids(selection.before(Integer.MAX_VALUE, 2)));
+    }
+
+    @Test
+    public void testRemove_RemovedProduct_DroppedFromFacets() {
+        index.remove(5);
+
+        ProductFacetIndex.Selection selection = index.select(Collections.singleton(2), Collections.emptySet(), Collections.emptySet());
+        assertEquals(Arrays.asList(4), ids(selection.after(0, 10)));
+        assertEquals(0, selection.getPriceBandCounts()[5]);
+        assertEquals(4, index.size());
+    }
+
+    @Test
+    public void testCopy_ProductsChangedInCopy_OriginalUnchanged() {
+        ProductFacetIndex copy = index.copy();
+        copy.remove(5);
+        Product moved = new Product("Product 1", 49.9f, "USD", "", phone, amazon);
+        moved.setId(1);
+        copy.add(moved);
+
+        ProductFacetIndex.Selection phones = copy.select(Collections.singleton(2), Collections.emptySet(), Collections.emptySet());
+        assertEquals(Arrays.asList(1, 4), ids(phones.after(0, 10)));
+        assertEquals(4, copy.size());
+        ProductFacetIndex.Selection original = index.select(Collections.singleton(2), Collections.emptySet(), Collections.emptySet());
+        assertEquals(Arrays.asList(4, 5), ids(original.after(0, 10)));
+        assertEquals(5, index.size());
+    }
+}
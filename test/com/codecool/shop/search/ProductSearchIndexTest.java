@@ -0,0 +1,125 @@
+package com.codecool.shop.search;
+
+import com.codecool.shop.model.Product;
+import com.codecool.shop.model.ProductCategory;
+import com.codecool.shop.model.Supplier;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ProductSearchIndexTest {
+
+    private Supplier amazon;
+    private ProductCategory tablet;
+    private ProductSearchIndex index;
+
+    @BeforeEach
+    public void setup() {
+        amazon = new Supplier("Amazon", "Digital content and services");
+        tablet = new ProductCategory("Tablet", "Hardware", "A tablet computer");
+        index = new ProductSearchIndex();
+    }
+
+    private Product product(int id, String name, String description) {
+        Product product = new Product(name, 10f, "USD", description, tablet, amazon);
+        product.setId(id);
+        index.add(product);
+        return product;
+    }
+
+    @Test
+    public void testTokenize_PunctuationAndCase_LowercaseWords() {
+        assertEquals(Arrays.asList("amazon", "fire", "hd", "8", "tablet"),
+                ProductSearchIndex.tokenize("Amazon Fire-HD 8, (Tablet)!"));
+    }
+
+    @Test
+    public void testSearch_TermInNameAndDescription_NameMatchRanksFirst() {
+        Product describedKeyboard = product(1, "Lenovo IdeaPad Miix 700", "Keyboard cover is included.");
+        Product keyboard = product(2, "Keyboard", "A plain keyboard.");
+        product(3, "Amazon Fire", "Fantastic price.");
+
+        List<Product> hits = index.search("keyboard", 10);
+
+        assertEquals(Arrays.asList(keyboard, describedKeyboard), hits);
+    }
+
+    @Test
+    public void testSearch_RareTerm_OutranksCommonTerm() {
+        product(1, "Amazon Fire", "Tablet");
+        Product kindle = product(2, "Amazon Kindle", "Reader");
+        product(3, "Amazon Echo", "Speaker");
+
+        assertEquals(kindle, index.search("amazon kindle", 10).get(0));
+    }
+
+    @Test
+    public void testSearch_UnfinishedLastWord_MatchesAsPrefix() {
+        Product fire = product(1, "Amazon Fire", "Tablet");
+        product(2, "Lenovo IdeaPad", "Notebook");
+
+        assertEquals(Arrays.asList(fire), index.search("amazon fi", 10));
+        assertTrue(index.search("f", 10).isEmpty());
+    }
+
+    @Test
+    public void testRemove_RemovedProduct_NotFoundAnymore() {
+        product(1, "Amazon Fire", "Tablet");
+        Product fireHd = product(2, "Amazon Fire HD 8", "Tablet");
+
+        index.remove(1);
+
+        assertEquals(Arrays.asList(fireHd), index.search("fire", 10));
+        assertEquals(1, index.size());
+    }
+
+    @Test
+    public void testAdd_ManyAddsAndRemoves_CompactedIndexStillAnswers() {
+        for (int id = 1; id <= 5000; id++) {
+            product(id, "Product " + id, "Generated");
+        }
+        for (int id = 1; id <= 4000; id++) {
+            index.remove(id);
+        }
+
+        assertEquals(1000, index.size());
+        assertEquals(1000, index.search("generated", 5000).size());
+        assertEquals(4500, index.search("4500", 1).get(0).getId());
+    }
+
+    @Test
+    public void testCopy_ProductsChangedInCopy_OriginalUnchanged() {
+        Product fire = product(1, "Amazon Fire", "Tablet");
+        product(2, "Amazon Echo", "Speaker");
+
+        ProductSearchIndex copy = index.copy();
+        copy.remove(1);
+        Product fireHd = new Product("Amazon Fire HD 8", 10f, "USD", "Tablet", tablet, amazon);
+        fireHd.setId(3);
+        copy.add(fireHd);
+
+        assertEquals(Arrays.asList(fireHd), copy.search("fire", 10));
+        assertEquals(Arrays.asList(fire), index.search("fire", 10));
+        assertEquals(2, index.size());
+        assertTrue(index.search("hd", 10).isEmpty());
+    }
+
+    @Test
+    public void testSearch_Limit_ReturnsBestScoresInOrder() {
+        product(1, "Fire", "fire");
+        product(2, "Fire", "fire fire");
+        product(3, "Fire Fire", "fire fire fire");
+        product(4, "Echo", "Speaker");
+
+        List<Product> hits = index.search("fire", 2);
+
+        assertEquals(2, hits.size());
+        assertEquals(3, hits.get(0).getId());
+        assertEquals(2, hits.get(1).getId());
+    }
+}